@@ -0,0 +1,158 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchingBenchmark - JMH benchmark for the {@link NoBatchingTest} insert, update,
+ * cascade delete and orphan removal workloads.
+ *
+ * Run it with the GC profiler to get the allocation rate as well:
+ *
+ * java -jar benchmarks/target/benchmarks.jar BatchingBenchmark -prof gc
+ *
+ * The local PostgreSQL stand-in is selected with -p database=POSTGRESQL.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BatchingBenchmark extends AbstractBenchmark {
+
+    @Param({"100", "1000"})
+    public int itemsCount;
+
+    @Param({"15", "50", "100"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean jdbcBatching;
+
+    @Param({"false", "true"})
+    public boolean ordered;
+
+    @Param({"false", "true"})
+    public boolean versioned;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        if (jdbcBatching) {
+            properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+        }
+        if (ordered) {
+            properties.put("hibernate.order_inserts", "true");
+            properties.put("hibernate.order_updates", "true");
+        }
+        if (versioned) {
+            properties.put("hibernate.jdbc.batch_versioned_data", "true");
+        }
+        properties.put("hibernate.generate_statistics", Boolean.FALSE.toString());
+        return properties;
+    }
+
+    @Setup(Level.Invocation)
+    public void resetData() {
+        doInTransaction(session -> {
+            session.createQuery("delete from Comment").executeUpdate();
+            session.createQuery("delete from PostDetails").executeUpdate();
+            session.createQuery("delete from Post").executeUpdate();
+        });
+        insertPosts(true);
+    }
+
+    @Benchmark
+    public void insert() {
+        insertPosts(false);
+    }
+
+    @Benchmark
+    public void update() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.comments c").list();
+
+            int i = 0;
+            for(Post post : posts) {
+                post.setTitle(String.format("Blog post no. %d", i++));
+                for(Comment comment : post.getComments()) {
+                    comment.setReview("Blog comment");
+                }
+            }
+            session.flush();
+        });
+    }
+
+    @Benchmark
+    public void cascadeDelete() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.details d " +
+                "join fetch p.comments c")
+            .list();
+            for (Post post : posts) {
+                session.delete(post);
+            }
+        });
+    }
+
+    @Benchmark
+    public void orphanRemoval() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.details d " +
+                "join fetch p.comments c")
+            .list();
+            posts.forEach(Post::removeDetails);
+            session.flush();
+            posts.forEach(post -> {
+                for (Iterator<Comment> commentIterator = post.getComments().iterator(); commentIterator.hasNext(); ) {
+                    Comment comment =  commentIterator.next();
+                    comment.setPost(null);
+                    commentIterator.remove();
+                }
+            });
+            session.flush();
+            posts.forEach(session::delete);
+        });
+    }
+
+    private void insertPosts(boolean withDetails) {
+        doInTransaction(session -> {
+            for(int i = 0; i < itemsCount; i++) {
+                session.persist(Post.newInstance(i, withDetails));
+                if(i % batchSize == 0 && i > 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+}
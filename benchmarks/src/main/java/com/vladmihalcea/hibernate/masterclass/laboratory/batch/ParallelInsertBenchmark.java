@@ -0,0 +1,73 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ParallelBatchInserter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParallelInsertBenchmark - JMH benchmark for the {@link ParallelBatchInserter} rows/sec as the number
+ * of workers grows. Every post is inserted as four rows, so the rows/sec is four times the posts/sec.
+ *
+ * java -jar benchmarks/target/benchmarks.jar ParallelInsertBenchmark -p database=POSTGRESQL
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParallelInsertBenchmark extends AbstractBenchmark {
+
+    @Param({"100000"})
+    public int itemsCount;
+
+    @Param({"50"})
+    public int batchSize;
+
+    @Param({"1", "2", "4", "8"})
+    public int workerCount;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.generate_statistics", Boolean.FALSE.toString());
+        return properties;
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteData() {
+        doInTransaction(session -> {
+            session.createQuery("delete from Comment").executeUpdate();
+            session.createQuery("delete from PostDetails").executeUpdate();
+            session.createQuery("delete from Post").executeUpdate();
+        });
+    }
+
+    @Benchmark
+    public ParallelBatchInserter.Report parallelInsert() {
+        return new ParallelBatchInserter<Post>(getSessionFactory())
+            .setWorkerCount(workerCount)
+            .setBatchSize(batchSize)
+            .setRowCounter(post -> 4)
+            .insert(Post.newInstances(itemsCount));
+    }
+}
@@ -0,0 +1,102 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.SampledQueryLoggingListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatelessBatchInserter;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatelessInsertBenchmark - JMH benchmark comparing the stateful Session batch inserts,
+ * flushed and cleared every <code>batchSize</code> posts, with the {@link StatelessBatchInserter}
+ * for the same Post, Comment and PostDetails graph. Every post is inserted as four rows.
+ * With <code>queryLogging=true</code>, the statements go through the proxy DataSource and the
+ * {@link SampledQueryLoggingListener}, which logs one in every <code>batchSize</code> statements.
+ *
+ * java -jar benchmarks/target/benchmarks.jar StatelessInsertBenchmark -p itemsCount=250000 -prof gc
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StatelessInsertBenchmark extends AbstractBenchmark {
+
+    @Param({"10000", "100000"})
+    public int itemsCount;
+
+    @Param({"50", "100"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean queryLogging;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected boolean proxyDataSource() {
+        return queryLogging;
+    }
+
+    @Override
+    protected QueryExecutionListener queryLoggingListener() {
+        return new SampledQueryLoggingListener().setSampleRate(batchSize);
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.generate_statistics", Boolean.FALSE.toString());
+        return properties;
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteData() {
+        doInTransaction(session -> {
+            session.createQuery("delete from Comment").executeUpdate();
+            session.createQuery("delete from PostDetails").executeUpdate();
+            session.createQuery("delete from Post").executeUpdate();
+        });
+    }
+
+    @Benchmark
+    public void statefulInsert() {
+        doInTransaction(session -> {
+            for (int i = 0; i < itemsCount; i++) {
+                session.persist(Post.newInstance(i));
+                if (i % batchSize == 0 && i > 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    public long statelessInsert() {
+        StatelessBatchInserter<Post> inserter = new StatelessBatchInserter<Post>(batchSize)
+            .children(Post::getComments)
+            .child(Post::getDetails);
+        return doInStatelessTransaction(session -> {
+            return inserter.insert(session, Post.newInstances(itemsCount));
+        });
+    }
+}
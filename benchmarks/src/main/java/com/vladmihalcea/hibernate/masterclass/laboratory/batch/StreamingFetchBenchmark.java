@@ -0,0 +1,163 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StreamingReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamingFetchBenchmark - JMH benchmark comparing the {@link NoFetchingTest} <code>.list()</code> read
+ * with the {@link StreamingReader} forward-only cursor reads, using either a stateful Session
+ * which is cleared every <code>fetchSize</code> rows or a StatelessSession.
+ *
+ * The peak heap usage of every invocation is sampled from the heap memory pools and
+ * the largest one is logged at the end of each iteration:
+ *
+ * java -jar benchmarks/target/benchmarks.jar StreamingFetchBenchmark -jvmArgs -Xmx2g
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StreamingFetchBenchmark extends AbstractBenchmark {
+
+    /**
+     * The number of comment rows, every post having two comments.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int rowCount;
+
+    @Param({"100", "1000"})
+    public int fetchSize;
+
+    private final List<MemoryPoolMXBean> heapMemoryPools = ManagementFactory.getMemoryPoolMXBeans();
+
+    private long peakHeapBytes;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.fetch_size", String.valueOf(fetchSize));
+        properties.put("hibernate.generate_statistics", Boolean.FALSE.toString());
+        return properties;
+    }
+
+    @Override
+    protected void afterInit() {
+        doInJDBC(connection -> {
+            try (PreparedStatement postStatement = connection.prepareStatement(
+                    "insert into Post (id, title, version) values (?, ?, 0)");
+                 PreparedStatement commentStatement = connection.prepareStatement(
+                    "insert into post_comment (id, post_id, review, version) values (?, ?, ?, 0)")) {
+                int postCount = rowCount / 2;
+                for (int i = 1; i <= postCount; i++) {
+                    postStatement.setLong(1, i);
+                    postStatement.setString(2, String.format("Post no. %d", i));
+                    postStatement.addBatch();
+                    for (int j = 0; j < 2; j++) {
+                        commentStatement.setLong(1, 2L * i + j);
+                        commentStatement.setLong(2, i);
+                        commentStatement.setString(3, String.format("Post comment %d:%d", i, j));
+                        commentStatement.addBatch();
+                    }
+                    if (i % 1000 == 0 || i == postCount) {
+                        postStatement.executeBatch();
+                        commentStatement.executeBatch();
+                    }
+                }
+            }
+        });
+    }
+
+    @Setup(Level.Invocation)
+    public void resetPeakHeapUsage() {
+        System.gc();
+        for (MemoryPoolMXBean memoryPool : heapMemoryPools) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                memoryPool.resetPeakUsage();
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void recordPeakHeapUsage() {
+        long heapBytes = 0;
+        for (MemoryPoolMXBean memoryPool : heapMemoryPools) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                heapBytes += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        peakHeapBytes = Math.max(peakHeapBytes, heapBytes);
+    }
+
+    @TearDown(Level.Iteration)
+    public void logPeakHeapUsage() {
+        LOGGER.info("Peak heap usage for {} rows: {} MB", rowCount, peakHeapBytes / (1024 * 1024));
+        peakHeapBytes = 0;
+    }
+
+    @Benchmark
+    public void list(Blackhole blackhole) {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select p " +
+                "from Post p " +
+                "join fetch p.comments ")
+            .list();
+            for (Post post : posts) {
+                blackhole.consume(post);
+            }
+        });
+    }
+
+    @Benchmark
+    public long scroll(Blackhole blackhole) {
+        StreamingReader streamingReader = new StreamingReader()
+            .setFetchSize(fetchSize)
+            .setClearInterval(fetchSize);
+        return doInTransaction(session -> {
+            return streamingReader.read(session,
+                "select c " +
+                "from post_comment c " +
+                "join fetch c.post " +
+                "order by c.id",
+                blackhole::consume);
+        });
+    }
+
+    @Benchmark
+    public long statelessScroll(Blackhole blackhole) {
+        StreamingReader streamingReader = new StreamingReader()
+            .setFetchSize(fetchSize);
+        return doInStatelessTransaction(session -> {
+            return streamingReader.read(session,
+                "select c " +
+                "from post_comment c " +
+                "join fetch c.post " +
+                "order by c.id",
+                blackhole::consume);
+        });
+    }
+}
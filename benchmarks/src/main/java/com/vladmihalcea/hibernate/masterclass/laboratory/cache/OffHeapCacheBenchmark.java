@@ -0,0 +1,180 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Change;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Commit;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Repository;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.OffHeapRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OffHeapCacheBenchmark - JMH benchmark comparing the heap-resident Ehcache regions with the
+ * {@link OffHeapRegionFactory} regions, when the second-level cache holds the whole {@link CollectionCacheTest}
+ * data set, every Commit having <code>changeCount</code> Change elements.
+ *
+ * The caches are filled before the measurement starts, and the Commit changes are then read uniformly,
+ * so that the whole cache stays live. The garbage collection count and time, and the heap usage after
+ * a full collection, are logged at the end of every iteration:
+ *
+ * java -jar benchmarks/target/benchmarks.jar OffHeapCacheBenchmark -jvmArgs "-Xmx4g -XX:MaxDirectMemorySize=4g"
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(4)
+@Fork(1)
+public class OffHeapCacheBenchmark extends AbstractBenchmark {
+
+    @Param({"ehcache", "offheap"})
+    public String regionFactory;
+
+    @Param({"100000"})
+    public int commitCount;
+
+    @Param({"10"})
+    public int changeCount;
+
+    /**
+     * The Change path and diff length, which must not exceed the default column length.
+     */
+    @Param({"200"})
+    public int changeLength;
+
+    @Param({"4294967296"})
+    public long offHeapBytes;
+
+    private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final List<MemoryPoolMXBean> memoryPools = ManagementFactory.getMemoryPoolMXBeans();
+
+    private long[] commitIds;
+
+    private long collectionCount;
+
+    private long collectionTimeMillis;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Repository.class,
+            Commit.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.generate_statistics", Boolean.FALSE.toString());
+        switch (regionFactory) {
+            case "ehcache":
+                properties.put("hibernate.cache.region.factory_class",
+                    "org.hibernate.cache.ehcache.EhCacheRegionFactory");
+                properties.put("net.sf.ehcache.configurationResourceName", "/ehcache-unbounded.xml");
+                break;
+            case "offheap":
+                properties.put("hibernate.cache.region.factory_class", OffHeapRegionFactory.class.getName());
+                properties.put(OffHeapRegionFactory.OFF_HEAP_PREFIX + OffHeapRegionFactory.MAXIMUM_BYTES,
+                    String.valueOf(offHeapBytes));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported region factory: " + regionFactory);
+        }
+        return properties;
+    }
+
+    @Override
+    protected void afterInit() {
+        commitIds = new long[commitCount];
+        char[] text = new char[changeLength];
+        Long repositoryId = doInTransaction(session -> {
+            Repository repository = new Repository("Hibernate-Master-Class");
+            session.persist(repository);
+            return repository.getId();
+        });
+        doInTransaction(session -> {
+            for (int i = 0; i < commitCount; i++) {
+                Commit commit = new Commit();
+                for (int j = 0; j < changeCount; j++) {
+                    Arrays.fill(text, (char) ('a' + (i + j) % 26));
+                    commit.getChanges().add(new Change(new String(text), new String(text)));
+                }
+                commit.setRepository((Repository) session.load(Repository.class, repositoryId));
+                session.persist(commit);
+                commitIds[i] = (Long) session.getIdentifier(commit);
+                if (i % 100 == 99) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+        LOGGER.info("Fill the {} second-level cache", regionFactory);
+        for (int i = 0; i < commitCount; i += 100) {
+            int start = i;
+            doInTransaction(session -> {
+                for (int j = start; j < Math.min(start + 100, commitCount); j++) {
+                    readChanges(session, commitIds[j]);
+                }
+            });
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void recordGarbageCollections() {
+        collectionCount = 0;
+        collectionTimeMillis = 0;
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+            collectionCount -= garbageCollector.getCollectionCount();
+            collectionTimeMillis -= garbageCollector.getCollectionTime();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void logGarbageCollections() {
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+            collectionCount += garbageCollector.getCollectionCount();
+            collectionTimeMillis += garbageCollector.getCollectionTime();
+        }
+        System.gc();
+        long heapBytes = 0;
+        for (MemoryPoolMXBean memoryPool : memoryPools) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                heapBytes += memoryPool.getUsage().getUsed();
+            }
+        }
+        LOGGER.info("{} regions: {} garbage collections took {} ms, live heap: {} MB",
+            regionFactory, collectionCount, collectionTimeMillis, heapBytes / (1024 * 1024));
+    }
+
+    @Benchmark
+    public int readCachedCollection() {
+        long commitId = commitIds[ThreadLocalRandom.current().nextInt(commitIds.length)];
+        return doInTransaction(session -> {
+            return readChanges(session, commitId);
+        });
+    }
+
+    private int readChanges(Session session, long commitId) {
+        Commit commit = (Commit) session.get(Commit.class, commitId);
+        int length = 0;
+        for (Change change : commit.getChanges()) {
+            length += change.getDiff().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,151 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Author;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.CompactQueryResult;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueryCacheFootprintBenchmark - JMH benchmark comparing the heap footprint and the read time of the query cache
+ * regions holding the identifiers of the latest Posts of every Author, when the results are stored as the
+ * StandardQueryCache lists, either by Ehcache or by the {@link TinyLfuRegionFactory}, and as the delta encoded
+ * {@link CompactQueryResult} values.
+ *
+ * Before the measurement starts, the query cache is filled with the results of all Authors, and the live heap
+ * growth per cached row is logged, along with the region footprint reported by the second-level cache statistics:
+ *
+ * java -jar benchmarks/target/benchmarks.jar QueryCacheFootprintBenchmark
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class QueryCacheFootprintBenchmark extends AbstractBenchmark {
+
+    private static final String POST_BY_AUTHOR_REGION = "post_by_author";
+
+    @Param({"ehcache", "tinylfu", "tinylfu-compact"})
+    public String queryCache;
+
+    @Param({"1000"})
+    public int authorCount;
+
+    @Param({"100"})
+    public int postCount;
+
+    private long[] authorIds;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Author.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.generate_statistics", Boolean.FALSE.toString());
+        switch (queryCache) {
+            case "ehcache":
+                properties.put("hibernate.cache.region.factory_class",
+                    "org.hibernate.cache.ehcache.EhCacheRegionFactory");
+                properties.put("net.sf.ehcache.configurationResourceName", "/ehcache-unbounded.xml");
+                break;
+            case "tinylfu":
+            case "tinylfu-compact":
+                properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+                properties.put(TinyLfuRegionFactory.PREFIX + TinyLfuRegionFactory.MAXIMUM_SIZE,
+                    String.valueOf(authorCount));
+                properties.put(TinyLfuRegionFactory.COMPACT_QUERY_RESULTS,
+                    String.valueOf("tinylfu-compact".equals(queryCache)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported query cache: " + queryCache);
+        }
+        return properties;
+    }
+
+    @Override
+    protected void afterInit() {
+        authorIds = new long[authorCount];
+        doInTransaction(session -> {
+            for (int i = 0; i < authorCount; i++) {
+                Author author = new Author("Author " + i);
+                session.persist(author);
+                for (int j = 0; j < postCount; j++) {
+                    session.persist(new Post("Post " + j, author));
+                }
+                authorIds[i] = (Long) session.getIdentifier(author);
+                session.flush();
+                session.clear();
+            }
+        });
+        getSessionFactory().getCache().evictAllRegions();
+
+        long heapBytes = liveHeapBytes();
+        for (long authorId : authorIds) {
+            doInTransaction(session -> {
+                getPostIdsByAuthorId(session, authorId);
+            });
+        }
+        long cachedRows = (long) authorCount * postCount;
+        long heapGrowth = liveHeapBytes() - heapBytes;
+        long regionSizeInMemory = ((SessionFactoryImplementor) getSessionFactory())
+            .getQueryCache(POST_BY_AUTHOR_REGION).getRegion().getSizeInMemory();
+        LOGGER.info("{} query cache: {} cached rows, heap growth per row: {} bytes, reported size per row: {} bytes",
+            queryCache, cachedRows, (double) heapGrowth / cachedRows, (double) regionSizeInMemory / cachedRows);
+    }
+
+    @Benchmark
+    public int queryCacheRead() {
+        long authorId = authorIds[ThreadLocalRandom.current().nextInt(authorIds.length)];
+        return doInTransaction(session -> {
+            return getPostIdsByAuthorId(session, authorId).size();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> getPostIdsByAuthorId(Session session, long authorId) {
+        return (List<Long>) session.createQuery(
+            "select p.id " +
+            "from Post p " +
+            "where p.author.id = :authorId " +
+            "order by p.id")
+            .setParameter("authorId", authorId)
+            .setCacheable(true)
+            .setCacheRegion(POST_BY_AUTHOR_REGION)
+            .list();
+    }
+
+    private static long liveHeapBytes() {
+        System.gc();
+        long heapBytes = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                heapBytes += memoryPool.getUsage().getUsed();
+            }
+        }
+        return heapBytes;
+    }
+}
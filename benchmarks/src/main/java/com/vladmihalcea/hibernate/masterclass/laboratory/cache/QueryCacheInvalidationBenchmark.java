@@ -0,0 +1,150 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Author;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.query.PredicateQueryCacheFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.query.PredicateQueryCacheIntegrator;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.query.QueryCacheDependency;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import org.hibernate.Session;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueryCacheInvalidationBenchmark - JMH benchmark comparing the table-level query cache invalidation
+ * with the {@link PredicateQueryCacheFactory} one, on a mixed workload where every operation either
+ * inserts a Post of a random Author, with the <code>writeRatio</code> probability, or reads the latest
+ * Posts of a random Author from the query cache.
+ *
+ * With the table-level invalidation, every insert invalidates the latest Posts of all Authors, so the
+ * query cache hit ratio, which is logged at the end of every iteration, drops as the write ratio grows:
+ *
+ * java -jar benchmarks/target/benchmarks.jar QueryCacheInvalidationBenchmark -t 4
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(4)
+@Fork(1)
+public class QueryCacheInvalidationBenchmark extends AbstractBenchmark {
+
+    private static final String POST_BY_AUTHOR_REGION = "post_by_author";
+
+    @Param({"standard", "predicate"})
+    public String queryCacheFactory;
+
+    @Param({"0.01", "0.1"})
+    public double writeRatio;
+
+    @Param({"1000"})
+    public int authorCount;
+
+    private long[] authorIds;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Author.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put(TinyLfuRegionFactory.PREFIX + TinyLfuRegionFactory.MAXIMUM_SIZE, "100000");
+        switch (queryCacheFactory) {
+            case "standard":
+                break;
+            case "predicate":
+                properties.put("hibernate.cache.query_cache_factory", PredicateQueryCacheFactory.class.getName());
+                properties.put(PredicateQueryCacheFactory.DEPENDENCY_PREFIX + POST_BY_AUTHOR_REGION,
+                    new QueryCacheDependency(Post.class, "author", "authorId"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported query cache factory: " + queryCacheFactory);
+        }
+        return properties;
+    }
+
+    @Override
+    protected Integrator integrator() {
+        return "predicate".equals(queryCacheFactory) ? new PredicateQueryCacheIntegrator() : null;
+    }
+
+    @Override
+    protected void afterInit() {
+        authorIds = new long[authorCount];
+        doInTransaction(session -> {
+            for (int i = 0; i < authorCount; i++) {
+                Author author = new Author("Author " + i);
+                session.persist(author);
+                session.persist(new Post("Post " + i, author));
+                authorIds[i] = (Long) session.getIdentifier(author);
+                if (i % 100 == 99) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStatistics() {
+        getSessionFactory().getStatistics().clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void logHitRatio() {
+        Statistics statistics = getSessionFactory().getStatistics();
+        long hitCount = statistics.getQueryCacheHitCount();
+        long accessCount = hitCount + statistics.getQueryCacheMissCount();
+        LOGGER.info("{} query cache with {} write ratio, hit ratio: {}",
+            queryCacheFactory, writeRatio, accessCount == 0 ? 0 : (double) hitCount / accessCount);
+    }
+
+    @Benchmark
+    public int mixedReadWrite() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long authorId = authorIds[random.nextInt(authorIds.length)];
+        if (random.nextDouble() < writeRatio) {
+            doInTransaction(session -> {
+                Author author = (Author) session.load(Author.class, authorId);
+                session.persist(new Post("Post of author " + authorId, author));
+            });
+            return 1;
+        }
+        return doInTransaction(session -> {
+            return getLatestPostsByAuthorId(session, authorId).size();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Post> getLatestPostsByAuthorId(Session session, long authorId) {
+        return (List<Post>) session.createQuery(
+            "select p " +
+            "from Post p " +
+            "join p.author a " +
+            "where a.id = :authorId " +
+            "order by p.createdOn desc")
+            .setParameter("authorId", authorId)
+            .setMaxResults(10)
+            .setCacheable(true)
+            .setCacheRegion(POST_BY_AUTHOR_REGION)
+            .list();
+    }
+}
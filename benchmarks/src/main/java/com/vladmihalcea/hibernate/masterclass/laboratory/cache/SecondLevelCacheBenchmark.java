@@ -0,0 +1,178 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Change;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Commit;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Repository;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Author;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SecondLevelCacheBenchmark - JMH benchmark comparing the Ehcache and the {@link TinyLfuRegionFactory}
+ * second-level cache regions on the {@link CollectionCacheTest} and {@link QueryCacheTest} workloads.
+ *
+ * There are more repositories and authors than the region capacity, and the identifiers are drawn from a
+ * skewed distribution, so the hit ratio depends on the eviction policy. Both caches hold at most 10000 entries
+ * per region, on heap and without expiry, the Ehcache regions being configured by the ehcache-bounded.xml file.
+ * The second-level cache hit ratio is logged at the end of every iteration:
+ *
+ * java -jar benchmarks/target/benchmarks.jar SecondLevelCacheBenchmark -t 4
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(4)
+@Fork(1)
+public class SecondLevelCacheBenchmark extends AbstractBenchmark {
+
+    @Param({"ehcache", "tinylfu"})
+    public String regionFactory;
+
+    @Param({"50000"})
+    public int repositoryCount;
+
+    @Param({"50000"})
+    public int authorCount;
+
+    private long[] repositoryIds;
+
+    private long[] authorIds;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Repository.class,
+            Commit.class,
+            Post.class,
+            Author.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        switch (regionFactory) {
+            case "ehcache":
+                properties.put("hibernate.cache.region.factory_class",
+                    "org.hibernate.cache.ehcache.EhCacheRegionFactory");
+                properties.put("net.sf.ehcache.configurationResourceName", "/ehcache-bounded.xml");
+                break;
+            case "tinylfu":
+                properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+                properties.put(TinyLfuRegionFactory.PREFIX + TinyLfuRegionFactory.MAXIMUM_SIZE, "10000");
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported region factory: " + regionFactory);
+        }
+        return properties;
+    }
+
+    @Override
+    protected void afterInit() {
+        repositoryIds = new long[repositoryCount];
+        authorIds = new long[authorCount];
+        doInTransaction(session -> {
+            for (int i = 0; i < repositoryCount; i++) {
+                Repository repository = new Repository("Repository " + i);
+                Commit commit = new Commit();
+                commit.getChanges().add(new Change("README.txt", "0a1,5..."));
+                repository.addCommit(commit);
+                session.persist(repository);
+                session.persist(commit);
+                repositoryIds[i] = repository.getId();
+                flushAndClear(session, i);
+            }
+        });
+        doInTransaction(session -> {
+            for (int i = 0; i < authorCount; i++) {
+                Author author = new Author("Author " + i);
+                session.persist(author);
+                session.persist(new Post("Post " + i, author));
+                authorIds[i] = (Long) session.getIdentifier(author);
+                flushAndClear(session, i);
+            }
+        });
+        getSessionFactory().getCache().evictAllRegions();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStatistics() {
+        getSessionFactory().getStatistics().clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void logHitRatio() {
+        Statistics statistics = getSessionFactory().getStatistics();
+        LOGGER.info("{} second-level cache hit ratio: {}, query cache hit ratio: {}",
+            regionFactory,
+            hitRatio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount()),
+            hitRatio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount())
+        );
+    }
+
+    @Benchmark
+    public int collectionCacheRead() {
+        long repositoryId = skewed(repositoryIds);
+        return doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            int changeCount = 0;
+            for (Commit commit : repository.getCommits()) {
+                changeCount += commit.getChanges().size();
+            }
+            return changeCount;
+        });
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Post> queryCacheRead() {
+        long authorId = skewed(authorIds);
+        return doInTransaction(session -> {
+            return (List<Post>) session.createQuery(
+                "select p " +
+                "from Post p " +
+                "join p.author a " +
+                "where a.id = :authorId " +
+                "order by p.createdOn desc")
+            .setParameter("authorId", authorId)
+            .setMaxResults(10)
+            .setCacheable(true)
+            .list();
+        });
+    }
+
+    /**
+     * The index is log-uniformly distributed, so the first entries are accessed far more often than the last ones.
+     */
+    private static long skewed(long[] ids) {
+        int index = (int) Math.pow(ids.length, ThreadLocalRandom.current().nextDouble()) - 1;
+        return ids[Math.min(index, ids.length - 1)];
+    }
+
+    private static double hitRatio(long hitCount, long missCount) {
+        long accessCount = hitCount + missCount;
+        return accessCount == 0 ? 0 : (double) hitCount / accessCount;
+    }
+
+    private static void flushAndClear(Session session, int i) {
+        if (i % 100 == 99) {
+            session.flush();
+            session.clear();
+        }
+    }
+}
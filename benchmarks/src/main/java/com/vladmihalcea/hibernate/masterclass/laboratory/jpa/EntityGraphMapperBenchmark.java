@@ -0,0 +1,137 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.jpa;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractBenchmark;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EntityGraphMapperBenchmark - JMH benchmark comparing the hand-written result set folding,
+ * the sequential and the parallel {@link ResultSetGraphMapper} and the JPQL join fetch
+ * for the same Post and PostComment graph.
+ *
+ * java -jar benchmarks/target/benchmarks.jar EntityGraphMapperBenchmark -p postCount=10000 -prof gc
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EntityGraphMapperBenchmark extends EntityGraphMapperTest {
+
+    @Param({"HSQLDB"})
+    public String database;
+
+    @Param({"1000", "10000"})
+    public int postCount;
+
+    @Param({"10"})
+    public int postCommentCount;
+
+    @Param({"1000"})
+    public int chunkSize;
+
+    @Param({"4"})
+    public int threadCount;
+
+    private ExecutorService executorService;
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.generate_statistics", Boolean.FALSE.toString());
+        return properties;
+    }
+
+    @Override
+    protected DataSourceProvider getDataSourceProvider() {
+        return AbstractBenchmark.dataSourceProvider(database);
+    }
+
+    @Override
+    protected boolean proxyDataSource() {
+        return false;
+    }
+
+    @Override
+    protected int getPostCount() {
+        return postCount;
+    }
+
+    @Override
+    protected int getPostCommentCount() {
+        return postCommentCount;
+    }
+
+    @Override
+    protected boolean parallelSeeding() {
+        return true;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        init();
+        executorService = Executors.newFixedThreadPool(threadCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+        destroy();
+    }
+
+    @Benchmark
+    public List<Post> toPostsMapping() {
+        return doInJDBC(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_POST_COMMENTS);
+                 ResultSet resultSet = statement.executeQuery()) {
+                return toPosts(resultSet);
+            }
+        });
+    }
+
+    @Benchmark
+    public List<Post> sequentialGraphMapping() {
+        return graphMapping(null);
+    }
+
+    @Benchmark
+    public List<Post> parallelGraphMapping() {
+        return graphMapping(executorService);
+    }
+
+    @Benchmark
+    public List<Post> jpaJoinFetch() {
+        return doInJPA(entityManager -> {
+            return entityManager.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.comments", Post.class)
+            .getResultList();
+        });
+    }
+
+    private List<Post> graphMapping(ExecutorService executorService) {
+        return doInJDBC(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_POST_COMMENTS);
+                 ResultSet resultSet = statement.executeQuery()) {
+                return postGraphMapper()
+                    .setChunkSize(chunkSize)
+                    .setExpectedParentCount(postCount)
+                    .setExecutorService(executorService)
+                    .map(resultSet);
+            }
+        });
+    }
+}
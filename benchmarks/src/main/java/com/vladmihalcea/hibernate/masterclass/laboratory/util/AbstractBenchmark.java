@@ -0,0 +1,72 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * AbstractBenchmark - Base class of the JMH benchmarks reusing the {@link AbstractTest} workloads.
+ *
+ * The database is chosen with the <code>database</code> parameter, the data source is not proxied, so that
+ * the statement logging doesn't skew the measurements, and the session factory lives for the whole trial.
+ * The subclasses set up their data in {@link #afterInit()}:
+ *
+ * java -jar benchmarks/target/benchmarks.jar BatchingBenchmark -p database=POSTGRESQL
+ *
+ * @author Vlad Mihalcea
+ */
+public abstract class AbstractBenchmark extends AbstractTest {
+
+    @Param({"HSQLDB"})
+    public String database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        init();
+        afterInit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        beforeDestroy();
+        destroy();
+    }
+
+    /**
+     * Called once the session factory is built, before the trial starts.
+     */
+    protected void afterInit() {
+    }
+
+    /**
+     * Called after the trial ends, before the session factory is closed.
+     */
+    protected void beforeDestroy() {
+    }
+
+    @Override
+    protected DataSourceProvider getDataSourceProvider() {
+        return dataSourceProvider(database);
+    }
+
+    @Override
+    protected boolean proxyDataSource() {
+        return false;
+    }
+
+    /**
+     * @param database database parameter value
+     * @return the data source provider of the given database, for the benchmarks extending other test classes
+     */
+    public static DataSourceProvider dataSourceProvider(String database) {
+        switch (database) {
+            case "HSQLDB":
+                return new HsqldbDataSourceProvider();
+            case "POSTGRESQL":
+                return new PostgreSQLDataSourceProvider();
+            default:
+                throw new IllegalArgumentException("Unsupported database: " + database);
+        }
+    }
+}
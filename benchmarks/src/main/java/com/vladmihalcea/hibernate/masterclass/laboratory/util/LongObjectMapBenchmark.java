@@ -0,0 +1,94 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LongObjectMapBenchmark - JMH benchmark comparing the {@link LongObjectMap} with the <code>LinkedHashMap&lt;Long, Post&gt;</code>
+ * identity map used for folding a post and comment join result set, looking up the post of every row
+ * like <code>EntityGraphMapperTest.toPosts</code> does.
+ *
+ * The rows are either sorted by post identifier, like an ORDER BY p.id join, or in random order,
+ * and the Post entities are created upfront so that only the identity map is measured.
+ *
+ * java -jar benchmarks/target/benchmarks.jar LongObjectMapBenchmark -p rowCount=10000000 -prof gc
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class LongObjectMapBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rowCount;
+
+    @Param({"10"})
+    public int commentsPerPost;
+
+    @Param({"true", "false"})
+    public boolean sorted;
+
+    private long[] rowPostIds;
+
+    private Post[] posts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int postCount = (rowCount + commentsPerPost - 1) / commentsPerPost;
+        posts = new Post[postCount];
+        for (int i = 0; i < postCount; i++) {
+            posts[i] = new Post((long) i);
+        }
+        rowPostIds = new long[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rowPostIds[i] = i / commentsPerPost;
+        }
+        if (!sorted) {
+            Random random = new Random(rowCount);
+            for (int i = rowCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long rowPostId = rowPostIds[i];
+                rowPostIds[i] = rowPostIds[j];
+                rowPostIds[j] = rowPostId;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Post> linkedHashMap() {
+        Map<Long, Post> postMap = new LinkedHashMap<>();
+        for (long rowPostId : rowPostIds) {
+            Long postId = rowPostId;
+            Post post = postMap.get(postId);
+            if (post == null) {
+                post = posts[(int) rowPostId];
+                postMap.put(postId, post);
+            }
+        }
+        return new ArrayList<>(postMap.values());
+    }
+
+    @Benchmark
+    public List<Post> longObjectMap() {
+        LongObjectMap<Post> postMap = new LongObjectMap<>();
+        for (long rowPostId : rowPostIds) {
+            Post post = postMap.get(rowPostId);
+            if (post == null) {
+                post = posts[(int) rowPostId];
+                postMap.put(rowPostId, post);
+            }
+        }
+        return new ArrayList<>(postMap.values());
+    }
+}
@@ -0,0 +1,114 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AdaptiveBatchSizeController;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AdaptiveBatchSizeTest - Test to check the batch size chosen by the AdaptiveBatchSizeController
+ *
+ * @author Vlad Mihalcea
+ */
+public class AdaptiveBatchSizeTest extends AbstractTest {
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(MAX_BATCH_SIZE));
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.order_updates", "true");
+        return properties;
+    }
+
+    @Test
+    public void testConvergence() {
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("synthetic", 10, 1000)
+            .setWindowSize(1);
+        for (int i = 0; i < 100 && !controller.isConverged(); i++) {
+            int batchSize = controller.getBatchSize();
+            //fixed round trip cost, linear cost and a quadratic penalty, the best size being around 140
+            long elapsedNanos = 100_000L + 1_000L * batchSize + 5L * batchSize * batchSize;
+            controller.onBatch(batchSize, elapsedNanos, 0);
+        }
+        assertTrue(controller.isConverged());
+        assertTrue(controller.getBatchSize() >= 70 && controller.getBatchSize() <= 300);
+        List<Integer> history = controller.getBatchSizeHistory();
+        assertEquals(Arrays.asList(10, 20, 40, 80, 160, 320), history.subList(0, 6));
+        assertTrue("The batch size must shrink after overshooting", history.get(6) < 320);
+        assertEquals(controller.getBatchSize(), (int) history.get(history.size() - 1));
+    }
+
+    @Test
+    public void testHeapGrowthShrinksBatchSize() {
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("heap", 10, 1000)
+            .setWindowSize(1)
+            .setMaxHeapGrowthBytes(1024 * 1024);
+        controller.onBatch(10, 100_000, 0);
+        controller.onBatch(20, 100_000, 0);
+        assertEquals(40, controller.getBatchSize());
+        controller.onBatch(40, 100_000, 2 * 1024 * 1024);
+        assertEquals(20, controller.getBatchSize());
+        assertEquals(Arrays.asList(10, 20, 40, 20), controller.getBatchSizeHistory());
+    }
+
+    @Test
+    public void testAdaptiveInsertAndUpdate() {
+        int itemsCount = 5000;
+        AdaptiveBatchSizeController insertController = new AdaptiveBatchSizeController("Post insert", 10, MAX_BATCH_SIZE);
+        doInTransaction(session -> {
+            insertController.execute(session, IntStream.range(0, itemsCount).iterator(), (_session, i) -> {
+                _session.persist(Post.newInstance(i));
+            });
+        });
+        LOGGER.info("Insert batch sizes: {}", insertController.getBatchSizeHistory());
+        assertAdapted(insertController);
+
+        AdaptiveBatchSizeController updateController = new AdaptiveBatchSizeController("Post update", 10, MAX_BATCH_SIZE);
+        doInTransaction(session -> {
+            List<Long> postIds = session.createQuery("select p.id from Post p order by p.id").list();
+            assertEquals(itemsCount, postIds.size());
+            updateController.execute(session, postIds.iterator(), (_session, postId) -> {
+                Post post = (Post) _session.get(Post.class, postId);
+                post.setTitle("Blog post " + postId);
+            });
+        });
+        LOGGER.info("Update batch sizes: {}", updateController.getBatchSizeHistory());
+        assertAdapted(updateController);
+    }
+
+    /**
+     * The first window always improves on the initial time per row, so the batch size must have grown,
+     * and it must have stayed within bounds, settling on the last size it changed to.
+     */
+    private void assertAdapted(AdaptiveBatchSizeController controller) {
+        List<Integer> history = controller.getBatchSizeHistory();
+        assertTrue(history.size() > 1);
+        assertEquals(20, (int) history.get(1));
+        for (int batchSize : history) {
+            assertTrue(batchSize >= 10 && batchSize <= MAX_BATCH_SIZE);
+        }
+        assertEquals(controller.getBatchSize(), (int) history.get(history.size() - 1));
+    }
+}
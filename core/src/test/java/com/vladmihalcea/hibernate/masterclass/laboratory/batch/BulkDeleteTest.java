@@ -0,0 +1,152 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatementMetricsListener.StatementType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BulkDeleteTest - Test to compare the entity, orphan removal and HQL bulk delete strategies, both for the model
+ * cascading the removal from the Post entity and for the one relying on ON DELETE CASCADE
+ *
+ * @author Vlad Mihalcea
+ */
+@RunWith(Parameterized.class)
+public class BulkDeleteTest extends AbstractTest {
+
+    public enum Model {
+        /**
+         * The {@link NoBatchingTest} model, cascading the removal from the Post entity.
+         */
+        ENTITY_CASCADE(
+            NoBatchingTest.Post.class,
+            NoBatchingTest.PostDetails.class,
+            NoBatchingTest.Comment.class) {
+            @Override
+            Object newPost(int i) {
+                return NoBatchingTest.Post.newInstance(i);
+            }
+        },
+        /**
+         * The {@link SqlCascadeDeleteBatchingTest} model, relying on the ON DELETE CASCADE foreign keys.
+         */
+        SQL_CASCADE(
+            SqlCascadeDeleteBatchingTest.Post.class,
+            SqlCascadeDeleteBatchingTest.PostDetails.class,
+            SqlCascadeDeleteBatchingTest.Comment.class) {
+            @Override
+            Object newPost(int i) {
+                SqlCascadeDeleteBatchingTest.Post post = new SqlCascadeDeleteBatchingTest.Post(
+                    String.format("Post no. %d", i));
+                post.addComment(new SqlCascadeDeleteBatchingTest.Comment(String.format("Post comment %d:%d", i, 0)));
+                post.addComment(new SqlCascadeDeleteBatchingTest.Comment(String.format("Post comment %d:%d", i, 1)));
+                post.addDetails(new SqlCascadeDeleteBatchingTest.PostDetails());
+                return post;
+            }
+        };
+
+        private final Class<?>[] entities;
+
+        Model(Class<?>... entities) {
+            this.entities = entities;
+        }
+
+        abstract Object newPost(int i);
+    }
+
+    private final Model model;
+
+    private final BulkDeleter.Strategy strategy;
+
+    public BulkDeleteTest(Model model, BulkDeleter.Strategy strategy) {
+        this.model = model;
+        this.strategy = strategy;
+    }
+
+    @Parameterized.Parameters(name = "{0} {1}")
+    public static Collection<Object[]> strategies() {
+        List<Object[]> strategies = new ArrayList<>();
+        strategies.add(new Object[]{Model.ENTITY_CASCADE, BulkDeleter.Strategy.ENTITY_DELETE});
+        strategies.add(new Object[]{Model.ENTITY_CASCADE, BulkDeleter.Strategy.ORPHAN_REMOVAL});
+        strategies.add(new Object[]{Model.ENTITY_CASCADE, BulkDeleter.Strategy.HQL_BULK_DELETE});
+        strategies.add(new Object[]{Model.SQL_CASCADE, BulkDeleter.Strategy.ENTITY_DELETE});
+        strategies.add(new Object[]{Model.SQL_CASCADE, BulkDeleter.Strategy.SQL_CASCADE});
+        return strategies;
+    }
+
+    @Override
+    protected Class<?>[] entities() {
+        return model.entities;
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize()));
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.order_updates", "true");
+        properties.put("hibernate.jdbc.batch_versioned_data", "true");
+        return properties;
+    }
+
+    @Test
+    public void testDelete() {
+        insertPosts();
+        BulkDeleter.Report report = new BulkDeleter(getSessionFactory(), getStatementMetrics())
+            .setBatchSize(batchSize())
+            .delete(strategy);
+        assertEquals(4L * itemsCount(), report.getRows());
+        assertTrue(report.getLockMillis() <= report.getElapsedMillis());
+        doInTransaction(session -> {
+            assertEquals(0L, session.createQuery("select count(*) from Comment").uniqueResult());
+            assertEquals(0L, session.createQuery("select count(*) from PostDetails").uniqueResult());
+            assertEquals(0L, session.createQuery("select count(*) from Post").uniqueResult());
+        });
+
+        switch (strategy) {
+            case ENTITY_DELETE:
+                //the children are deleted by Hibernate only if the removal is cascaded from the Post entity
+                assertTrue(report.getStatements(StatementType.DELETE) > (model == Model.ENTITY_CASCADE ? 3 : 0));
+                break;
+            case ORPHAN_REMOVAL:
+                assertTrue(report.getStatements(StatementType.UPDATE) > 0);
+                break;
+            case HQL_BULK_DELETE:
+                assertEquals(3, report.getStatements(StatementType.DELETE));
+                break;
+            case SQL_CASCADE:
+                assertEquals(1, report.getStatements(StatementType.DELETE));
+                break;
+        }
+    }
+
+    private void insertPosts() {
+        doInTransaction(session -> {
+            int batchSize = batchSize();
+            for (int i = 0; i < itemsCount(); i++) {
+                session.persist(model.newPost(i));
+                if(i % batchSize == 0 && i > 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+
+    protected int itemsCount() {
+        return 1000;
+    }
+
+    protected int batchSize() {
+        return 50;
+    }
+}
@@ -0,0 +1,260 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatementMetricsListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatementMetricsListener.StatementType;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BulkDeleter - Deletes all the Post, Comment and PostDetails rows using one of the {@link Strategy} options
+ * and reports the number of statements, the rows/sec and for how long the row locks were held.
+ *
+ * The HQL is based on the entity names, so it works with both the {@link NoBatchingTest} model, which cascades
+ * the removal from the Post entity, and the {@link SqlCascadeDeleteBatchingTest} model, which relies on the
+ * ON DELETE CASCADE foreign keys.
+ *
+ * @author Vlad Mihalcea
+ */
+public class BulkDeleter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkDeleter.class);
+
+    public enum Strategy {
+        /**
+         * Load the posts with their children and call <code>session.delete</code> for every post.
+         */
+        ENTITY_DELETE,
+        /**
+         * Dissociate the children from every post so that orphan removal deletes them,
+         * then delete the posts. Requires the {@link NoBatchingTest} model.
+         */
+        ORPHAN_REMOVAL,
+        /**
+         * HQL bulk deletes, children first.
+         */
+        HQL_BULK_DELETE,
+        /**
+         * A single HQL bulk delete for the posts, the database removing the children.
+         * Requires the {@link SqlCascadeDeleteBatchingTest} model.
+         */
+        SQL_CASCADE
+    }
+
+    public static class Report {
+        private final Strategy strategy;
+        private final long rows;
+        private final Map<StatementType, Long> statements;
+        private final long elapsedNanos;
+        private final long lockNanos;
+
+        private Report(Strategy strategy, long rows, Map<StatementType, Long> statements,
+                       long elapsedNanos, long lockNanos) {
+            this.strategy = strategy;
+            this.rows = rows;
+            this.statements = statements;
+            this.elapsedNanos = elapsedNanos;
+            this.lockNanos = lockNanos;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @param statementType statement type
+         * @return the number of statements of the given type, a JDBC batch counting as a single one
+         */
+        public long getStatements(StatementType statementType) {
+            Long count = statements.get(statementType);
+            return count != null ? count : 0;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        /**
+         * @return the time between the flush executing the first DML statement and the end of the commit,
+         * the session close being excluded
+         */
+        public long getLockMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lockNanos);
+        }
+
+        public double getRowsPerSecond() {
+            return rows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "Report{strategy=%s, rows=%d, statements=%s, elapsed=%d ms, rows/sec=%.2f, lock=%d ms}",
+                strategy, rows, statements, getElapsedMillis(), getRowsPerSecond(), getLockMillis()
+            );
+        }
+    }
+
+    private final SessionFactory sessionFactory;
+
+    private final StatementMetricsListener statementMetrics;
+
+    private int batchSize = 50;
+
+    /**
+     * @param sessionFactory   session factory
+     * @param statementMetrics the statement metrics of the data source, or null if the statements are not counted
+     */
+    public BulkDeleter(SessionFactory sessionFactory, StatementMetricsListener statementMetrics) {
+        this.sessionFactory = sessionFactory;
+        this.statementMetrics = statementMetrics;
+    }
+
+    /**
+     * @param batchSize the number of posts loaded and deleted at once by the entity based strategies
+     * @return this deleter
+     */
+    public BulkDeleter setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public Report delete(Strategy strategy) {
+        long rows = countRows();
+        Map<StatementType, Long> statementsBefore = statementCounts();
+        long startNanos = System.nanoTime();
+        long[] lockStartNanos = new long[1];
+        long lockEndNanos;
+
+        Session session = sessionFactory.openSession();
+        Transaction txn = null;
+        try {
+            txn = session.beginTransaction();
+            switch (strategy) {
+                case ENTITY_DELETE:
+                    deleteEntities(session, lockStartNanos, false);
+                    break;
+                case ORPHAN_REMOVAL:
+                    deleteEntities(session, lockStartNanos, true);
+                    break;
+                case HQL_BULK_DELETE:
+                    lockStartNanos[0] = System.nanoTime();
+                    session.createQuery("delete from Comment").executeUpdate();
+                    session.createQuery("delete from PostDetails").executeUpdate();
+                    session.createQuery("delete from Post").executeUpdate();
+                    break;
+                case SQL_CASCADE:
+                    lockStartNanos[0] = System.nanoTime();
+                    session.createQuery("delete from Post").executeUpdate();
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unsupported strategy: " + strategy);
+            }
+            txn.commit();
+            lockEndNanos = System.nanoTime();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+        long endNanos = System.nanoTime();
+
+        Map<StatementType, Long> statements = statementCounts();
+        for (Map.Entry<StatementType, Long> statementsEntry : statements.entrySet()) {
+            statementsEntry.setValue(statementsEntry.getValue() - statementsBefore.get(statementsEntry.getKey()));
+        }
+        Report report = new Report(strategy, rows, statements, endNanos - startNanos,
+            lockStartNanos[0] > 0 ? lockEndNanos - lockStartNanos[0] : 0);
+        LOGGER.info("{}", report);
+        return report;
+    }
+
+    private void deleteEntities(Session session, long[] lockStartNanos, boolean orphanRemoval) {
+        List<Long> postIds = session.createQuery("select p.id from Post p order by p.id").list();
+        for (int from = 0; from < postIds.size(); from += batchSize) {
+            List<?> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "left join fetch p.details d " +
+                "left join fetch p.comments c " +
+                "where p.id in (:ids)")
+            .setParameterList("ids", postIds.subList(from, Math.min(from + batchSize, postIds.size())))
+            .list();
+            if (orphanRemoval) {
+                removeOrphans(session, posts, lockStartNanos);
+            }
+            for (Object post : posts) {
+                session.delete(post);
+            }
+            flush(session, lockStartNanos);
+            session.clear();
+        }
+    }
+
+    private void removeOrphans(Session session, List<?> posts, long[] lockStartNanos) {
+        for (Object entity : posts) {
+            Post post = (Post) entity;
+            if (post.getDetails() != null) {
+                post.removeDetails();
+            }
+        }
+        flush(session, lockStartNanos);
+        for (Object entity : posts) {
+            Post post = (Post) entity;
+            for (Iterator<Comment> commentIterator = post.getComments().iterator(); commentIterator.hasNext(); ) {
+                Comment comment = commentIterator.next();
+                comment.setPost(null);
+                commentIterator.remove();
+            }
+        }
+        flush(session, lockStartNanos);
+    }
+
+    /**
+     * The entity based strategies only execute DML statements when flushing, so the first flush starts the lock time.
+     */
+    private void flush(Session session, long[] lockStartNanos) {
+        if (lockStartNanos[0] == 0) {
+            lockStartNanos[0] = System.nanoTime();
+        }
+        session.flush();
+    }
+
+    private long countRows() {
+        Session session = sessionFactory.openSession();
+        try {
+            long rows = 0;
+            for (String entityName : new String[] {"Post", "Comment", "PostDetails"}) {
+                rows += (Long) session.createQuery("select count(*) from " + entityName).uniqueResult();
+            }
+            return rows;
+        } finally {
+            session.close();
+        }
+    }
+
+    private Map<StatementType, Long> statementCounts() {
+        Map<StatementType, Long> statementCounts = new EnumMap<>(StatementType.class);
+        if (statementMetrics != null) {
+            for (StatementType statementType : StatementType.values()) {
+                statementCounts.put(statementType, statementMetrics.getCount(statementType));
+            }
+        }
+        return statementCounts;
+    }
+}
@@ -0,0 +1,14 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+/**
+ * MultiRowInsertBatchingTest - Test to check the ordered batch inserts rewritten to multi-row INSERT statements
+ *
+ * @author Vlad Mihalcea
+ */
+public class MultiRowInsertBatchingTest extends DefaultDialectOrderedBatchingTest {
+
+    @Override
+    protected int multiRowInsertSize() {
+        return batchSize();
+    }
+}
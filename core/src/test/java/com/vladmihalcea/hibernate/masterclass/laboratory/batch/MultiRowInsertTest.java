@@ -0,0 +1,71 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatelessBatchInserter;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatementMetricsListener.StatementType;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * MultiRowInsertTest - Test to check the JDBC batches are rewritten to multi-row INSERT statements
+ *
+ * @author Vlad Mihalcea
+ */
+public class MultiRowInsertTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize()));
+        return properties;
+    }
+
+    @Override
+    protected int multiRowInsertSize() {
+        return batchSize();
+    }
+
+    @Test
+    public void testMultiRowInsert() {
+        getStatementMetrics().reset();
+        StatelessBatchInserter<Post> inserter = new StatelessBatchInserter<Post>(batchSize())
+            .children(Post::getComments)
+            .child(Post::getDetails);
+        doInStatelessTransaction(session -> {
+            inserter.insert(session, Post.newInstances(itemsCount()));
+        });
+
+        //two full chunks of 50 posts, 100 comments and 50 details, then 20 posts, 40 comments and 20 details
+        assertEquals(11, getStatementMetrics().getCount(StatementType.INSERT));
+        assertEquals(0, getStatementMetrics().getBatchSizeHistogram(StatementType.INSERT).getCount());
+
+        doInTransaction(session -> {
+            assertEquals((long) itemsCount(), session.createQuery("select count(p) from Post p").uniqueResult());
+            assertEquals(2L * itemsCount(), session.createQuery("select count(c) from Comment c").uniqueResult());
+            assertEquals((long) itemsCount(), session.createQuery("select count(d) from PostDetails d").uniqueResult());
+        });
+    }
+
+    protected int itemsCount() {
+        return 120;
+    }
+
+    protected int batchSize() {
+        return 50;
+    }
+}
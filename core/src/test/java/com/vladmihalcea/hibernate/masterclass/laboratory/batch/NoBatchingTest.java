@@ -12,6 +12,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 /**
  * NoBatchingTest - Test to check the default batch support
@@ -193,6 +194,37 @@ public class NoBatchingTest extends AbstractPostgreSQLIntegrationTest {
             this.title = title;
         }
 
+        /**
+         * @param index post index
+         * @return the "Post no. index" post, with two comments and its details, all inserted as four rows
+         */
+        public static Post newInstance(int index) {
+            return newInstance(index, true);
+        }
+
+        /**
+         * @param index       post index
+         * @param withDetails whether the post has its details
+         * @return the "Post no. index" post, with two comments
+         */
+        public static Post newInstance(int index, boolean withDetails) {
+            Post post = new Post(String.format("Post no. %d", index));
+            post.addComment(new Comment(String.format("Post comment %d:%d", index, 0)));
+            post.addComment(new Comment(String.format("Post comment %d:%d", index, 1)));
+            if (withDetails) {
+                post.addDetails(new PostDetails());
+            }
+            return post;
+        }
+
+        /**
+         * @param count post count
+         * @return the first <code>count</code> posts, created as they are iterated
+         */
+        public static Iterator<Post> newInstances(int count) {
+            return IntStream.range(0, count).mapToObj(Post::newInstance).iterator();
+        }
+
         @OneToMany(cascade = CascadeType.ALL, mappedBy = "post",
                 orphanRemoval = true)
         private List<Comment> comments = new ArrayList<>();
@@ -298,6 +330,10 @@ public class NoBatchingTest extends AbstractPostgreSQLIntegrationTest {
             return id;
         }
 
+        public void setReview(String review) {
+            this.review = review;
+        }
+
         public void setPost(Post post) {
             this.post = post;
         }
@@ -3,6 +3,7 @@ package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractOracleXEIntegrationTest;
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractPostgreSQLIntegrationTest;
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StreamingReader;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.dialect.Dialect;
 import org.junit.Test;
@@ -12,6 +13,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
 /**
  * NoFetchingTest - Test to check the default fetch support
  *
@@ -32,22 +36,7 @@ public class NoFetchingTest
 
     @Test
     public void testFetchSize() {
-        doInTransaction(session -> {
-            int batchSize = batchSize();
-            for(int i = 0; i < itemsCount(); i++) {
-                Post post = new Post(String.format("Post no. %d", i));
-                int j = 0;
-                post.addComment(new Comment(
-                        String.format("Post comment %d:%d", i, j++)));
-                post.addComment(new Comment(
-                        String.format("Post comment %d:%d", i, j++)));
-                session.persist(post);
-                if(i % batchSize == 0 && i > 0) {
-                    session.flush();
-                    session.clear();
-                }
-            }
-        });
+        insertPosts();
 
         long startNanos = System.nanoTime();
         LOGGER.info("Test fetch size");
@@ -68,6 +57,70 @@ public class NoFetchingTest
 
     }
 
+    @Test
+    public void testStreamingFetch() {
+        insertPosts();
+
+        long startNanos = System.nanoTime();
+        LOGGER.info("Test streaming fetch");
+        StreamingReader streamingReader = new StreamingReader()
+            .setFetchSize(fetchSize())
+            .setClearInterval(batchSize());
+        long rowCount = doInTransaction(session -> {
+            return streamingReader.read(session,
+                "select c " +
+                "from post_comment c " +
+                "join fetch c.post " +
+                "order by c.id",
+                comment -> assertNotNull(((Comment) comment).getPost()));
+        });
+        assertEquals(2L * itemsCount(), rowCount);
+        LOGGER.info("{}.testStreamingFetch took {} millis",
+                getClass().getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    @Test
+    public void testStatelessStreamingFetch() {
+        insertPosts();
+
+        long startNanos = System.nanoTime();
+        LOGGER.info("Test stateless streaming fetch");
+        StreamingReader streamingReader = new StreamingReader()
+            .setFetchSize(fetchSize());
+        long rowCount = doInStatelessTransaction(session -> {
+            return streamingReader.read(session,
+                "select c " +
+                "from post_comment c " +
+                "join fetch c.post " +
+                "order by c.id",
+                comment -> assertNotNull(((Comment) comment).getPost()));
+        });
+        assertEquals(2L * itemsCount(), rowCount);
+        LOGGER.info("{}.testStatelessStreamingFetch took {} millis",
+                getClass().getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    protected void insertPosts() {
+        doInTransaction(session -> {
+            int batchSize = batchSize();
+            for(int i = 0; i < itemsCount(); i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                int j = 0;
+                post.addComment(new Comment(
+                        String.format("Post comment %d:%d", i, j++)));
+                post.addComment(new Comment(
+                        String.format("Post comment %d:%d", i, j++)));
+                session.persist(post);
+                if(i % batchSize == 0 && i > 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+
     protected int itemsCount() {
         return 10;
     }
@@ -178,6 +231,10 @@ public class NoFetchingTest
             return id;
         }
 
+        public Post getPost() {
+            return post;
+        }
+
         public void setPost(Post post) {
             this.post = post;
         }
@@ -0,0 +1,69 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ParallelBatchInserter;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ParallelBatchInsertTest - Test to check the parallel batch inserts of the Post graph for an increasing number of workers
+ *
+ * @author Vlad Mihalcea
+ */
+public class ParallelBatchInsertTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize()));
+        properties.put("hibernate.order_inserts", "true");
+        return properties;
+    }
+
+    @Test
+    public void testParallelInsert() {
+        for (int workerCount = 1; workerCount <= 4; workerCount *= 2) {
+            doInTransaction(session -> {
+                session.createQuery("delete from Comment").executeUpdate();
+                session.createQuery("delete from PostDetails").executeUpdate();
+                session.createQuery("delete from Post").executeUpdate();
+            });
+
+            ParallelBatchInserter.Report report = new ParallelBatchInserter<Post>(getSessionFactory())
+                .setWorkerCount(workerCount)
+                .setBatchSize(batchSize())
+                .setRowCounter(post -> 1 + post.getComments().size() + (post.getDetails() != null ? 1 : 0))
+                .insert(Post.newInstances(itemsCount()));
+            LOGGER.info("{} workers inserted {} rows/sec", workerCount, report.getRowsPerSecond());
+
+            assertEquals(4L * itemsCount(), report.getRows());
+            doInTransaction(session -> {
+                assertEquals((long) itemsCount(), session.createQuery("select count(p) from Post p").uniqueResult());
+                assertEquals(2L * itemsCount(), session.createQuery("select count(c) from Comment c").uniqueResult());
+            });
+        }
+    }
+
+    protected int itemsCount() {
+        return 500;
+    }
+
+    protected int batchSize() {
+        return 50;
+    }
+}
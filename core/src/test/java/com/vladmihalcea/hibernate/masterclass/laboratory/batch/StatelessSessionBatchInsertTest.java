@@ -0,0 +1,81 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.codahale.metrics.Histogram;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.SampledQueryLoggingListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatelessBatchInserter;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatementMetricsListener.StatementType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * StatelessSessionBatchInsertTest - Test to check the StatelessSession batch inserts of the Post graph
+ *
+ * @author Vlad Mihalcea
+ */
+public class StatelessSessionBatchInsertTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize()));
+        return properties;
+    }
+
+    @Override
+    protected QueryExecutionListener queryLoggingListener() {
+        return new SampledQueryLoggingListener().setSampleRate(100);
+    }
+
+    @Test
+    public void testStatelessInsert() {
+        LOGGER.info("Test stateless batch insert");
+        getStatementMetrics().reset();
+        long startNanos = System.nanoTime();
+        StatelessBatchInserter<Post> inserter = new StatelessBatchInserter<Post>(batchSize())
+            .children(Post::getComments)
+            .child(Post::getDetails);
+        long rowCount = doInStatelessTransaction(session -> {
+            return inserter.insert(session, Post.newInstances(itemsCount()));
+        });
+        LOGGER.info("{}.testStatelessInsert took {} millis",
+                getClass().getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        assertEquals(4L * itemsCount(), rowCount);
+        assertEquals(rowCount, getStatementMetrics().getRowCounter(StatementType.INSERT).getCount());
+        Histogram insertBatches = getStatementMetrics().getBatchSizeHistogram(StatementType.INSERT);
+        assertEquals(batchSize(), insertBatches.getSnapshot().getMax());
+
+        doInTransaction(session -> {
+            assertEquals((long) itemsCount(), session.createQuery("select count(p) from Post p").uniqueResult());
+            assertEquals(2L * itemsCount(), session.createQuery("select count(c) from Comment c").uniqueResult());
+            assertEquals((long) itemsCount(), session.createQuery("select count(d) from PostDetails d").uniqueResult());
+        });
+    }
+
+    protected int itemsCount() {
+        return 120;
+    }
+
+    protected int batchSize() {
+        return 50;
+    }
+}
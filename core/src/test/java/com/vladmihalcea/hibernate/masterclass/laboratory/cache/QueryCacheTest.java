@@ -4,6 +4,7 @@ import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractPostgreSQL
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
 import org.hibernate.Session;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.cache.internal.StandardQueryCache;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -41,6 +42,11 @@ public class QueryCacheTest extends AbstractTest {
         return properties;
     }
 
+    @Override
+    protected boolean sampleCacheStatistics() {
+        return true;
+    }
+
     @Before
     public void init() {
         super.init();
@@ -115,6 +121,7 @@ public class QueryCacheTest extends AbstractTest {
             LOGGER.info("Check query is cached");
             assertEquals(1, getLatestPosts(session).size());
         });
+        assertTrue(getCacheStatisticsSampler().getRegionSample(StandardQueryCache.class.getName()).getHitCount() > 0);
     }
 
     @Test
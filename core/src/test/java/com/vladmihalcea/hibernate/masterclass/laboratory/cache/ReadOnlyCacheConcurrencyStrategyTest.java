@@ -39,6 +39,11 @@ public class ReadOnlyCacheConcurrencyStrategyTest extends AbstractTest {
         return properties;
     }
 
+    @Override
+    protected boolean sampleCacheStatistics() {
+        return true;
+    }
+
     @Before
     public void init() {
         super.init();
@@ -66,6 +71,7 @@ public class ReadOnlyCacheConcurrencyStrategyTest extends AbstractTest {
         });
         
         printEntityCacheStats(Repository.class.getName(), true);
+        assertTrue(getCacheStatisticsSampler().getRegionSample(Repository.class.getName()).getHitRatio() >= 0.5);
 
     }
 
@@ -107,6 +113,7 @@ public class ReadOnlyCacheConcurrencyStrategyTest extends AbstractTest {
 
         printEntityCacheStats(Repository.class.getName());
         printEntityCacheStats(Commit.class.getName());
+        assertTrue(getCacheStatisticsSampler().getRegionSample(Commit.class.getName()).getHitRatio() >= 0.5);
         
     }
 
@@ -0,0 +1,263 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.query;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.BaseAccessStrategy;
+import org.hibernate.HibernateException;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.QueryCache;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>PredicateQueryCache</code> - {@link QueryCache} which, for the regions declaring a
+ * {@link QueryCacheDependency}, records the parameter value every cached result depends on,
+ * so that it's only invalidated by the changes of the entities having that property value,
+ * instead of by any change of the query tables.
+ *
+ * The cached results are stored by the wrapped {@link QueryCache}, which still checks the table update
+ * timestamps when the query can't be analyzed: the region declares no dependency, the dependency
+ * parameter is missing, the root entity isn't cached by the {@link BaseAccessStrategy} regions, whose
+ * region locks the {@link PredicateQueryCacheIntegrator} turns into invalidating all results, or the
+ * {@link PredicateQueryCacheIntegrator} listeners are not registered.
+ *
+ * Like the update timestamps, a value is pre-invalidated when the entity change is flushed,
+ * and invalidated again after the transaction completes, and a cached result is only up-to-date
+ * if it was loaded by a session started after its value was last invalidated.
+ *
+ * The value invalidations are bounded by {@link #MAXIMUM_INVALIDATIONS}. Past that, the invalidations older
+ * than the oldest registered result are dropped, and the results loaded by sessions started before them
+ * are no longer trusted. If most invalidations are more recent, they are replaced by an invalidation of all results.
+ *
+ * @author Vlad Mihalcea
+ */
+public class PredicateQueryCache implements QueryCache {
+
+    public static final int MAXIMUM_REGISTRATIONS = 10000;
+
+    public static final int MAXIMUM_INVALIDATIONS = MAXIMUM_REGISTRATIONS;
+
+    private static final Field NAMED_PARAMETERS;
+
+    static {
+        try {
+            NAMED_PARAMETERS = QueryKey.class.getDeclaredField("namedParameters");
+            NAMED_PARAMETERS.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("QueryKey has no named parameters!", e);
+        }
+    }
+
+    private static final class Registration {
+        private final Object value;
+        private final long timestamp;
+
+        private Registration(Object value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final QueryCache delegate;
+
+    private final QueryCacheDependency dependency;
+
+    private final PredicateQueryCacheFactory queryCacheFactory;
+
+    private final Map<QueryKey, Registration> registrations =
+        new LinkedHashMap<QueryKey, Registration>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QueryKey, Registration> eldest) {
+                return size() > MAXIMUM_REGISTRATIONS;
+            }
+        };
+
+    private final ConcurrentHashMap<Object, Long> valueInvalidations = new ConcurrentHashMap<>();
+
+    private final AtomicLong allInvalidation = new AtomicLong();
+
+    /**
+     * The value invalidations older than this timestamp were dropped.
+     */
+    private volatile long prunedInvalidation;
+
+    private volatile Boolean analyzable;
+
+    public PredicateQueryCache(QueryCache delegate, QueryCacheDependency dependency,
+                               PredicateQueryCacheFactory queryCacheFactory) {
+        this.delegate = delegate;
+        this.dependency = dependency;
+        this.queryCacheFactory = queryCacheFactory;
+    }
+
+    public QueryCacheDependency getDependency() {
+        return dependency;
+    }
+
+    @Override
+    public void clear() throws CacheException {
+        delegate.clear();
+        synchronized (registrations) {
+            registrations.clear();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean put(QueryKey key, Type[] returnTypes, List result, boolean isNaturalKeyLookup,
+                       SessionImplementor session) throws HibernateException {
+        boolean put = delegate.put(key, returnTypes, result, isNaturalKeyLookup, session);
+        if (dependency != null) {
+            Object value = put && isAnalyzable(session) ? parameterValue(key, session) : null;
+            synchronized (registrations) {
+                if (value != null) {
+                    registrations.put(key, new Registration(value, session.getTimestamp()));
+                } else {
+                    registrations.remove(key);
+                }
+            }
+        }
+        return put;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List get(QueryKey key, Type[] returnTypes, boolean isNaturalKeyLookup, Set<Serializable> spaces,
+                    SessionImplementor session) throws HibernateException {
+        if (dependency != null) {
+            Registration registration;
+            synchronized (registrations) {
+                registration = registrations.get(key);
+            }
+            if (registration != null) {
+                if (isUpToDate(registration)) {
+                    return delegate.get(key, returnTypes, isNaturalKeyLookup, Collections.emptySet(), session);
+                }
+                return null;
+            }
+        }
+        return delegate.get(key, returnTypes, isNaturalKeyLookup, spaces, session);
+    }
+
+    @Override
+    public void destroy() {
+        delegate.destroy();
+    }
+
+    @Override
+    public QueryResultsRegion getRegion() {
+        return delegate.getRegion();
+    }
+
+    /**
+     * Invalidate the results depending on the given value until the current transaction completes.
+     */
+    public void preInvalidate(Object value) {
+        valueInvalidations.put(value, getRegion().nextTimestamp() + getRegion().getTimeout());
+        pruneInvalidations();
+    }
+
+    /**
+     * Invalidate the results depending on the given value, once the transaction changing it completed.
+     */
+    public void invalidate(Object value) {
+        valueInvalidations.put(value, getRegion().nextTimestamp());
+        pruneInvalidations();
+    }
+
+    public void preInvalidateAll() {
+        allInvalidation.set(getRegion().nextTimestamp() + getRegion().getTimeout());
+    }
+
+    public void invalidateAll() {
+        allInvalidation.set(getRegion().nextTimestamp());
+    }
+
+    int getValueInvalidationCount() {
+        return valueInvalidations.size();
+    }
+
+    private boolean isUpToDate(Registration registration) {
+        Long valueInvalidation = valueInvalidations.get(registration.value);
+        return registration.timestamp >= prunedInvalidation &&
+            registration.timestamp > allInvalidation.get() &&
+            (valueInvalidation == null || registration.timestamp > valueInvalidation);
+    }
+
+    /**
+     * Drop the value invalidations which can't make any registered result stale, and if more than half of the
+     * invalidations are still needed, replace them all by an invalidation of all results, which lasts until
+     * the latest committed one, so that the pruning cost is amortized over the following invalidations.
+     */
+    private void pruneInvalidations() {
+        if (valueInvalidations.size() <= MAXIMUM_INVALIDATIONS) {
+            return;
+        }
+        synchronized (registrations) {
+            if (valueInvalidations.size() <= MAXIMUM_INVALIDATIONS) {
+                return;
+            }
+            long now = getRegion().nextTimestamp();
+            long oldestRegistration = now;
+            for (Registration registration : registrations.values()) {
+                oldestRegistration = Math.min(oldestRegistration, registration.timestamp);
+            }
+            long threshold = oldestRegistration;
+            if (threshold > prunedInvalidation) {
+                prunedInvalidation = threshold;
+            }
+            valueInvalidations.values().removeIf(invalidation -> invalidation < threshold);
+            if (valueInvalidations.size() > MAXIMUM_INVALIDATIONS / 2) {
+                //the pre-invalidations of the in-flight transactions are in the future, so they are kept
+                long latestInvalidation = Long.MIN_VALUE;
+                for (Long invalidation : valueInvalidations.values()) {
+                    if (invalidation <= now) {
+                        latestInvalidation = Math.max(latestInvalidation, invalidation);
+                    }
+                }
+                if (latestInvalidation == Long.MIN_VALUE) {
+                    return;
+                }
+                long allThreshold = latestInvalidation;
+                allInvalidation.accumulateAndGet(allThreshold, Math::max);
+                valueInvalidations.values().removeIf(invalidation -> invalidation <= allThreshold);
+            }
+        }
+    }
+
+    private boolean isAnalyzable(SessionImplementor session) {
+        if (analyzable == null) {
+            EntityPersister persister = session.getFactory().getEntityPersister(dependency.getEntityName());
+            analyzable = queryCacheFactory.isInvalidationEnabled() &&
+                persister.hasCache() &&
+                persister.getCacheAccessStrategy() instanceof BaseAccessStrategy;
+        }
+        return analyzable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object parameterValue(QueryKey key, SessionImplementor session) {
+        Map<String, TypedValue> namedParameters;
+        try {
+            namedParameters = (Map<String, TypedValue>) NAMED_PARAMETERS.get(key);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        TypedValue typedValue = namedParameters != null ? namedParameters.get(dependency.getParameterName()) : null;
+        return typedValue != null ?
+            QueryCacheDependency.valueOf(typedValue.getType(), typedValue.getValue(), session) :
+            null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.query;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.spi.QueryCache;
+import org.hibernate.cache.spi.QueryCacheFactory;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.cfg.Settings;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <code>PredicateQueryCacheFactory</code> - Builds a {@link PredicateQueryCache} for every query cache region,
+ * the {@link QueryCacheDependency} of a region being given as a configuration property:
+ *
+ * <pre>
+ * properties.put("hibernate.cache.query_cache_factory", PredicateQueryCacheFactory.class.getName());
+ * properties.put(PredicateQueryCacheFactory.DEPENDENCY_PREFIX + "post_by_author",
+ *     new QueryCacheDependency(Post.class, "author", "authorId"));
+ * </pre>
+ *
+ * @author Vlad Mihalcea
+ */
+public class PredicateQueryCacheFactory implements QueryCacheFactory {
+
+    public static final String DEPENDENCY_PREFIX = "hibernate.cache.query_dependency.";
+
+    private final List<PredicateQueryCache> queryCaches = new CopyOnWriteArrayList<>();
+
+    private volatile boolean invalidationEnabled;
+
+    /**
+     * @return the query cache factory of the given settings, or null if it's not a {@link PredicateQueryCacheFactory}
+     */
+    public static PredicateQueryCacheFactory of(Settings settings) {
+        if (settings != null && settings.getQueryCacheFactory() instanceof PredicateQueryCacheFactory) {
+            return (PredicateQueryCacheFactory) settings.getQueryCacheFactory();
+        }
+        return null;
+    }
+
+    @Override
+    public QueryCache getQueryCache(String regionName, UpdateTimestampsCache updateTimestampsCache,
+                                    Settings settings, Properties props) throws HibernateException {
+        Object dependency = props.get(DEPENDENCY_PREFIX + regionName);
+        if (dependency != null && !(dependency instanceof QueryCacheDependency)) {
+            throw new IllegalArgumentException("Region " + regionName + " dependency must be a " +
+                QueryCacheDependency.class.getName() + " but was " + dependency);
+        }
+        PredicateQueryCache queryCache = new PredicateQueryCache(
+            new StandardQueryCache(settings, props, updateTimestampsCache, regionName),
+            (QueryCacheDependency) dependency,
+            this
+        );
+        if (dependency != null) {
+            queryCaches.add(queryCache);
+        }
+        return queryCache;
+    }
+
+    /**
+     * @return the query caches declaring a {@link QueryCacheDependency}
+     */
+    public List<PredicateQueryCache> getQueryCaches() {
+        return queryCaches;
+    }
+
+    public boolean isInvalidationEnabled() {
+        return invalidationEnabled;
+    }
+
+    void enableInvalidation() {
+        invalidationEnabled = true;
+    }
+
+    public void preInvalidateAll() {
+        for (PredicateQueryCache queryCache : queryCaches) {
+            queryCache.preInvalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        for (PredicateQueryCache queryCache : queryCaches) {
+            queryCache.invalidateAll();
+        }
+    }
+}
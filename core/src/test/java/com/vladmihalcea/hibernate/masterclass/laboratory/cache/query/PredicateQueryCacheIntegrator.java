@@ -0,0 +1,68 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.query;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.RegionLockListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.TransactionalRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * <code>PredicateQueryCacheIntegrator</code> - Registers the {@link PredicateQueryCacheInvalidator}
+ * when the query cache factory is a {@link PredicateQueryCacheFactory}. Until then, every
+ * {@link PredicateQueryCache} falls back to the table-level invalidation.
+ *
+ * With the {@link TinyLfuRegionFactory}, the bulk and native statements locking a whole entity region
+ * also invalidate all the results, since they can't tell which parameter values were changed.
+ *
+ * @author Vlad Mihalcea
+ */
+public class PredicateQueryCacheIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Configuration configuration, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        register(sessionFactory, serviceRegistry.getService(EventListenerRegistry.class));
+    }
+
+    @Override
+    public void integrate(MetadataImplementor metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        register(sessionFactory, serviceRegistry.getService(EventListenerRegistry.class));
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private void register(SessionFactoryImplementor sessionFactory, EventListenerRegistry eventListenerRegistry) {
+        PredicateQueryCacheFactory queryCacheFactory = PredicateQueryCacheFactory.of(sessionFactory.getSettings());
+        if (queryCacheFactory == null) {
+            return;
+        }
+        PredicateQueryCacheInvalidator invalidator = new PredicateQueryCacheInvalidator(queryCacheFactory);
+        eventListenerRegistry.appendListeners(EventType.POST_INSERT, invalidator);
+        eventListenerRegistry.appendListeners(EventType.POST_UPDATE, invalidator);
+        eventListenerRegistry.appendListeners(EventType.POST_DELETE, invalidator);
+        RegionFactory regionFactory = sessionFactory.getSettings().getRegionFactory();
+        if (regionFactory instanceof TinyLfuRegionFactory) {
+            ((TinyLfuRegionFactory) regionFactory).addRegionLockListener(new RegionLockListener() {
+                @Override
+                public void onLockRegion(TransactionalRegion region) {
+                    queryCacheFactory.preInvalidateAll();
+                }
+
+                @Override
+                public void onUnlockRegion(TransactionalRegion region) {
+                    queryCacheFactory.invalidateAll();
+                }
+            });
+        }
+        queryCacheFactory.enableInvalidation();
+    }
+}
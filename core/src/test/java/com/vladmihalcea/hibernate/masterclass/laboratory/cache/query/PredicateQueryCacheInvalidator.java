@@ -0,0 +1,100 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.query;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * <code>PredicateQueryCacheInvalidator</code> - Invalidates the {@link PredicateQueryCache} results depending
+ * on the inserted, updated or deleted entities, both when the change is flushed and after the transaction completes.
+ *
+ * An update invalidates both the previous and the current property value, since the entity might leave
+ * the results of the former and join the ones of the latter. When the previous state is unknown,
+ * like for a merged detached entity, all the results of the region are invalidated.
+ *
+ * @author Vlad Mihalcea
+ */
+public class PredicateQueryCacheInvalidator
+        implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final PredicateQueryCacheFactory queryCacheFactory;
+
+    public PredicateQueryCacheInvalidator(PredicateQueryCacheFactory queryCacheFactory) {
+        this.queryCacheFactory = queryCacheFactory;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        for (PredicateQueryCache queryCache : queryCacheFactory.getQueryCaches()) {
+            if (queryCache.getDependency().isDependentOn(event.getPersister())) {
+                invalidate(queryCache, event.getPersister(), event.getId(), event.getState(), event.getSession());
+            }
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        for (PredicateQueryCache queryCache : queryCacheFactory.getQueryCaches()) {
+            if (queryCache.getDependency().isDependentOn(event.getPersister())) {
+                if (event.getOldState() == null) {
+                    invalidateAll(queryCache, event.getSession());
+                    continue;
+                }
+                Object value = invalidate(queryCache, event.getPersister(), event.getId(), event.getState(),
+                    event.getSession());
+                Object oldValue = queryCache.getDependency().valueOf(event.getPersister(), event.getId(),
+                    event.getOldState(), event.getSession());
+                if (!Objects.equals(value, oldValue)) {
+                    invalidate(queryCache, oldValue, event.getSession());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        for (PredicateQueryCache queryCache : queryCacheFactory.getQueryCaches()) {
+            if (queryCache.getDependency().isDependentOn(event.getPersister())) {
+                invalidate(queryCache, event.getPersister(), event.getId(), event.getDeletedState(),
+                    event.getSession());
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private Object invalidate(PredicateQueryCache queryCache, EntityPersister persister, Serializable id,
+                              Object[] state, EventSource session) {
+        Object value = queryCache.getDependency().valueOf(persister, id, state, session);
+        invalidate(queryCache, value, session);
+        return value;
+    }
+
+    private void invalidate(PredicateQueryCache queryCache, Object value, EventSource session) {
+        if (value != null) {
+            queryCache.preInvalidate(value);
+            session.getActionQueue().registerProcess(
+                (boolean success, SessionImplementor s) -> queryCache.invalidate(value)
+            );
+        }
+    }
+
+    private void invalidateAll(PredicateQueryCache queryCache, EventSource session) {
+        queryCache.preInvalidateAll();
+        session.getActionQueue().registerProcess(
+            (boolean success, SessionImplementor s) -> queryCache.invalidateAll()
+        );
+    }
+}
@@ -0,0 +1,280 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.query;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Author;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PredicateQueryCacheTest - Test to check that the {@link PredicateQueryCache} results are only invalidated
+ * by the changes of the entities matching the query parameter
+ *
+ * @author Vlad Mihalcea
+ */
+public class PredicateQueryCacheTest extends AbstractTest {
+
+    private static final String POST_BY_AUTHOR_REGION = "post_by_author";
+
+    private static final String POST_REGION = "post";
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Author.class,
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.query_cache_factory", PredicateQueryCacheFactory.class.getName());
+        properties.put(PredicateQueryCacheFactory.DEPENDENCY_PREFIX + POST_BY_AUTHOR_REGION,
+            new QueryCacheDependency(Post.class, "author", "authorId"));
+        return properties;
+    }
+
+    @Override
+    protected Integrator integrator() {
+        return new PredicateQueryCacheIntegrator();
+    }
+
+    private Long firstAuthorId;
+
+    private Long secondAuthorId;
+
+    @Before
+    public void init() {
+        super.init();
+        firstAuthorId = doInTransaction(session -> {
+            Author author = new Author("Vlad");
+            session.persist(author);
+            session.persist(new Post("Hibernate Master Class", author));
+            return (Long) session.getIdentifier(author);
+        });
+        secondAuthorId = doInTransaction(session -> {
+            Author author = new Author("Alex");
+            session.persist(author);
+            session.persist(new Post("High-Performance Java Persistence", author));
+            return (Long) session.getIdentifier(author);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Post> getLatestPostsByAuthorId(Session session, Long authorId, String region) {
+        return (List<Post>) session.createQuery(
+            "select p " +
+            "from Post p " +
+            "join p.author a " +
+            "where a.id = :authorId " +
+            "order by p.createdOn desc")
+            .setParameter("authorId", authorId)
+            .setMaxResults(10)
+            .setCacheable(true)
+            .setCacheRegion(region)
+            .list();
+    }
+
+    private void addPost(Long authorId) {
+        doInTransaction(session -> {
+            Author author = (Author) session.load(Author.class, authorId);
+            session.persist(new Post("Hibernate Book", author));
+        });
+    }
+
+    @Test
+    public void testOtherAuthorPostDoesNotInvalidate() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        LOGGER.info("Insert a Post of the second author");
+        addPost(secondAuthorId);
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check the first author posts are still cached");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(0, statistics.getQueryCacheMissCount());
+    }
+
+    @Test
+    public void testSameAuthorPostInvalidates() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        LOGGER.info("Insert a Post of the first author");
+        addPost(firstAuthorId);
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check the first author posts are invalidated");
+            assertEquals(2, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        assertEquals(0, statistics.getQueryCacheHitCount());
+        assertEquals(1, statistics.getQueryCacheMissCount());
+    }
+
+    @Test
+    public void testPostUpdateOnlyInvalidatesItsAuthor() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+            assertEquals(1, getLatestPostsByAuthorId(session, secondAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        LOGGER.info("Update the first author Post");
+        doInTransaction(session -> {
+            Post post = getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).get(0);
+            post.setName("Hibernate Master Class, 2nd edition");
+        });
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check only the first author posts are invalidated");
+            assertEquals("Hibernate Master Class, 2nd edition",
+                getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).get(0).getName());
+            assertEquals(1, getLatestPostsByAuthorId(session, secondAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(1, statistics.getQueryCacheMissCount());
+    }
+
+    @Test
+    public void testUndeclaredRegionInvalidatesByTable() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_REGION).size());
+        });
+        LOGGER.info("Insert a Post of the second author");
+        addPost(secondAuthorId);
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check the Post table change invalidates the first author posts");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_REGION).size());
+        });
+        assertEquals(0, statistics.getQueryCacheHitCount());
+        assertEquals(1, statistics.getQueryCacheMissCount());
+    }
+
+    @Test
+    public void testBulkUpdateInvalidatesAll() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        LOGGER.info("Execute a bulk update");
+        doInTransaction(session -> {
+            assertEquals(1, session.createQuery(
+                "update Post set name = concat(name, ' draft') where author.id = :authorId")
+                .setParameter("authorId", secondAuthorId)
+                .executeUpdate());
+        });
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check the bulk update invalidates all posts");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        assertEquals(0, statistics.getQueryCacheHitCount());
+        assertEquals(1, statistics.getQueryCacheMissCount());
+    }
+
+    @Test
+    public void testValueInvalidationsOlderThanTheRegisteredResultsArePruned() {
+        PredicateQueryCache queryCache = getQueryCache(POST_BY_AUTHOR_REGION);
+        int invalidationsBefore = PredicateQueryCache.MAXIMUM_INVALIDATIONS * 3 / 5;
+        invalidateOtherValues(queryCache, 0, invalidationsBefore);
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        LOGGER.info("Invalidate enough values for the older ones to be pruned");
+        invalidateOtherValues(queryCache, invalidationsBefore, PredicateQueryCache.MAXIMUM_INVALIDATIONS + 1);
+        assertTrue(queryCache.getValueInvalidationCount() <= PredicateQueryCache.MAXIMUM_INVALIDATIONS / 2);
+
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check the first author posts are still cached");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(0, statistics.getQueryCacheMissCount());
+    }
+
+    @Test
+    public void testRecentValueInvalidationsAreReplacedByInvalidatingAll() {
+        PredicateQueryCache queryCache = getQueryCache(POST_BY_AUTHOR_REGION);
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        LOGGER.info("Invalidate more values than the invalidations can hold");
+        invalidateOtherValues(queryCache, 0, PredicateQueryCache.MAXIMUM_INVALIDATIONS + 1);
+        assertTrue(queryCache.getValueInvalidationCount() <= PredicateQueryCache.MAXIMUM_INVALIDATIONS / 2);
+
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check the first author posts are invalidated");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Check the first author posts are cached again");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(1, statistics.getQueryCacheMissCount());
+    }
+
+    @Test
+    public void testInFlightPreInvalidationsAreKeptWhenInvalidatingAll() {
+        PredicateQueryCache queryCache = getQueryCache(POST_BY_AUTHOR_REGION);
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        LOGGER.info("Pre-invalidate a value, as an in-flight transaction does, and then invalidate more values");
+        queryCache.preInvalidate(-1L - PredicateQueryCache.MAXIMUM_INVALIDATIONS);
+        invalidateOtherValues(queryCache, 0, PredicateQueryCache.MAXIMUM_INVALIDATIONS);
+        assertEquals(1, queryCache.getValueInvalidationCount());
+
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("Check the first author posts are invalidated");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Check the first author posts are cached again, since the pre-invalidation lasts" +
+                " only for its own value");
+            assertEquals(1, getLatestPostsByAuthorId(session, firstAuthorId, POST_BY_AUTHOR_REGION).size());
+        });
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(1, statistics.getQueryCacheMissCount());
+    }
+
+    private PredicateQueryCache getQueryCache(String region) {
+        return (PredicateQueryCache) ((SessionFactoryImplementor) getSessionFactory()).getQueryCache(region);
+    }
+
+    /**
+     * Invalidate values which no Author identifier matches.
+     */
+    private void invalidateOtherValues(PredicateQueryCache queryCache, int from, int to) {
+        for (int i = from; i < to; i++) {
+            queryCache.invalidate(-1L - i);
+        }
+    }
+}
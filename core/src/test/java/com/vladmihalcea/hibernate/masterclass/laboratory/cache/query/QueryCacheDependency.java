@@ -0,0 +1,104 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.query;
+
+import org.hibernate.engine.internal.ForeignKeys;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+
+/**
+ * <code>QueryCacheDependency</code> - Declares that the results of the queries cached in a region only depend
+ * on the root entities whose property is equal to a query parameter, like:
+ *
+ * <pre>
+ * select p from Post p join p.author a where a.id = :authorId
+ * </pre>
+ *
+ * which depends on the Post <code>author</code> property being equal to the <code>authorId</code> parameter.
+ * The property can be a basic property, a to-one association, compared by the associated entity identifier,
+ * or the entity identifier itself.
+ *
+ * @author Vlad Mihalcea
+ */
+public class QueryCacheDependency implements Serializable {
+
+    private final String entityName;
+
+    private final String propertyName;
+
+    private final String parameterName;
+
+    public QueryCacheDependency(Class<?> entityClass, String propertyName, String parameterName) {
+        this(entityClass.getName(), propertyName, parameterName);
+    }
+
+    public QueryCacheDependency(String entityName, String propertyName, String parameterName) {
+        this.entityName = entityName;
+        this.propertyName = propertyName;
+        this.parameterName = parameterName;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+
+    /**
+     * @return whether the entity changes of the given persister can change the cached results
+     */
+    public boolean isDependentOn(EntityPersister persister) {
+        return entityName.equals(persister.getEntityName()) ||
+            persister.getFactory().getEntityPersister(entityName).isSubclassEntityName(persister.getEntityName());
+    }
+
+    /**
+     * @param persister entity persister
+     * @param id        entity identifier
+     * @param state     entity state
+     * @param session   current session
+     * @return the dependency value of the given entity state
+     */
+    public Object valueOf(EntityPersister persister, Serializable id, Object[] state, SessionImplementor session) {
+        if (propertyName.equals(persister.getIdentifierPropertyName())) {
+            return normalize(id);
+        }
+        int index = persister.getEntityMetamodel().getPropertyIndex(propertyName);
+        return valueOf(persister.getPropertyTypes()[index], state[index], session);
+    }
+
+    /**
+     * @param type    value type
+     * @param value   parameter or property value
+     * @param session current session
+     * @return the value, or the identifier of the entity value, with all integral numbers as longs
+     */
+    public static Object valueOf(Type type, Object value, SessionImplementor session) {
+        if (value != null && type != null && type.isEntityType()) {
+            value = ForeignKeys.getEntityIdentifierIfNotUnsaved(
+                ((EntityType) type).getAssociatedEntityName(), value, session
+            );
+        }
+        return normalize(value);
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return entityName + "." + propertyName + " = :" + parameterName;
+    }
+}
@@ -0,0 +1,133 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.NaturalIdRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+
+/**
+ * <code>BaseAccessStrategy</code> - Base access strategy for the entity, collection and natural-id regions.
+ * The natural-id operations delegate to the unversioned entity ones.
+ *
+ * Since the bulk and native statements lock the whole region, the {@link RegionLockListener}s of the
+ * {@link TinyLfuRegionFactory} are notified when the region is locked and unlocked.
+ *
+ * @author Vlad Mihalcea
+ */
+public abstract class BaseAccessStrategy
+        implements EntityRegionAccessStrategy, CollectionRegionAccessStrategy, NaturalIdRegionAccessStrategy {
+
+    private final TransactionalRegion region;
+
+    protected BaseAccessStrategy(TransactionalRegion region) {
+        this.region = region;
+    }
+
+    @Override
+    public TransactionalRegion getRegion() {
+        return region;
+    }
+
+    @Override
+    public Object get(Object key, long txTimestamp) throws CacheException {
+        return region.get(key);
+    }
+
+    @Override
+    public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version) throws CacheException {
+        return putFromLoad(key, value, txTimestamp, version, region.getSettings().isMinimalPutsEnabled());
+    }
+
+    @Override
+    public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version, boolean minimalPutOverride)
+            throws CacheException {
+        if (minimalPutOverride && region.contains(key)) {
+            return false;
+        }
+        region.put(key, value);
+        return true;
+    }
+
+    @Override
+    public SoftLock lockItem(Object key, Object version) throws CacheException {
+        return null;
+    }
+
+    @Override
+    public SoftLock lockRegion() throws CacheException {
+        region.getRegionFactory().lockRegion(region);
+        return null;
+    }
+
+    @Override
+    public void unlockItem(Object key, SoftLock lock) throws CacheException {
+    }
+
+    @Override
+    public void unlockRegion(SoftLock lock) throws CacheException {
+        evictAll();
+        region.getRegionFactory().unlockRegion(region);
+    }
+
+    @Override
+    public void remove(Object key) throws CacheException {
+    }
+
+    @Override
+    public void removeAll() throws CacheException {
+        evictAll();
+    }
+
+    @Override
+    public void evict(Object key) throws CacheException {
+        region.evict(key);
+    }
+
+    @Override
+    public void evictAll() throws CacheException {
+        region.evictAll();
+    }
+
+    @Override
+    public boolean insert(Object key, Object value, Object version) throws CacheException {
+        return false;
+    }
+
+    @Override
+    public boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+        return false;
+    }
+
+    @Override
+    public boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+            throws CacheException {
+        return false;
+    }
+
+    @Override
+    public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion, SoftLock lock)
+            throws CacheException {
+        return false;
+    }
+
+    @Override
+    public boolean insert(Object key, Object value) throws CacheException {
+        return insert(key, value, null);
+    }
+
+    @Override
+    public boolean afterInsert(Object key, Object value) throws CacheException {
+        return afterInsert(key, value, null);
+    }
+
+    @Override
+    public boolean update(Object key, Object value) throws CacheException {
+        return update(key, value, null, null);
+    }
+
+    @Override
+    public boolean afterUpdate(Object key, Object value, SoftLock lock) throws CacheException {
+        return afterUpdate(key, value, null, null, lock);
+    }
+}
@@ -0,0 +1,100 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.Region;
+
+import java.util.Map;
+
+/**
+ * <code>BaseRegion</code> - Second-level cache region backed by a {@link CacheStore}.
+ *
+ * @author Vlad Mihalcea
+ */
+public abstract class BaseRegion implements Region {
+
+    private final TinyLfuRegionFactory regionFactory;
+
+    private final String name;
+
+    private final CacheStore store;
+
+    protected BaseRegion(TinyLfuRegionFactory regionFactory, String name, CacheStore store) {
+        this.regionFactory = regionFactory;
+        this.name = name;
+        this.store = store;
+    }
+
+    public CacheStore getStore() {
+        return store;
+    }
+
+    public TinyLfuRegionFactory getRegionFactory() {
+        return regionFactory;
+    }
+
+    public Object get(Object key) throws CacheException {
+        return store.get(key);
+    }
+
+    public void put(Object key, Object value) throws CacheException {
+        store.put(key, value);
+    }
+
+    public void evict(Object key) throws CacheException {
+        store.remove(key);
+    }
+
+    public void evictAll() throws CacheException {
+        store.clear();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void destroy() throws CacheException {
+        store.clear();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return store.containsKey(key);
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        return store.sizeInBytes();
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return store.size();
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    @Override
+    public Map toMap() {
+        return store.toMap();
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return regionFactory.nextTimestamp();
+    }
+
+    @Override
+    public int getTimeout() {
+        return regionFactory.getLockTimeout();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{name=" + name + ", size=" + store.size() + "}";
+    }
+}
@@ -0,0 +1,420 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <code>CacheEntryCodec</code> - Compact binary format of the second-level cache entries.
+ *
+ * Every value starts with a one byte type tag. The numbers are written as zig-zag variable length integers,
+ * so the identifiers and versions usually take one or two bytes, and the strings are written as UTF-8.
+ * The disassembled entity state, the collection state, the query results and the {@link ReadWriteAccessStrategy}
+ * items are written field by field, while any other value falls back to Java serialization.
+ * The delta encoded {@link CompactQueryResult} identifiers are copied as they are.
+ *
+ * The Hibernate entries don't expose a public constructor taking their disassembled state,
+ * so they are rebuilt through their package-private constructors, and they are Java serialized if those
+ * are not available.
+ *
+ * @author Vlad Mihalcea
+ */
+public class CacheEntryCodec {
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte SHORT = 3;
+    private static final byte BYTE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte FLOAT = 8;
+    private static final byte CHARACTER = 9;
+    private static final byte STRING = 10;
+    private static final byte DATE = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte BIG_DECIMAL = 13;
+    private static final byte BIG_INTEGER = 14;
+    private static final byte BYTE_ARRAY = 15;
+    private static final byte OBJECT_ARRAY = 16;
+    private static final byte SERIALIZABLE_ARRAY = 17;
+    private static final byte ARRAY_LIST = 18;
+    private static final byte ITEM = 19;
+    private static final byte STANDARD_CACHE_ENTRY = 20;
+    private static final byte COLLECTION_CACHE_ENTRY = 21;
+    private static final byte SERIALIZED = 22;
+    private static final byte COMPACT_QUERY_RESULT = 23;
+
+    private static final Constructor<?> STANDARD_CACHE_ENTRY_CONSTRUCTOR = declaredConstructor(
+        StandardCacheEntryImpl.class, Serializable[].class, String.class, boolean.class, Object.class
+    );
+
+    private static final Constructor<?> COLLECTION_CACHE_ENTRY_CONSTRUCTOR = collectionCacheEntryConstructor();
+
+    /**
+     * @return the encoded value
+     * @throws IllegalArgumentException if the value is neither supported by the binary format nor Serializable
+     */
+    public byte[] encode(Object value) {
+        Output output = new Output();
+        write(output, value);
+        return output.toByteArray();
+    }
+
+    public Object decode(byte[] bytes) {
+        return read(new Input(bytes));
+    }
+
+    private void write(Output output, Object value) {
+        if (value == null) {
+            output.writeByte(NULL);
+            return;
+        }
+        Class<?> type = value.getClass();
+        if (type == Long.class) {
+            output.writeByte(LONG);
+            output.writeVarLong((Long) value);
+        } else if (type == Integer.class) {
+            output.writeByte(INTEGER);
+            output.writeVarLong((Integer) value);
+        } else if (type == Short.class) {
+            output.writeByte(SHORT);
+            output.writeVarLong((Short) value);
+        } else if (type == Byte.class) {
+            output.writeByte(BYTE);
+            output.writeByte((Byte) value);
+        } else if (type == Boolean.class) {
+            output.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (type == Double.class) {
+            output.writeByte(DOUBLE);
+            output.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (type == Float.class) {
+            output.writeByte(FLOAT);
+            output.writeVarLong(Float.floatToRawIntBits((Float) value));
+        } else if (type == Character.class) {
+            output.writeByte(CHARACTER);
+            output.writeVarLong((Character) value);
+        } else if (type == String.class) {
+            output.writeByte(STRING);
+            output.writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (type == Date.class) {
+            output.writeByte(DATE);
+            output.writeVarLong(((Date) value).getTime());
+        } else if (type == Timestamp.class) {
+            Timestamp timestamp = (Timestamp) value;
+            output.writeByte(TIMESTAMP);
+            output.writeVarLong(timestamp.getTime());
+            output.writeVarLong(timestamp.getNanos());
+        } else if (type == BigDecimal.class) {
+            BigDecimal bigDecimal = (BigDecimal) value;
+            output.writeByte(BIG_DECIMAL);
+            output.writeVarLong(bigDecimal.scale());
+            output.writeBytes(bigDecimal.unscaledValue().toByteArray());
+        } else if (type == BigInteger.class) {
+            output.writeByte(BIG_INTEGER);
+            output.writeBytes(((BigInteger) value).toByteArray());
+        } else if (type == byte[].class) {
+            output.writeByte(BYTE_ARRAY);
+            output.writeBytes((byte[]) value);
+        } else if (type == Object[].class || type == Serializable[].class) {
+            Object[] array = (Object[]) value;
+            output.writeByte(type == Object[].class ? OBJECT_ARRAY : SERIALIZABLE_ARRAY);
+            output.writeVarLong(array.length);
+            for (Object element : array) {
+                write(output, element);
+            }
+        } else if (type == ArrayList.class) {
+            List<?> list = (List<?>) value;
+            output.writeByte(ARRAY_LIST);
+            output.writeVarLong(list.size());
+            for (Object element : list) {
+                write(output, element);
+            }
+        } else if (type == CompactQueryResult.class) {
+            CompactQueryResult result = (CompactQueryResult) value;
+            output.writeByte(COMPACT_QUERY_RESULT);
+            output.writeVarLong(result.getTimestamp());
+            output.writeVarLong(result.size());
+            if (result.isDeltaEncoded()) {
+                output.writeByte(TRUE);
+                output.writeBytes(result.getDeltas());
+            } else {
+                output.writeByte(FALSE);
+                for (long id : result.getIds()) {
+                    output.writeVarLong(id);
+                }
+            }
+        } else if (type == ReadWriteAccessStrategy.Item.class) {
+            ReadWriteAccessStrategy.Item item = (ReadWriteAccessStrategy.Item) value;
+            output.writeByte(ITEM);
+            output.writeVarLong(item.getTimestamp());
+            write(output, item.getVersion());
+            write(output, item.getValue());
+        } else if (type == StandardCacheEntryImpl.class && STANDARD_CACHE_ENTRY_CONSTRUCTOR != null) {
+            CacheEntry cacheEntry = (CacheEntry) value;
+            output.writeByte(STANDARD_CACHE_ENTRY);
+            output.writeBytes(cacheEntry.getSubclass().getBytes(StandardCharsets.UTF_8));
+            output.writeByte(cacheEntry.areLazyPropertiesUnfetched() ? TRUE : FALSE);
+            write(output, cacheEntry.getVersion());
+            write(output, cacheEntry.getDisassembledState());
+        } else if (type == CollectionCacheEntry.class && COLLECTION_CACHE_ENTRY_CONSTRUCTOR != null) {
+            output.writeByte(COLLECTION_CACHE_ENTRY);
+            write(output, ((CollectionCacheEntry) value).getState());
+        } else if (value instanceof Serializable) {
+            output.writeByte(SERIALIZED);
+            output.writeBytes(serialize(value));
+        } else {
+            throw new IllegalArgumentException("Value of type " + type.getName() + " is not Serializable!");
+        }
+    }
+
+    private Object read(Input input) {
+        byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case LONG:
+                return input.readVarLong();
+            case INTEGER:
+                return (int) input.readVarLong();
+            case SHORT:
+                return (short) input.readVarLong();
+            case BYTE:
+                return input.readByte();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(input.readLong());
+            case FLOAT:
+                return Float.intBitsToFloat((int) input.readVarLong());
+            case CHARACTER:
+                return (char) input.readVarLong();
+            case STRING:
+                return new String(input.readBytes(), StandardCharsets.UTF_8);
+            case DATE:
+                return new Date(input.readVarLong());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(input.readVarLong());
+                timestamp.setNanos((int) input.readVarLong());
+                return timestamp;
+            case BIG_DECIMAL:
+                int scale = (int) input.readVarLong();
+                return new BigDecimal(new BigInteger(input.readBytes()), scale);
+            case BIG_INTEGER:
+                return new BigInteger(input.readBytes());
+            case BYTE_ARRAY:
+                return input.readBytes();
+            case OBJECT_ARRAY:
+            case SERIALIZABLE_ARRAY:
+                int length = (int) input.readVarLong();
+                Object[] array = tag == OBJECT_ARRAY ? new Object[length] : new Serializable[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = read(input);
+                }
+                return array;
+            case ARRAY_LIST:
+                int size = (int) input.readVarLong();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(input));
+                }
+                return list;
+            case ITEM:
+                long itemTimestamp = input.readVarLong();
+                Object version = read(input);
+                return new ReadWriteAccessStrategy.Item(read(input), version, itemTimestamp);
+            case STANDARD_CACHE_ENTRY:
+                String subclass = new String(input.readBytes(), StandardCharsets.UTF_8);
+                boolean unfetched = input.readByte() == TRUE;
+                Object entryVersion = read(input);
+                Serializable[] state = (Serializable[]) read(input);
+                return newInstance(STANDARD_CACHE_ENTRY_CONSTRUCTOR, state, subclass, unfetched, entryVersion);
+            case COLLECTION_CACHE_ENTRY:
+                return newInstance(COLLECTION_CACHE_ENTRY_CONSTRUCTOR, read(input));
+            case SERIALIZED:
+                return deserialize(input.readBytes());
+            case COMPACT_QUERY_RESULT:
+                long resultTimestamp = input.readVarLong();
+                int resultSize = (int) input.readVarLong();
+                if (input.readByte() == TRUE) {
+                    return new CompactQueryResult(resultTimestamp, resultSize, null, input.readBytes());
+                }
+                long[] ids = new long[resultSize];
+                for (int i = 0; i < resultSize; i++) {
+                    ids[i] = input.readVarLong();
+                }
+                return new CompactQueryResult(resultTimestamp, resultSize, ids, null);
+            default:
+                throw new IllegalStateException("Unknown type tag: " + tag);
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Value of type " + value.getClass().getName() +
+                " could not be serialized!", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(java.io.ObjectStreamClass descriptor)
+                    throws IOException, ClassNotFoundException {
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                if (classLoader != null) {
+                    try {
+                        return Class.forName(descriptor.getName(), false, classLoader);
+                    } catch (ClassNotFoundException ignore) {
+                    }
+                }
+                return super.resolveClass(descriptor);
+            }
+        }) {
+            return input.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Value could not be deserialized!", e);
+        }
+    }
+
+    private static Object newInstance(Constructor<?> constructor, Object... arguments) {
+        try {
+            return constructor.newInstance(arguments);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not instantiate " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    private static Constructor<?> declaredConstructor(Class<?> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Constructor<?> collectionCacheEntryConstructor() {
+        for (Constructor<?> constructor : CollectionCacheEntry.class.getDeclaredConstructors()) {
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length == 1 && parameterTypes[0].isAssignableFrom(Serializable[].class)) {
+                try {
+                    constructor.setAccessible(true);
+                    return constructor;
+                } catch (SecurityException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static final class Output {
+        private byte[] buffer = new byte[64];
+        private int position;
+
+        private void ensureCapacity(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeVarLong(long value) {
+            long zigZag = (value << 1) ^ (value >> 63);
+            ensureCapacity(10);
+            while ((zigZag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            buffer[position++] = (byte) zigZag;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        private Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private byte readByte() {
+            return buffer[position++];
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private long readVarLong() {
+            long zigZag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                zigZag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+
+        private byte[] readBytes() {
+            int length = (int) readVarLong();
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CacheEntryCodecTest - Test to check that every value type supported by the {@link CacheEntryCodec}
+ * is written with its own type tag and decoded back to an equal value
+ *
+ * @author Vlad Mihalcea
+ */
+public class CacheEntryCodecTest {
+
+    private final CacheEntryCodec codec = new CacheEntryCodec();
+
+    @Test
+    public void testScalars() {
+        assertNull(roundTrip(0, null));
+        assertRoundTrip(1, 0L);
+        assertRoundTrip(1, -1L);
+        assertRoundTrip(1, Long.MIN_VALUE);
+        assertRoundTrip(1, Long.MAX_VALUE);
+        assertRoundTrip(2, Integer.MIN_VALUE);
+        assertRoundTrip(3, (short) -300);
+        assertRoundTrip(4, (byte) -7);
+        assertRoundTrip(5, Boolean.TRUE);
+        assertRoundTrip(6, Boolean.FALSE);
+        assertRoundTrip(7, -123.456d);
+        assertRoundTrip(8, 3.5f);
+        assertRoundTrip(9, '\u20ac');
+        assertRoundTrip(10, "High-Performance Java Persistence \u20ac");
+        assertRoundTrip(10, "");
+        assertRoundTrip(11, new Date(1445000000123L));
+        Timestamp timestamp = new Timestamp(1445000000123L);
+        timestamp.setNanos(123456789);
+        assertRoundTrip(12, timestamp);
+        assertRoundTrip(13, new BigDecimal("-199.990"));
+        assertRoundTrip(14, new BigInteger("-123456789012345678901234567890"));
+    }
+
+    @Test
+    public void testArraysAndLists() {
+        byte[] bytes = {1, -2, 3};
+        assertArrayEquals(bytes, (byte[]) roundTrip(15, bytes));
+
+        Object[] objects = {1L, "Vlad", null, new Object[]{2}};
+        Object[] decodedObjects = (Object[]) roundTrip(16, objects);
+        assertSame(Object[].class, decodedObjects.getClass());
+        assertEquals(Arrays.deepToString(objects), Arrays.deepToString(decodedObjects));
+
+        Serializable[] serializables = {1L, "Vlad", null};
+        Serializable[] decodedSerializables = (Serializable[]) roundTrip(17, serializables);
+        assertSame(Serializable[].class, decodedSerializables.getClass());
+        assertArrayEquals(serializables, decodedSerializables);
+
+        ArrayList<Object> list = new ArrayList<>(Arrays.asList(1L, "Vlad", null, 2));
+        assertRoundTrip(18, list);
+    }
+
+    @Test
+    public void testItem() {
+        ReadWriteAccessStrategy.Item item = new ReadWriteAccessStrategy.Item("Vlad", 3, 123456789L);
+        ReadWriteAccessStrategy.Item decoded = (ReadWriteAccessStrategy.Item) roundTrip(19, item);
+        assertEquals("Vlad", decoded.getValue());
+        assertEquals(3, decoded.getVersion());
+        assertEquals(123456789L, decoded.getTimestamp());
+    }
+
+    @Test
+    public void testStandardCacheEntry() throws Exception {
+        Constructor<StandardCacheEntryImpl> constructor = StandardCacheEntryImpl.class.getDeclaredConstructor(
+            Serializable[].class, String.class, boolean.class, Object.class
+        );
+        constructor.setAccessible(true);
+        Serializable[] state = {1L, "Hibernate Master Class", null};
+        StandardCacheEntryImpl cacheEntry = constructor.newInstance(state, "Repository", true, 7);
+
+        StandardCacheEntryImpl decoded = (StandardCacheEntryImpl) roundTrip(20, cacheEntry);
+        assertEquals("Repository", decoded.getSubclass());
+        assertTrue(decoded.areLazyPropertiesUnfetched());
+        assertEquals(7, decoded.getVersion());
+        assertArrayEquals(state, decoded.getDisassembledState());
+    }
+
+    @Test
+    public void testCollectionCacheEntry() throws Exception {
+        Constructor<CollectionCacheEntry> constructor = CollectionCacheEntry.class.getDeclaredConstructor(
+            Serializable.class
+        );
+        constructor.setAccessible(true);
+        Serializable[] state = {1L, 2L, 3L};
+        CollectionCacheEntry cacheEntry = constructor.newInstance((Object) state);
+
+        CollectionCacheEntry decoded = (CollectionCacheEntry) roundTrip(21, cacheEntry);
+        assertArrayEquals(state, decoded.getState());
+    }
+
+    @Test
+    public void testSerializedFallback() {
+        assertRoundTrip(22, UUID.fromString("123e4567-e89b-12d3-a456-426655440000"));
+    }
+
+    @Test
+    public void testCompactQueryResult() {
+        CompactQueryResult deltaEncoded = CompactQueryResult.compact(Arrays.asList(100L, 1L, 2L, 5L, 1000L));
+        assertTrue(deltaEncoded.isDeltaEncoded());
+        CompactQueryResult decodedDeltaEncoded = (CompactQueryResult) roundTrip(23, deltaEncoded);
+        assertTrue(decodedDeltaEncoded.isDeltaEncoded());
+        assertEquals(deltaEncoded.toList(), decodedDeltaEncoded.toList());
+
+        CompactQueryResult unordered = CompactQueryResult.compact(Arrays.asList(100L, 5L, -1L, 1000L));
+        assertFalse(unordered.isDeltaEncoded());
+        CompactQueryResult decodedUnordered = (CompactQueryResult) roundTrip(23, unordered);
+        assertFalse(decodedUnordered.isDeltaEncoded());
+        assertEquals(unordered.toList(), decodedUnordered.toList());
+        assertEquals(100L, decodedUnordered.getTimestamp());
+        assertEquals(3, decodedUnordered.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonSerializableValue() {
+        codec.encode(new Object());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownTag() {
+        codec.decode(new byte[]{(byte) 127});
+    }
+
+    private void assertRoundTrip(int tag, Object value) {
+        assertEquals(value, roundTrip(tag, value));
+    }
+
+    private Object roundTrip(int tag, Object value) {
+        byte[] bytes = codec.encode(value);
+        assertEquals("Type tag of " + value, tag, bytes[0]);
+        return codec.decode(bytes);
+    }
+}
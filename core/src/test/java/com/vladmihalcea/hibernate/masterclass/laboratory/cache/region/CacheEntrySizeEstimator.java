@@ -0,0 +1,117 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * <code>CacheEntrySizeEstimator</code> - Estimates the heap footprint of the second-level cache keys and values,
+ * for a 64-bit JVM using compressed object pointers, where the object header takes 12 bytes, a reference 4 bytes,
+ * and every object is aligned to 8 bytes.
+ *
+ * The values are walked like the {@link CacheEntryCodec} writes them, so the boxed numbers, the strings and the
+ * arrays are counted as if they were only referenced by the cache entry, except for the Long and Integer values
+ * the JVM caches. The objects shared with the session factory, like the entity names or the Hibernate types, are not
+ * counted, and the query keys, whose structure is private, are given a flat size.
+ *
+ * @author Vlad Mihalcea
+ */
+public final class CacheEntrySizeEstimator {
+
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int REFERENCE = 4;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int BOXED_NUMBER = 16;
+
+    private static final int QUERY_KEY = 256;
+
+    private static final int UNKNOWN_OBJECT = 64;
+
+    private CacheEntrySizeEstimator() {
+    }
+
+    public static long sizeOf(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Enum) {
+            return 0;
+        }
+        Class<?> type = value.getClass();
+        if (type == Long.class) {
+            long number = (Long) value;
+            return number >= -128 && number <= 127 ? 0 : BOXED_NUMBER;
+        } else if (type == Integer.class) {
+            int number = (Integer) value;
+            return number >= -128 && number <= 127 ? 0 : BOXED_NUMBER;
+        } else if (value instanceof Number && !(value instanceof BigDecimal) && !(value instanceof BigInteger) ||
+                type == Character.class) {
+            return BOXED_NUMBER;
+        } else if (type == String.class) {
+            return align(OBJECT_HEADER + REFERENCE + 4) + align(ARRAY_HEADER + 2L * ((String) value).length());
+        } else if (type == Date.class) {
+            return align(OBJECT_HEADER + 8 + REFERENCE);
+        } else if (type == Timestamp.class) {
+            return align(OBJECT_HEADER + 8 + REFERENCE + 4);
+        } else if (type == BigInteger.class) {
+            return bigIntegerSize((BigInteger) value);
+        } else if (type == BigDecimal.class) {
+            return align(OBJECT_HEADER + REFERENCE + 8 + 4 + 4 + REFERENCE) +
+                bigIntegerSize(((BigDecimal) value).unscaledValue());
+        } else if (type == byte[].class) {
+            return align(ARRAY_HEADER + (long) ((byte[]) value).length);
+        } else if (type == long[].class) {
+            return align(ARRAY_HEADER + 8L * ((long[]) value).length);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = align(ARRAY_HEADER + (long) REFERENCE * array.length);
+            for (Object element : array) {
+                size += sizeOf(element);
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            long size = align(OBJECT_HEADER + 4 + 4 + REFERENCE) +
+                align(ARRAY_HEADER + (long) REFERENCE * collection.size());
+            for (Object element : collection) {
+                size += sizeOf(element);
+            }
+            return size;
+        } else if (type == CompactQueryResult.class) {
+            return ((CompactQueryResult) value).sizeInBytes();
+        } else if (type == ReadWriteAccessStrategy.Item.class) {
+            ReadWriteAccessStrategy.Item item = (ReadWriteAccessStrategy.Item) value;
+            return align(OBJECT_HEADER + REFERENCE + REFERENCE + 8) + sizeOf(item.getVersion()) +
+                sizeOf(item.getValue());
+        } else if (type == ReadWriteAccessStrategy.Lock.class) {
+            ReadWriteAccessStrategy.Lock lock = (ReadWriteAccessStrategy.Lock) value;
+            return align(OBJECT_HEADER + 6 * REFERENCE + 4 * 8 + 4 + 2) + sizeOf(lock.getLockedItem());
+        } else if (value instanceof CacheEntry) {
+            CacheEntry cacheEntry = (CacheEntry) value;
+            return align(OBJECT_HEADER + 3 * REFERENCE + 1) + sizeOf(cacheEntry.getVersion()) +
+                sizeOf(cacheEntry.getDisassembledState());
+        } else if (type == CollectionCacheEntry.class) {
+            return align(OBJECT_HEADER + REFERENCE) + sizeOf(((CollectionCacheEntry) value).getState());
+        } else if (type == CacheKey.class) {
+            return align(OBJECT_HEADER + 4 * REFERENCE + 4) + sizeOf(((CacheKey) value).getKey());
+        } else if (type == QueryKey.class) {
+            return QUERY_KEY;
+        }
+        return UNKNOWN_OBJECT;
+    }
+
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static long bigIntegerSize(BigInteger value) {
+        return align(OBJECT_HEADER + 5 * 4 + REFERENCE) + align(ARRAY_HEADER + 4L * ((value.bitLength() + 31) / 32));
+    }
+}
@@ -0,0 +1,41 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import java.util.Map;
+
+/**
+ * <code>CacheStore</code> - The storage of a second-level cache region, which must be thread-safe.
+ *
+ * @author Vlad Mihalcea
+ */
+public interface CacheStore {
+
+    /**
+     * @return the value, or null if the key is not cached or the entry expired
+     */
+    Object get(Object key);
+
+    void put(Object key, Object value);
+
+    void remove(Object key);
+
+    void clear();
+
+    boolean containsKey(Object key);
+
+    long size();
+
+    /**
+     * @return the estimated memory footprint in bytes, or -1 if the store doesn't account for it
+     */
+    long sizeInBytes();
+
+    Map<Object, Object> toMap();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getPutCount();
+
+    long getEvictionCount();
+}
@@ -0,0 +1,149 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <code>CompactQueryResult</code> - Compact form of a cached query result made of entity identifiers.
+ *
+ * The StandardQueryCache caches a list holding the result timestamp followed by the disassembled rows,
+ * which for an entity query are the boxed identifiers, so every row costs a list slot and a Long object.
+ * When all rows are Long values, the identifiers are kept in a primitive <code>long[]</code> instead, and if they
+ * are sorted, as for a query ordered by identifier or a time-ordered sequence, they are delta encoded
+ * as zig-zag variable length integers, so the consecutive identifiers take a single byte each.
+ *
+ * @author Vlad Mihalcea
+ */
+public final class CompactQueryResult implements Serializable {
+
+    private final long timestamp;
+
+    private final int size;
+
+    private final long[] ids;
+
+    private final byte[] deltas;
+
+    CompactQueryResult(long timestamp, int size, long[] ids, byte[] deltas) {
+        this.timestamp = timestamp;
+        this.size = size;
+        this.ids = ids;
+        this.deltas = deltas;
+    }
+
+    /**
+     * @param result cached query result, whose first element is the result timestamp
+     * @return the compact result, or null if the result rows are not all Long values
+     */
+    public static CompactQueryResult compact(List<?> result) {
+        if (result.isEmpty() || !(result.get(0) instanceof Long)) {
+            return null;
+        }
+        int size = result.size() - 1;
+        long[] ids = new long[size];
+        boolean ascending = true;
+        boolean descending = true;
+        for (int i = 0; i < size; i++) {
+            Object row = result.get(i + 1);
+            if (!(row instanceof Long)) {
+                return null;
+            }
+            ids[i] = (Long) row;
+            if (i > 0) {
+                ascending &= ids[i] >= ids[i - 1];
+                descending &= ids[i] <= ids[i - 1];
+            }
+        }
+        long timestamp = (Long) result.get(0);
+        if (size > 1 && (ascending || descending)) {
+            return new CompactQueryResult(timestamp, size, null, encodeDeltas(ids));
+        }
+        return new CompactQueryResult(timestamp, size, ids, null);
+    }
+
+    /**
+     * @return the cached query result, as the StandardQueryCache expects it
+     */
+    public List<Object> toList() {
+        List<Object> result = new ArrayList<>(size + 1);
+        result.add(timestamp);
+        if (ids != null) {
+            for (long id : ids) {
+                result.add(id);
+            }
+        } else {
+            long id = 0;
+            int position = 0;
+            for (int i = 0; i < size; i++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = deltas[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                id += (value >>> 1) ^ -(value & 1);
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isDeltaEncoded() {
+        return deltas != null;
+    }
+
+    long[] getIds() {
+        return ids;
+    }
+
+    byte[] getDeltas() {
+        return deltas;
+    }
+
+    /**
+     * @return the estimated heap footprint, assuming compressed object pointers
+     */
+    public long sizeInBytes() {
+        return CacheEntrySizeEstimator.align(12 + 8 + 4 + 4 + 4) +
+            (ids != null ? CacheEntrySizeEstimator.align(16 + 8L * ids.length) : 0) +
+            (deltas != null ? CacheEntrySizeEstimator.align(16 + (long) deltas.length) : 0);
+    }
+
+    private static byte[] encodeDeltas(long[] ids) {
+        byte[] buffer = new byte[ids.length * 10];
+        int position = 0;
+        long previous = 0;
+        for (long id : ids) {
+            long delta = id - previous;
+            long value = (delta << 1) ^ (delta >> 63);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+            previous = id;
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{size=" + size + ", deltaEncoded=" + isDeltaEncoded() +
+            ", sizeInBytes=" + sizeInBytes() + "}";
+    }
+}
@@ -0,0 +1,122 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Author;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CompactQueryResultTest - Test to check that the query cache regions store the identifier results
+ * as {@link CompactQueryResult} values and report their memory footprint
+ *
+ * @author Vlad Mihalcea
+ */
+public class CompactQueryResultTest extends AbstractTest {
+
+    private static final String POST_BY_AUTHOR_REGION = "post_by_author";
+
+    private static final int POST_COUNT = 100;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Author.class,
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        return properties;
+    }
+
+    private Long authorId;
+
+    @Before
+    public void init() {
+        super.init();
+        authorId = doInTransaction(session -> {
+            Author author = new Author("Vlad");
+            session.persist(author);
+            for (int i = 0; i < POST_COUNT; i++) {
+                session.persist(new Post("Post " + i, author));
+            }
+            return (Long) session.getIdentifier(author);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Post> getPostsByAuthorId(Session session) {
+        return (List<Post>) session.createQuery(
+            "select p " +
+            "from Post p " +
+            "where p.author.id = :authorId " +
+            "order by p.id")
+            .setParameter("authorId", authorId)
+            .setCacheable(true)
+            .setCacheRegion(POST_BY_AUTHOR_REGION)
+            .list();
+    }
+
+    @Test
+    public void testSortedIdentifiersAreDeltaEncoded() {
+        doInTransaction(session -> {
+            assertEquals(POST_COUNT, getPostsByAuthorId(session).size());
+        });
+        GeneralRegion region = (GeneralRegion) ((SessionFactoryImplementor) getSessionFactory())
+            .getQueryCache(POST_BY_AUTHOR_REGION).getRegion();
+        CompactingCacheStore store = (CompactingCacheStore) region.getStore();
+        CompactQueryResult result = (CompactQueryResult) store.getStore().toMap().values().iterator().next();
+        assertTrue(result.isDeltaEncoded());
+        assertEquals(POST_COUNT, result.size());
+
+        long compactSize = result.sizeInBytes();
+        long listSize = CacheEntrySizeEstimator.sizeOf(result.toList());
+        LOGGER.info("Bytes per cached row, compact: {}, list: {}",
+            (double) compactSize / POST_COUNT, (double) listSize / POST_COUNT);
+        assertTrue(listSize > 2 * compactSize);
+        assertTrue(region.getSizeInMemory() >= compactSize);
+
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            List<Post> posts = getPostsByAuthorId(session);
+            assertEquals(POST_COUNT, posts.size());
+            assertEquals("Post 0", posts.get(0).getName());
+            assertEquals("Post " + (POST_COUNT - 1), posts.get(POST_COUNT - 1).getName());
+        });
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void testCodecKeepsDeltaEncoding() {
+        doInTransaction(session -> {
+            assertEquals(POST_COUNT, getPostsByAuthorId(session).size());
+        });
+        GeneralRegion region = (GeneralRegion) ((SessionFactoryImplementor) getSessionFactory())
+            .getQueryCache(POST_BY_AUTHOR_REGION).getRegion();
+        CompactQueryResult result = (CompactQueryResult)
+            ((CompactingCacheStore) region.getStore()).getStore().toMap().values().iterator().next();
+        CacheEntryCodec codec = new CacheEntryCodec();
+        byte[] bytes = codec.encode(result);
+        CompactQueryResult decoded = (CompactQueryResult) codec.decode(bytes);
+        assertTrue(decoded.isDeltaEncoded());
+        assertEquals(result.toList(), decoded.toList());
+        LOGGER.info("Encoded bytes per cached row, compact: {}, list: {}",
+            (double) bytes.length / POST_COUNT, (double) codec.encode(result.toList()).length / POST_COUNT);
+    }
+}
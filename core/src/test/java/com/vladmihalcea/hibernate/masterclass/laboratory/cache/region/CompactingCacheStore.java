@@ -0,0 +1,99 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>CompactingCacheStore</code> - {@link CacheStore} of the query results regions, which stores the
+ * identifier results as {@link CompactQueryResult} values, and expands them back when they are read.
+ * The other query results, like the scalar projections, are stored unchanged.
+ *
+ * @author Vlad Mihalcea
+ */
+public class CompactingCacheStore implements CacheStore {
+
+    private final CacheStore store;
+
+    public CompactingCacheStore(CacheStore store) {
+        this.store = store;
+    }
+
+    public CacheStore getStore() {
+        return store;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return expand(store.get(key));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value instanceof List) {
+            CompactQueryResult result = CompactQueryResult.compact((List<?>) value);
+            if (result != null) {
+                value = result;
+            }
+        }
+        store.put(key, value);
+    }
+
+    @Override
+    public void remove(Object key) {
+        store.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return store.containsKey(key);
+    }
+
+    @Override
+    public long size() {
+        return store.size();
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return store.sizeInBytes();
+    }
+
+    @Override
+    public Map<Object, Object> toMap() {
+        Map<Object, Object> map = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : store.toMap().entrySet()) {
+            map.put(entry.getKey(), expand(entry.getValue()));
+        }
+        return map;
+    }
+
+    @Override
+    public long getHitCount() {
+        return store.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return store.getMissCount();
+    }
+
+    @Override
+    public long getPutCount() {
+        return store.getPutCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return store.getEvictionCount();
+    }
+
+    private static Object expand(Object value) {
+        return value instanceof CompactQueryResult ? ((CompactQueryResult) value).toList() : value;
+    }
+}
@@ -0,0 +1,103 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>ConcurrentMapCacheStore</code> - Unbounded {@link CacheStore}, used for the update timestamps region,
+ * whose entries must never be evicted.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ConcurrentMapCacheStore implements CacheStore {
+
+    /**
+     * The estimated size of the {@link ConcurrentHashMap} node.
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private final ConcurrentHashMap<Object, Object> data = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    @Override
+    public Object get(Object key) {
+        Object value = data.get(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        data.put(key, value);
+        puts.increment();
+    }
+
+    @Override
+    public void remove(Object key) {
+        data.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        data.clear();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * The footprint is estimated on demand, since this store only holds the few update timestamps.
+     */
+    @Override
+    public long sizeInBytes() {
+        long sizeInBytes = 0;
+        for (Map.Entry<Object, Object> entry : data.entrySet()) {
+            sizeInBytes += ENTRY_OVERHEAD + CacheEntrySizeEstimator.sizeOf(entry.getKey()) +
+                CacheEntrySizeEstimator.sizeOf(entry.getValue());
+        }
+        return sizeInBytes;
+    }
+
+    @Override
+    public Map<Object, Object> toMap() {
+        return new HashMap<>(data);
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+/**
+ * <code>FrequencySketch</code> - Count-Min sketch with 4-bit counters, estimating how often a key was accessed
+ * recently. Every key is mapped to four counters of the same <code>long</code> word group, and all counters
+ * are halved once the number of increments reaches ten times the table size, so that the old
+ * accesses are forgotten.
+ *
+ * It is not thread-safe, so it must only be used while holding the eviction lock.
+ *
+ * @author Vlad Mihalcea
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /**
+     * The largest table, of 8 MiB, which keeps the sketch small even for the very large stores.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 20;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    /**
+     * @param expectedSize the number of entries the store is expected to hold
+     */
+    FrequencySketch(long expectedSize) {
+        int capacity = 8;
+        long expected = Math.min(expectedSize, MAXIMUM_CAPACITY);
+        while (capacity < expected) {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+        tableMask = capacity - 1;
+        sampleSize = 10 * capacity;
+    }
+
+    /**
+     * @return the number of <code>long</code> words of the table
+     */
+    int capacity() {
+        return table.length;
+    }
+
+    /**
+     * @return the estimated number of recent accesses, at most 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xFL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long index = (hash + SEEDS[i]) * SEEDS[i];
+        index += index >>> 32;
+        return ((int) index) & tableMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
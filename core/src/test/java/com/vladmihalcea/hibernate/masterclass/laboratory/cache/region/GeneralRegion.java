@@ -0,0 +1,16 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+
+/**
+ * <code>GeneralRegion</code> - The query results and the update timestamps regions.
+ *
+ * @author Vlad Mihalcea
+ */
+public class GeneralRegion extends BaseRegion implements QueryResultsRegion, TimestampsRegion {
+
+    public GeneralRegion(TinyLfuRegionFactory regionFactory, String name, CacheStore store) {
+        super(regionFactory, name, store);
+    }
+}
@@ -0,0 +1,41 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.access.SoftLock;
+
+/**
+ * <code>NonStrictReadWriteAccessStrategy</code> - NONSTRICT_READ_WRITE access strategy, which doesn't lock
+ * the entries but invalidates them on update, both before and after the transaction completes.
+ *
+ * @author Vlad Mihalcea
+ */
+public class NonStrictReadWriteAccessStrategy extends BaseAccessStrategy {
+
+    public NonStrictReadWriteAccessStrategy(TransactionalRegion region) {
+        super(region);
+    }
+
+    @Override
+    public void unlockItem(Object key, SoftLock lock) throws CacheException {
+        evict(key);
+    }
+
+    @Override
+    public void remove(Object key) throws CacheException {
+        evict(key);
+    }
+
+    @Override
+    public boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+            throws CacheException {
+        remove(key);
+        return false;
+    }
+
+    @Override
+    public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion, SoftLock lock)
+            throws CacheException {
+        unlockItem(key, lock);
+        return false;
+    }
+}
@@ -0,0 +1,478 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>OffHeapCacheStore</code> - Bounded {@link CacheStore} which keeps the values in direct {@link ByteBuffer}
+ * slabs, outside of the Java heap, so that a large cache doesn't add to the live set the garbage collector
+ * has to trace and copy.
+ *
+ * The values are encoded with the {@link CacheEntryCodec} and stored in fixed size blocks. Every slab is carved
+ * into blocks of a single size class, the size classes growing by 25% from 64 bytes up to the slab size,
+ * and the slabs are assigned to the size classes on demand, until the maximum number of bytes is reached.
+ * From then on, every size class evicts its own least recently used entries to make room for the new ones,
+ * while a size class without any entry takes over a slab from the size class owning the most slabs,
+ * the one holding its least recently used entry, so the values of a new size don't get rejected forever.
+ *
+ * The keys and a small entry descriptor stay on the heap, in an index guarded by a single lock, which is also
+ * held while copying the value bytes out of the slab, since the block could be reused by a concurrent put.
+ * The values are decoded after the lock is released.
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapCacheStore implements CacheStore {
+
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private static final int MINIMUM_BLOCK_SIZE = 64;
+
+    private static final class Entry {
+        private final Object key;
+        private final SizeClass sizeClass;
+        private final long address;
+        private final int length;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(Object key, SizeClass sizeClass, long address, int length) {
+            this.key = key;
+            this.sizeClass = sizeClass;
+            this.address = address;
+            this.length = length;
+        }
+    }
+
+    private static final class SizeClass {
+        private final int blockSize;
+        private long[] freeBlocks = new long[16];
+        private int freeBlockCount;
+        private int slabCount;
+        private Entry head;
+        private Entry tail;
+
+        private SizeClass(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        private void pushFreeBlock(long address) {
+            if (freeBlockCount == freeBlocks.length) {
+                freeBlocks = Arrays.copyOf(freeBlocks, freeBlockCount << 1);
+            }
+            freeBlocks[freeBlockCount++] = address;
+        }
+
+        private long popFreeBlock() {
+            return freeBlockCount > 0 ? freeBlocks[--freeBlockCount] : -1;
+        }
+
+        private void removeFreeBlocks(long slabAddress, int slabSize) {
+            int count = 0;
+            for (int i = 0; i < freeBlockCount; i++) {
+                long address = freeBlocks[i];
+                if (address < slabAddress || address >= slabAddress + slabSize) {
+                    freeBlocks[count++] = address;
+                }
+            }
+            freeBlockCount = count;
+        }
+
+        private void addFirst(Entry entry) {
+            entry.previous = null;
+            entry.next = head;
+            if (head == null) {
+                tail = entry;
+            } else {
+                head.previous = entry;
+            }
+            head = entry;
+        }
+
+        private void remove(Entry entry) {
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.previous = null;
+            entry.next = null;
+        }
+
+        private void moveToFirst(Entry entry) {
+            if (entry != head) {
+                remove(entry);
+                addFirst(entry);
+            }
+        }
+    }
+
+    private final CacheEntryCodec codec;
+
+    private final int slabSize;
+
+    private final ByteBuffer[] slabs;
+
+    private final SizeClass[] slabSizeClasses;
+
+    private final SizeClass[] sizeClasses;
+
+    private final Map<Object, Entry> index = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int slabCount;
+
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maximumBytes maximum off-heap memory, rounded down to a multiple of the slab size
+     */
+    public OffHeapCacheStore(long maximumBytes) {
+        this(maximumBytes, DEFAULT_SLAB_SIZE, new CacheEntryCodec());
+    }
+
+    /**
+     * @param maximumBytes maximum off-heap memory, rounded down to a multiple of the slab size
+     * @param slabSize     slab size, which is also the largest value size
+     * @param codec        value codec
+     */
+    public OffHeapCacheStore(long maximumBytes, int slabSize, CacheEntryCodec codec) {
+        if (slabSize < MINIMUM_BLOCK_SIZE) {
+            throw new IllegalArgumentException("The slab size must be at least " + MINIMUM_BLOCK_SIZE + " bytes!");
+        }
+        long maximumSlabCount = maximumBytes / slabSize;
+        if (maximumSlabCount < 1 || maximumSlabCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The maximum bytes must hold between 1 and " + Integer.MAX_VALUE +
+                " slabs of " + slabSize + " bytes!");
+        }
+        this.codec = codec;
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) maximumSlabCount];
+        this.slabSizeClasses = new SizeClass[(int) maximumSlabCount];
+        this.sizeClasses = newSizeClasses(slabSize);
+    }
+
+    @Override
+    public Object get(Object key) {
+        byte[] bytes;
+        lock.lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            entry.sizeClass.moveToFirst(entry);
+            bytes = read(entry);
+        } finally {
+            lock.unlock();
+        }
+        hits.increment();
+        return codec.decode(bytes);
+    }
+
+    /**
+     * The values which can't be encoded or which are larger than the slab size are not cached,
+     * as if they were evicted right away.
+     */
+    @Override
+    public void put(Object key, Object value) {
+        byte[] bytes;
+        try {
+            bytes = codec.encode(value);
+        } catch (IllegalArgumentException e) {
+            rejections.increment();
+            remove(key);
+            return;
+        }
+        SizeClass sizeClass = sizeClassOf(bytes.length);
+        lock.lock();
+        try {
+            Entry previous = index.remove(key);
+            if (previous != null) {
+                release(previous);
+            }
+            long address = sizeClass == null ? -1 : allocate(sizeClass);
+            if (address < 0) {
+                rejections.increment();
+                return;
+            }
+            Entry entry = new Entry(key, sizeClass, address, bytes.length);
+            write(entry, bytes);
+            sizeClass.addFirst(entry);
+            index.put(key, entry);
+            usedBytes += sizeClass.blockSize;
+            puts.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(Object key) {
+        lock.lock();
+        try {
+            Entry entry = index.remove(key);
+            if (entry != null) {
+                release(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The slabs stay assigned to their size classes, so the off-heap memory is only
+     * released when the store is garbage collected.
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Entry entry : index.values()) {
+                entry.sizeClass.pushFreeBlock(entry.address);
+            }
+            for (SizeClass sizeClass : sizeClasses) {
+                sizeClass.head = null;
+                sizeClass.tail = null;
+            }
+            index.clear();
+            usedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        lock.lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of the blocks holding the cached values
+     */
+    @Override
+    public long sizeInBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of the slabs allocated so far
+     */
+    public long allocatedBytes() {
+        lock.lock();
+        try {
+            return (long) slabCount * slabSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<Object, Object> toMap() {
+        Map<Object, byte[]> values = new HashMap<>();
+        lock.lock();
+        try {
+            for (Entry entry : index.values()) {
+                values.put(entry.key, read(entry));
+            }
+        } finally {
+            lock.unlock();
+        }
+        Map<Object, Object> map = new HashMap<>();
+        for (Map.Entry<Object, byte[]> value : values.entrySet()) {
+            map.put(value.getKey(), codec.decode(value.getValue()));
+        }
+        return map;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of values which were not cached since they couldn't be encoded or were larger than a slab
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    private long allocate(SizeClass sizeClass) {
+        long address = sizeClass.popFreeBlock();
+        if (address >= 0) {
+            return address;
+        }
+        if (slabCount < slabs.length) {
+            int slabIndex = slabCount++;
+            slabs[slabIndex] = ByteBuffer.allocateDirect(slabSize);
+            return assign(slabIndex, sizeClass);
+        }
+        Entry victim = sizeClass.tail;
+        if (victim != null) {
+            evict(victim);
+            return victim.address;
+        }
+        int slabIndex = reassignableSlab(sizeClass);
+        if (slabIndex < 0) {
+            return -1;
+        }
+        SizeClass donor = slabSizeClasses[slabIndex];
+        long slabAddress = (long) slabIndex * slabSize;
+        for (Entry entry = donor.head; entry != null; ) {
+            Entry next = entry.next;
+            if (entry.address >= slabAddress && entry.address < slabAddress + slabSize) {
+                evict(entry);
+            }
+            entry = next;
+        }
+        donor.removeFreeBlocks(slabAddress, slabSize);
+        donor.slabCount--;
+        return assign(slabIndex, sizeClass);
+    }
+
+    /**
+     * Carve the slab into blocks of the size class.
+     *
+     * @return the address of the first block, the other ones being added to the free blocks
+     */
+    private long assign(int slabIndex, SizeClass sizeClass) {
+        slabSizeClasses[slabIndex] = sizeClass;
+        sizeClass.slabCount++;
+        long slabAddress = (long) slabIndex * slabSize;
+        int blockCount = slabSize / sizeClass.blockSize;
+        for (int i = blockCount - 1; i > 0; i--) {
+            sizeClass.pushFreeBlock(slabAddress + (long) i * sizeClass.blockSize);
+        }
+        return slabAddress;
+    }
+
+    /**
+     * @return the slab holding the least recently used entry of the size class owning the most slabs,
+     * or -1 if no other size class owns a slab
+     */
+    private int reassignableSlab(SizeClass sizeClass) {
+        SizeClass donor = null;
+        for (SizeClass candidate : sizeClasses) {
+            if (candidate != sizeClass && candidate.slabCount > 0 &&
+                (donor == null || candidate.slabCount > donor.slabCount)) {
+                donor = candidate;
+            }
+        }
+        if (donor == null) {
+            return -1;
+        }
+        if (donor.tail != null) {
+            return (int) (donor.tail.address / slabSize);
+        }
+        for (int i = 0; i < slabCount; i++) {
+            if (slabSizeClasses[i] == donor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void evict(Entry entry) {
+        index.remove(entry.key);
+        entry.sizeClass.remove(entry);
+        usedBytes -= entry.sizeClass.blockSize;
+        evictions.increment();
+    }
+
+    private void release(Entry entry) {
+        entry.sizeClass.remove(entry);
+        entry.sizeClass.pushFreeBlock(entry.address);
+        usedBytes -= entry.sizeClass.blockSize;
+    }
+
+    private void write(Entry entry, byte[] bytes) {
+        ByteBuffer slab = slabs[(int) (entry.address / slabSize)];
+        slab.position((int) (entry.address % slabSize));
+        slab.put(bytes);
+    }
+
+    private byte[] read(Entry entry) {
+        ByteBuffer slab = slabs[(int) (entry.address / slabSize)];
+        slab.position((int) (entry.address % slabSize));
+        byte[] bytes = new byte[entry.length];
+        slab.get(bytes);
+        return bytes;
+    }
+
+    private SizeClass sizeClassOf(int length) {
+        for (SizeClass sizeClass : sizeClasses) {
+            if (sizeClass.blockSize >= length) {
+                return sizeClass;
+            }
+        }
+        return null;
+    }
+
+    private static SizeClass[] newSizeClasses(int slabSize) {
+        List<SizeClass> sizeClasses = new ArrayList<>();
+        int blockSize = MINIMUM_BLOCK_SIZE;
+        while (blockSize < slabSize) {
+            sizeClasses.add(new SizeClass(blockSize));
+            blockSize = ((blockSize + (blockSize >>> 2)) + 7) & ~7;
+        }
+        sizeClasses.add(new SizeClass(slabSize));
+        return sizeClasses.toArray(new SizeClass[sizeClasses.size()]);
+    }
+}
@@ -0,0 +1,62 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * OffHeapCacheStoreTest - Test to check that once all slabs are assigned, the {@link OffHeapCacheStore}
+ * evicts the least recently used entries of a size class, and moves a slab to a size class which has none
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapCacheStoreTest {
+
+    private static final int SLAB_SIZE = 1024;
+
+    private static final int SMALL_BLOCKS_PER_SLAB = SLAB_SIZE / 64;
+
+    @Test
+    public void testSizeClassEvictsItsLeastRecentlyUsedEntries() {
+        OffHeapCacheStore store = new OffHeapCacheStore(2 * SLAB_SIZE, SLAB_SIZE, new CacheEntryCodec());
+        int count = 3 * SMALL_BLOCKS_PER_SLAB;
+        for (int i = 0; i < count; i++) {
+            store.put(i, "v" + i);
+        }
+        assertEquals(2 * SMALL_BLOCKS_PER_SLAB, store.size());
+        assertEquals(SMALL_BLOCKS_PER_SLAB, store.getEvictionCount());
+        assertNull(store.get(0));
+        assertEquals("v" + (count - 1), store.get(count - 1));
+    }
+
+    @Test
+    public void testSlabIsMovedToSizeClassWithoutSlab() {
+        OffHeapCacheStore store = new OffHeapCacheStore(2 * SLAB_SIZE, SLAB_SIZE, new CacheEntryCodec());
+        int count = 2 * SMALL_BLOCKS_PER_SLAB;
+        for (int i = 0; i < count; i++) {
+            store.put(i, "v" + i);
+        }
+        assertEquals(2 * SLAB_SIZE, store.allocatedBytes());
+        assertEquals(0, store.getEvictionCount());
+
+        String largeValue = new String(new char[SLAB_SIZE / 2]).replace('\0', 'x');
+        store.put("large", largeValue);
+        assertEquals(largeValue, store.get("large"));
+        assertEquals(0, store.getRejectionCount());
+        assertEquals("The slab holding the least recently used entries is reclaimed",
+            SMALL_BLOCKS_PER_SLAB, store.getEvictionCount());
+        assertEquals(SMALL_BLOCKS_PER_SLAB + 1, store.size());
+
+        for (int i = 0; i < SMALL_BLOCKS_PER_SLAB; i++) {
+            assertNull(store.get(i));
+        }
+        for (int i = SMALL_BLOCKS_PER_SLAB; i < count; i++) {
+            assertEquals("v" + i, store.get(i));
+        }
+
+        store.put(count, "v" + count);
+        assertEquals("v" + count, store.get(count));
+        assertEquals(largeValue, store.get("large"));
+    }
+}
@@ -0,0 +1,22 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest;
+
+import java.util.Properties;
+
+/**
+ * OffHeapCollectionCacheTest - Test to check the 2nd level collection cache using the {@link OffHeapRegionFactory}
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapCollectionCacheTest extends CollectionCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", OffHeapRegionFactory.class.getName());
+        properties.put(OffHeapRegionFactory.OFF_HEAP_PREFIX + OffHeapRegionFactory.MAXIMUM_BYTES,
+            String.valueOf(4L << 20));
+        return properties;
+    }
+}
@@ -0,0 +1,28 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.ReadWriteCacheConcurrencyStrategyTest;
+import org.hibernate.integrator.spi.Integrator;
+
+import java.util.Properties;
+
+/**
+ * OffHeapReadWriteCacheConcurrencyStrategyTest - Test to check CacheConcurrencyStrategy.READ_WRITE using the {@link OffHeapRegionFactory}
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapReadWriteCacheConcurrencyStrategyTest extends ReadWriteCacheConcurrencyStrategyTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", OffHeapRegionFactory.class.getName());
+        properties.put(OffHeapRegionFactory.OFF_HEAP_PREFIX + OffHeapRegionFactory.MAXIMUM_BYTES,
+            String.valueOf(4L << 20));
+        return properties;
+    }
+
+    @Override
+    protected Integrator integrator() {
+        return new SoftLockRollbackIntegrator();
+    }
+}
@@ -0,0 +1,43 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import java.util.Properties;
+
+/**
+ * <code>OffHeapRegionFactory</code> - {@link TinyLfuRegionFactory} whose entity, collection, natural-id and
+ * query results regions keep their entries off-heap, in an {@link OffHeapCacheStore}:
+ *
+ * <pre>
+ * hibernate.cache.offheap.maximum_bytes=67108864
+ * hibernate.cache.offheap.slab_size=1048576
+ * hibernate.cache.offheap.&lt;region&gt;.maximum_bytes=268435456
+ * </pre>
+ *
+ * The update timestamps region stays on the heap, and so do the keys of every region.
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapRegionFactory extends TinyLfuRegionFactory {
+
+    public static final String OFF_HEAP_PREFIX = "hibernate.cache.offheap.";
+
+    public static final String SLAB_SIZE = OFF_HEAP_PREFIX + "slab_size";
+
+    public static final long DEFAULT_MAXIMUM_BYTES = 64L << 20;
+
+    private final CacheEntryCodec codec = new CacheEntryCodec();
+
+    public OffHeapRegionFactory() {
+    }
+
+    public OffHeapRegionFactory(Properties properties) {
+        super(properties);
+    }
+
+    @Override
+    protected CacheStore newStore(String regionName) {
+        long maximumBytes = getLong(OFF_HEAP_PREFIX + regionName + "." + MAXIMUM_BYTES,
+            getLong(OFF_HEAP_PREFIX + MAXIMUM_BYTES, DEFAULT_MAXIMUM_BYTES));
+        int slabSize = (int) getLong(SLAB_SIZE, OffHeapCacheStore.DEFAULT_SLAB_SIZE);
+        return new OffHeapCacheStore(maximumBytes, slabSize, codec);
+    }
+}
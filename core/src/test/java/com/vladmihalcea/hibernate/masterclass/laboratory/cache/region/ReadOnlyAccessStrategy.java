@@ -0,0 +1,45 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.access.SoftLock;
+
+/**
+ * <code>ReadOnlyAccessStrategy</code> - READ_ONLY access strategy, caching the entries on load and after insert,
+ * and rejecting any update.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ReadOnlyAccessStrategy extends BaseAccessStrategy {
+
+    public ReadOnlyAccessStrategy(TransactionalRegion region) {
+        super(region);
+    }
+
+    @Override
+    public void unlockItem(Object key, SoftLock lock) throws CacheException {
+        evict(key);
+    }
+
+    @Override
+    public void remove(Object key) throws CacheException {
+        evict(key);
+    }
+
+    @Override
+    public boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+        getRegion().put(key, value);
+        return true;
+    }
+
+    @Override
+    public boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+            throws CacheException {
+        throw new UnsupportedOperationException("Can't write to a read-only object");
+    }
+
+    @Override
+    public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion, SoftLock lock)
+            throws CacheException {
+        throw new UnsupportedOperationException("Can't write to a read-only object");
+    }
+}
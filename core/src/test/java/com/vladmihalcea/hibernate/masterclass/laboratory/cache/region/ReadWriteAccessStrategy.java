@@ -0,0 +1,397 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.access.SoftLock;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>ReadWriteAccessStrategy</code> - READ_WRITE access strategy, which replaces the cached entry with a soft
+ * {@link Lock} while the entity is being updated, so that no transaction reads it or caches a stale version of it.
+ * The entry is replaced after the update transaction commits, or when the lock times out.
+ *
+ * The cached values are wrapped in {@link Item} objects, recording when they were cached and their version.
+ * The reads don't lock at all, while the mutations of an entry are serialized by one of the striped locks,
+ * chosen by the key hash, so that the updates of different entries don't contend with each other.
+ *
+ * A soft lock keeps the item it replaced, and, if the {@link SoftLockRollbackTracker} found the
+ * locking transaction rolled back, the item is put back as soon as the lock is released, instead of
+ * waiting for the lock timeout. The soft lock hold time is published to the region factory
+ * {@link com.codahale.metrics.MetricRegistry}.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ReadWriteAccessStrategy extends BaseAccessStrategy {
+
+    /**
+     * Either a cached {@link Item} or a soft {@link Lock}.
+     */
+    public interface Lockable {
+        boolean isReadable(long txTimestamp);
+
+        boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator);
+
+        Object getValue();
+
+        boolean isUnlockable(SoftLock lock);
+
+        Lock lock(long timeout, UUID uuid, long lockId);
+    }
+
+    public static final class Item implements Lockable, Serializable {
+        private final Object value;
+        private final Object version;
+        private final long timestamp;
+
+        public Item(Object value, Object version, long timestamp) {
+            this.value = value;
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public boolean isReadable(long txTimestamp) {
+            return txTimestamp > timestamp;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator) {
+            return version != null && versionComparator.compare(version, newVersion) < 0;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        public Object getVersion() {
+            return version;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean isUnlockable(SoftLock lock) {
+            return false;
+        }
+
+        @Override
+        public Lock lock(long timeout, UUID uuid, long lockId) {
+            return new Lock(timeout, uuid, lockId, version, this);
+        }
+    }
+
+    public static final class Lock implements Lockable, SoftLock, Serializable {
+        private final UUID sourceUuid;
+        private final long lockId;
+        private final Object version;
+        private final Item lockedItem;
+        private final long lockNanos = System.nanoTime();
+        private long timeout;
+        private boolean concurrent;
+        private boolean rolledBack;
+        private int multiplicity = 1;
+        private long unlockTimestamp;
+
+        public Lock(long timeout, UUID sourceUuid, long lockId, Object version) {
+            this(timeout, sourceUuid, lockId, version, null);
+        }
+
+        public Lock(long timeout, UUID sourceUuid, long lockId, Object version, Item lockedItem) {
+            this.timeout = timeout;
+            this.sourceUuid = sourceUuid;
+            this.lockId = lockId;
+            this.version = version;
+            this.lockedItem = lockedItem;
+        }
+
+        @Override
+        public boolean isReadable(long txTimestamp) {
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator) {
+            if (txTimestamp > timeout) {
+                return true;
+            }
+            if (multiplicity > 0) {
+                return false;
+            }
+            return version == null ?
+                txTimestamp > unlockTimestamp :
+                versionComparator.compare(version, newVersion) < 0;
+        }
+
+        @Override
+        public Object getValue() {
+            return null;
+        }
+
+        @Override
+        public boolean isUnlockable(SoftLock lock) {
+            return equals(lock);
+        }
+
+        @Override
+        public Lock lock(long timeout, UUID uuid, long lockId) {
+            concurrent = true;
+            multiplicity++;
+            this.timeout = timeout;
+            return this;
+        }
+
+        public void unlock(long timestamp) {
+            if (--multiplicity == 0) {
+                unlockTimestamp = timestamp;
+            }
+        }
+
+        public boolean wasLockedConcurrently() {
+            return concurrent;
+        }
+
+        public boolean isLocked() {
+            return multiplicity > 0;
+        }
+
+        /**
+         * @return the item which was cached when the entry was locked, or null if there was none
+         */
+        public Item getLockedItem() {
+            return lockedItem;
+        }
+
+        public boolean isRolledBack() {
+            return rolledBack;
+        }
+
+        public void markRolledBack() {
+            rolledBack = true;
+        }
+
+        /**
+         * @return the time elapsed since the entry was first locked, in nanoseconds
+         */
+        public long getHoldNanos() {
+            return System.nanoTime() - lockNanos;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Lock)) {
+                return false;
+            }
+            Lock that = (Lock) o;
+            return lockId == that.lockId && sourceUuid.equals(that.sourceUuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sourceUuid.hashCode() + (int) (lockId ^ (lockId >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return "Lock{sourceUuid=" + sourceUuid + ", lockId=" + lockId + ", multiplicity=" + multiplicity + "}";
+        }
+    }
+
+    private static final int STRIPE_COUNT = 64;
+
+    private final UUID uuid = UUID.randomUUID();
+
+    private final AtomicInteger nextLockId = new AtomicInteger();
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+
+    private final Comparator versionComparator;
+
+    private final Timer softLockHoldTimer;
+
+    private final Counter rolledBackSoftLockCounter;
+
+    private final Counter expiredSoftLockCounter;
+
+    public ReadWriteAccessStrategy(TransactionalRegion region) {
+        super(region);
+        this.versionComparator = region.getCacheDataDescription().getVersionComparator();
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        MetricRegistry metricRegistry = region.getRegionFactory().getMetricRegistry();
+        softLockHoldTimer = metricRegistry.timer(metricName(region.getName(), "softLockHoldTime"));
+        rolledBackSoftLockCounter = metricRegistry.counter(metricName(region.getName(), "rolledBackSoftLocks"));
+        expiredSoftLockCounter = metricRegistry.counter(metricName(region.getName(), "expiredSoftLocks"));
+    }
+
+    /**
+     * @return the name of the given region metric
+     */
+    public static String metricName(String regionName, String metric) {
+        return MetricRegistry.name(ReadWriteAccessStrategy.class, regionName, metric);
+    }
+
+    @Override
+    public Object get(Object key, long txTimestamp) throws CacheException {
+        Lockable item = (Lockable) getRegion().get(key);
+        return item != null && item.isReadable(txTimestamp) ? item.getValue() : null;
+    }
+
+    @Override
+    public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version, boolean minimalPutOverride)
+            throws CacheException {
+        ReentrantLock writeLock = stripe(key);
+        writeLock.lock();
+        try {
+            Lockable item = (Lockable) getRegion().get(key);
+            if (item == null || item.isWriteable(txTimestamp, version, versionComparator)) {
+                getRegion().put(key, new Item(value, version, getRegion().nextTimestamp()));
+                return true;
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public SoftLock lockItem(Object key, Object version) throws CacheException {
+        ReentrantLock writeLock = stripe(key);
+        writeLock.lock();
+        try {
+            Lockable item = (Lockable) getRegion().get(key);
+            long timeout = getRegion().nextTimestamp() + getRegion().getTimeout();
+            Lock lock = item == null ?
+                new Lock(timeout, uuid, nextLockId.getAndIncrement(), version) :
+                item.lock(timeout, uuid, nextLockId.getAndIncrement());
+            getRegion().put(key, lock);
+            SoftLockRollbackTracker.track(this, key, lock);
+            return lock;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void unlockItem(Object key, SoftLock lock) throws CacheException {
+        ReentrantLock writeLock = stripe(key);
+        writeLock.lock();
+        try {
+            Lockable item = (Lockable) getRegion().get(key);
+            if (item != null && item.isUnlockable(lock)) {
+                Lock lockItem = (Lock) item;
+                if (lockItem.isRolledBack() && !lockItem.wasLockedConcurrently() &&
+                        lockItem.getLockedItem() != null) {
+                    softLockHoldTimer.update(lockItem.getHoldNanos(), TimeUnit.NANOSECONDS);
+                    rolledBackSoftLockCounter.inc();
+                    getRegion().put(key, lockItem.getLockedItem());
+                } else {
+                    decrementLock(key, lockItem);
+                }
+            } else {
+                handleLockExpiry(key);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+        ReentrantLock writeLock = stripe(key);
+        writeLock.lock();
+        try {
+            Lockable item = (Lockable) getRegion().get(key);
+            if (item == null) {
+                getRegion().put(key, new Item(value, version, getRegion().nextTimestamp()));
+                return true;
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion, SoftLock lock)
+            throws CacheException {
+        ReentrantLock writeLock = stripe(key);
+        writeLock.lock();
+        try {
+            Lockable item = (Lockable) getRegion().get(key);
+            if (item != null && item.isUnlockable(lock)) {
+                Lock lockItem = (Lock) item;
+                if (lockItem.wasLockedConcurrently()) {
+                    decrementLock(key, lockItem);
+                    return false;
+                }
+                softLockHoldTimer.update(lockItem.getHoldNanos(), TimeUnit.NANOSECONDS);
+                getRegion().put(key, new Item(value, currentVersion, getRegion().nextTimestamp()));
+                return true;
+            }
+            handleLockExpiry(key);
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Mark the soft lock rolled back, so that releasing it puts back the item it replaced.
+     *
+     * @param key  entry key
+     * @param lock soft lock taken by the rolled back transaction
+     */
+    void markRolledBack(Object key, SoftLock lock) {
+        ReentrantLock writeLock = stripe(key);
+        writeLock.lock();
+        try {
+            Lockable item = (Lockable) getRegion().get(key);
+            if (item != null && item.isUnlockable(lock)) {
+                Lock lockItem = (Lock) item;
+                lockItem.markRolledBack();
+                getRegion().put(key, lockItem);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private ReentrantLock stripe(Object key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[hash & (STRIPE_COUNT - 1)];
+    }
+
+    private void decrementLock(Object key, Lock lock) {
+        lock.unlock(getRegion().nextTimestamp());
+        if (!lock.isLocked()) {
+            softLockHoldTimer.update(lock.getHoldNanos(), TimeUnit.NANOSECONDS);
+        }
+        getRegion().put(key, lock);
+    }
+
+    private void handleLockExpiry(Object key) {
+        expiredSoftLockCounter.inc();
+        long timestamp = getRegion().nextTimestamp() + getRegion().getTimeout();
+        Lock lock = new Lock(timestamp, uuid, nextLockId.getAndIncrement(), null);
+        lock.unlock(timestamp);
+        getRegion().put(key, lock);
+    }
+}
@@ -0,0 +1,14 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+/**
+ * <code>RegionLockListener</code> - Notified when a bulk or native statement locks a whole
+ * {@link TransactionalRegion}, and when it unlocks it after the transaction completes.
+ *
+ * @author Vlad Mihalcea
+ */
+public interface RegionLockListener {
+
+    void onLockRegion(TransactionalRegion region);
+
+    void onUnlockRegion(TransactionalRegion region);
+}
@@ -0,0 +1,44 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * <code>SoftLockRollbackIntegrator</code> - Registers the {@link SoftLockRollbackTracker} of every flushing
+ * session, so that the {@link ReadWriteAccessStrategy} soft locks are released right after a rollback,
+ * instead of when they time out.
+ *
+ * @author Vlad Mihalcea
+ */
+public class SoftLockRollbackIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Configuration configuration, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        register(serviceRegistry.getService(EventListenerRegistry.class));
+    }
+
+    @Override
+    public void integrate(MetadataImplementor metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        register(serviceRegistry.getService(EventListenerRegistry.class));
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private void register(EventListenerRegistry eventListenerRegistry) {
+        eventListenerRegistry.prependListeners(EventType.FLUSH,
+            (FlushEventListener) event -> SoftLockRollbackTracker.register(event.getSession()));
+        eventListenerRegistry.prependListeners(EventType.AUTO_FLUSH,
+            (AutoFlushEventListener) event -> SoftLockRollbackTracker.register(event.getSession()));
+    }
+}
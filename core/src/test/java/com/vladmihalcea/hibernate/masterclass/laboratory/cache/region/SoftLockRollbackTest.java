@@ -0,0 +1,147 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.*;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * SoftLockRollbackTest - Test to check that the READ_WRITE soft locks of a rolled back transaction
+ * are released right away, so the entity is still read from the cache, without waiting for the lock timeout
+ *
+ * @author Vlad Mihalcea
+ */
+public class SoftLockRollbackTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+            Repository.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put(TinyLfuRegionFactory.LOCK_TIMEOUT, String.valueOf(60000));
+        properties.put(TinyLfuRegionFactory.METRIC_REGISTRY, getMetricRegistry());
+        return properties;
+    }
+
+    @Override
+    protected Integrator integrator() {
+        return new SoftLockRollbackIntegrator();
+    }
+
+    private Long repositoryId;
+
+    @Before
+    public void init() {
+        super.init();
+        repositoryId = doInTransaction(session -> {
+            Repository repository = new Repository("Hibernate-Master-Class");
+            session.persist(repository);
+            return repository.getId();
+        });
+    }
+
+    @Test
+    public void testRollbackReleasesSoftLock() {
+        try {
+            doInTransaction(session -> {
+                Repository repository = (Repository) session.get(Repository.class, repositoryId);
+                repository.setName("High-Performance Hibernate");
+                session.flush();
+                rollback();
+            });
+            fail("Should have rolled back");
+        } catch (IllegalStateException expected) {
+            LOGGER.info("Expected", expected);
+        }
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            LOGGER.info("The entity is read from the cache right after the rollback");
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            assertEquals("Hibernate-Master-Class", repository.getName());
+        });
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getSecondLevelCacheMissCount());
+        assertEquals(1, getMetricRegistry().counter(
+            ReadWriteAccessStrategy.metricName(Repository.class.getName(), "rolledBackSoftLocks")).getCount());
+        assertEquals(1, getMetricRegistry().timer(
+            ReadWriteAccessStrategy.metricName(Repository.class.getName(), "softLockHoldTime")).getCount());
+    }
+
+    @Test
+    public void testCommitReplacesSoftLock() {
+        doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            repository.setName("High-Performance Hibernate");
+        });
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.clear();
+        doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            assertEquals("High-Performance Hibernate", repository.getName());
+        });
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, getMetricRegistry().counter(
+            ReadWriteAccessStrategy.metricName(Repository.class.getName(), "rolledBackSoftLocks")).getCount());
+        assertTrue(getMetricRegistry().timer(
+            ReadWriteAccessStrategy.metricName(Repository.class.getName(), "softLockHoldTime")).getCount() > 0);
+    }
+
+    private void rollback() {
+        throw new IllegalStateException("Rollback the update");
+    }
+
+    /**
+     * Repository - Repository
+     *
+     * @author Vlad Mihalcea
+     */
+    @Entity(name = "repository")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Repository {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        private String name;
+
+        @Version
+        private int version;
+
+        public Repository() {
+        }
+
+        public Repository(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+}
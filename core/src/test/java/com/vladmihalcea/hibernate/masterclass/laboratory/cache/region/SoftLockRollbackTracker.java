@@ -0,0 +1,77 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <code>SoftLockRollbackTracker</code> - Transaction completion process recording the soft locks
+ * taken by the current transaction, and marking them as rolled back if the transaction doesn't commit.
+ *
+ * The tracker is registered by the {@link SoftLockRollbackIntegrator} flush listeners before the flush
+ * executes its actions, so it completes before the actions release their soft locks, and the
+ * {@link ReadWriteAccessStrategy} can then put back the items the rolled back transaction locked.
+ *
+ * @author Vlad Mihalcea
+ */
+public class SoftLockRollbackTracker implements AfterTransactionCompletionProcess {
+
+    private static final ThreadLocal<SoftLockRollbackTracker> CURRENT = new ThreadLocal<>();
+
+    private static final class TrackedLock {
+        private final ReadWriteAccessStrategy accessStrategy;
+        private final Object key;
+        private final SoftLock lock;
+
+        private TrackedLock(ReadWriteAccessStrategy accessStrategy, Object key, SoftLock lock) {
+            this.accessStrategy = accessStrategy;
+            this.key = key;
+            this.lock = lock;
+        }
+    }
+
+    private final SessionImplementor session;
+
+    private final List<TrackedLock> locks = new ArrayList<>();
+
+    private SoftLockRollbackTracker(SessionImplementor session) {
+        this.session = session;
+    }
+
+    /**
+     * Register a tracker for the current transaction of the given session, unless there is one already.
+     *
+     * @param session flushing session
+     */
+    public static void register(SessionImplementor session) {
+        SoftLockRollbackTracker tracker = CURRENT.get();
+        if (tracker == null || tracker.session != session) {
+            tracker = new SoftLockRollbackTracker(session);
+            CURRENT.set(tracker);
+            session.getActionQueue().registerProcess(tracker);
+        }
+    }
+
+    static void track(ReadWriteAccessStrategy accessStrategy, Object key, SoftLock lock) {
+        SoftLockRollbackTracker tracker = CURRENT.get();
+        if (tracker != null) {
+            tracker.locks.add(new TrackedLock(accessStrategy, key, lock));
+        }
+    }
+
+    @Override
+    public void doAfterTransactionCompletion(boolean success, SessionImplementor session) {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+        if (!success) {
+            for (TrackedLock trackedLock : locks) {
+                trackedLock.accessStrategy.markRolledBack(trackedLock.key, trackedLock.lock);
+            }
+        }
+        locks.clear();
+    }
+}
@@ -0,0 +1,483 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>TinyLfuCacheStore</code> - Bounded {@link CacheStore} using the W-TinyLFU eviction policy.
+ *
+ * The new entries are added to a small LRU admission window (1% of the maximum weight). The entries leaving the window
+ * become candidates for the main space, which is a segmented LRU made of a probation and a protected segment
+ * (80% of the main space). A candidate is only admitted if the {@link FrequencySketch} estimates it was accessed more
+ * often than the probation LRU victim, so one-hit wonders and scans don't flush the frequently read entries.
+ *
+ * The reads only go through the {@link ConcurrentHashMap}, and they are recorded in a lossy ring buffer
+ * which is replayed on the policy when the eviction lock is available. The writes update the policy
+ * while holding the eviction lock. The expired entries are removed when they are read.
+ *
+ * The heap footprint of every entry is estimated by the {@link CacheEntrySizeEstimator} when it's written,
+ * and the entries weighing more than the maximum weight are not cached, since they would flush the whole store.
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuCacheStore implements CacheStore {
+
+    @FunctionalInterface
+    public interface Weigher {
+        int weigh(Object key, Object value);
+    }
+
+    public static final Weigher SINGLETON_WEIGHER = (key, value) -> 1;
+
+    /**
+     * The number of entries the frequency sketch of a weighted store is sized for, unless told otherwise.
+     */
+    public static final long DEFAULT_EXPECTED_SIZE = 10000;
+
+    /**
+     * The estimated size of the store node and of the {@link ConcurrentHashMap} node.
+     */
+    private static final int ENTRY_OVERHEAD = 80;
+
+    private static final int READ_BUFFER_SIZE = 128;
+
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 4;
+
+    private enum Segment {
+        WINDOW,
+        PROBATION,
+        PROTECTED
+    }
+
+    private static final class Node {
+        private final Object key;
+        private volatile Object value;
+        private volatile long writeNanos;
+        private int weight;
+        private long sizeInBytes;
+        private Segment segment;
+        private boolean alive = true;
+        private Node previous;
+        private Node next;
+
+        private Node(Object key, Object value, int weight, long sizeInBytes, long writeNanos) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.sizeInBytes = sizeInBytes;
+            this.writeNanos = writeNanos;
+        }
+    }
+
+    private static final class AccessOrderQueue {
+        private Node head;
+        private Node tail;
+        private long weight;
+
+        private Node first() {
+            return head;
+        }
+
+        private void addLast(Node node) {
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        private void remove(Node node) {
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        private void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+
+    private final ConcurrentHashMap<Object, Node> data = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final AccessOrderQueue window = new AccessOrderQueue();
+
+    private final AccessOrderQueue probation = new AccessOrderQueue();
+
+    private final AccessOrderQueue protectedQueue = new AccessOrderQueue();
+
+    private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+    private final AtomicLong readCount = new AtomicLong();
+
+    private final FrequencySketch sketch;
+
+    private final long maximumWeight;
+
+    private final long windowMaximumWeight;
+
+    private final long protectedMaximumWeight;
+
+    private final Weigher weigher;
+
+    private final long expireAfterWriteNanos;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private volatile long sizeInBytes;
+
+    /**
+     * @param maximumSize maximum number of entries
+     */
+    public TinyLfuCacheStore(long maximumSize) {
+        this(maximumSize, SINGLETON_WEIGHER, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maximumWeight     maximum total weight of the entries
+     * @param weigher           entry weigher
+     * @param expireAfterWrite  the time after which the entries expire, or 0 if they never do
+     * @param timeUnit          expire after write time unit
+     */
+    public TinyLfuCacheStore(long maximumWeight, Weigher weigher, long expireAfterWrite, TimeUnit timeUnit) {
+        this(maximumWeight, weigher,
+            weigher == SINGLETON_WEIGHER ? maximumWeight : Math.min(maximumWeight, DEFAULT_EXPECTED_SIZE),
+            expireAfterWrite, timeUnit);
+    }
+
+    /**
+     * @param maximumWeight     maximum total weight of the entries
+     * @param weigher           entry weigher
+     * @param expectedSize      the number of entries the frequency sketch is sized for, since the maximum weight
+     *                          of a weighted store, like its maximum bytes, says little about its number of entries
+     * @param expireAfterWrite  the time after which the entries expire, or 0 if they never do
+     * @param timeUnit          expire after write time unit
+     */
+    public TinyLfuCacheStore(long maximumWeight, Weigher weigher, long expectedSize, long expireAfterWrite,
+                             TimeUnit timeUnit) {
+        if (maximumWeight < 1) {
+            throw new IllegalArgumentException("The maximum weight must be at least 1!");
+        }
+        this.maximumWeight = maximumWeight;
+        this.windowMaximumWeight = Math.max(1, maximumWeight / 100);
+        this.protectedMaximumWeight = (maximumWeight - windowMaximumWeight) * 80 / 100;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = timeUnit.toNanos(expireAfterWrite);
+        this.sketch = new FrequencySketch(expectedSize);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (isExpired(node)) {
+            misses.increment();
+            evictionLock.lock();
+            try {
+                if (data.remove(key, node)) {
+                    unlink(node);
+                    evictions.increment();
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+            return null;
+        }
+        hits.increment();
+        recordRead(node);
+        return node.value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        int weight = weigher.weigh(key, value);
+        if (weight > maximumWeight) {
+            rejections.increment();
+            remove(key);
+            return;
+        }
+        long entrySizeInBytes = ENTRY_OVERHEAD + CacheEntrySizeEstimator.sizeOf(key) +
+            CacheEntrySizeEstimator.sizeOf(value);
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            sketch.increment(key);
+            Node node = data.get(key);
+            if (node != null) {
+                node.value = value;
+                node.writeNanos = System.nanoTime();
+                queueOf(node).weight += weight - node.weight;
+                node.weight = weight;
+                sizeInBytes += entrySizeInBytes - node.sizeInBytes;
+                node.sizeInBytes = entrySizeInBytes;
+                reorder(node);
+            } else {
+                node = new Node(key, value, weight, entrySizeInBytes, System.nanoTime());
+                sizeInBytes += entrySizeInBytes;
+                node.segment = Segment.WINDOW;
+                window.addLast(node);
+                data.put(key, node);
+            }
+            puts.increment();
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(Object key) {
+        evictionLock.lock();
+        try {
+            Node node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (Node node : data.values()) {
+                node.alive = false;
+            }
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            sizeInBytes = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Node node = data.get(key);
+        return node != null && !isExpired(node);
+    }
+
+    @Override
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * @return the estimated heap footprint of the entries
+     */
+    @Override
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    @Override
+    public Map<Object, Object> toMap() {
+        Map<Object, Object> map = new HashMap<>();
+        for (Node node : data.values()) {
+            if (!isExpired(node)) {
+                map.put(node.key, node.value);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of entries which were not cached since they weighed more than the maximum weight
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return the number of <code>long</code> words of the frequency sketch
+     */
+    int getSketchCapacity() {
+        return sketch.capacity();
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return window.weight + probation.weight + protectedQueue.weight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean isExpired(Node node) {
+        return expireAfterWriteNanos > 0 && System.nanoTime() - node.writeNanos >= expireAfterWriteNanos;
+    }
+
+    private void recordRead(Node node) {
+        long count = readCount.getAndIncrement();
+        readBuffer.lazySet((int) (count & READ_BUFFER_MASK), node);
+        if ((count & (READ_BUFFER_DRAIN_THRESHOLD - 1)) == 0 && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Node node = readBuffer.getAndSet(i, null);
+            if (node != null && node.alive) {
+                sketch.increment(node.key);
+                reorder(node);
+            }
+        }
+    }
+
+    private void reorder(Node node) {
+        switch (node.segment) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.segment = Segment.PROTECTED;
+                protectedQueue.addLast(node);
+                while (protectedQueue.weight > protectedMaximumWeight && protectedQueue.first() != node) {
+                    Node demoted = protectedQueue.first();
+                    protectedQueue.remove(demoted);
+                    demoted.segment = Segment.PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToLast(node);
+                break;
+        }
+    }
+
+    private void evict() {
+        ArrayDeque<Node> candidates = new ArrayDeque<>();
+        while (window.weight > windowMaximumWeight) {
+            Node candidate = window.first();
+            window.remove(candidate);
+            candidate.segment = Segment.PROBATION;
+            probation.addLast(candidate);
+            candidates.addLast(candidate);
+        }
+        while (window.weight + probation.weight + protectedQueue.weight > maximumWeight) {
+            Node candidate = candidates.peekFirst();
+            if (candidate != null && !candidate.alive) {
+                candidates.pollFirst();
+                continue;
+            }
+            Node victim = probation.first();
+            if (candidate == null) {
+                if (victim == null) {
+                    victim = protectedQueue.first() != null ? protectedQueue.first() : window.first();
+                }
+                evict(victim);
+            } else if (victim == candidate) {
+                candidates.pollFirst();
+                evict(candidate);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                candidates.pollFirst();
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictions.increment();
+    }
+
+    private void unlink(Node node) {
+        if (node.alive) {
+            node.alive = false;
+            queueOf(node).remove(node);
+            sizeInBytes -= node.sizeInBytes;
+        }
+    }
+
+    private AccessOrderQueue queueOf(Node node) {
+        switch (node.segment) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedQueue;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TinyLfuCacheStoreTest - Test to check that a {@link TinyLfuCacheStore} bounded by bytes or by weight
+ * sizes its frequency sketch from the expected number of entries, and not from its maximum weight
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuCacheStoreTest {
+
+    private static final String REGION = "region";
+
+    @Test
+    public void testByteBoundedStore() {
+        Properties properties = new Properties();
+        properties.setProperty(TinyLfuRegionFactory.PREFIX + REGION + "." + TinyLfuRegionFactory.MAXIMUM_BYTES,
+            String.valueOf(16 * 1024 * 1024));
+        TinyLfuCacheStore store = newStore(properties);
+        assertEquals(16384, store.getSketchCapacity());
+
+        properties.setProperty(TinyLfuRegionFactory.PREFIX + REGION + "." + TinyLfuRegionFactory.MAXIMUM_BYTES,
+            String.valueOf(64 * 1024));
+        properties.setProperty(TinyLfuRegionFactory.PREFIX + REGION + "." + TinyLfuRegionFactory.MAXIMUM_SIZE,
+            "200");
+        store = newStore(properties);
+        assertEquals(256, store.getSketchCapacity());
+
+        String value = new String(new char[100]).replace('\0', 'x');
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            store.put((long) i + 1000, value + i);
+        }
+        assertTrue(store.getEvictionCount() > 0);
+        assertTrue(store.size() < count);
+        assertTrue(store.weightedSize() <= 64 * 1024);
+    }
+
+    @Test
+    public void testWeightBoundedStore() {
+        Properties properties = new Properties();
+        properties.setProperty(TinyLfuRegionFactory.PREFIX + REGION + "." + TinyLfuRegionFactory.MAXIMUM_WEIGHT,
+            String.valueOf(Integer.MAX_VALUE));
+        properties.setProperty(TinyLfuRegionFactory.PREFIX + TinyLfuRegionFactory.MAXIMUM_SIZE, "1000");
+        assertEquals(1024, newStore(properties).getSketchCapacity());
+    }
+
+    @Test
+    public void testSketchIsBounded() {
+        TinyLfuCacheStore store = new TinyLfuCacheStore(1L << 40, TinyLfuCacheStore.SINGLETON_WEIGHER,
+            1L << 40, 0, TimeUnit.MILLISECONDS);
+        assertEquals(FrequencySketch.MAXIMUM_CAPACITY, store.getSketchCapacity());
+    }
+
+    private TinyLfuCacheStore newStore(Properties properties) {
+        return (TinyLfuCacheStore) new TinyLfuRegionFactory(properties).newStore(REGION);
+    }
+}
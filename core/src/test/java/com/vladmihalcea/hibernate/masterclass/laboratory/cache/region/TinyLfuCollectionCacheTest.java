@@ -0,0 +1,20 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest;
+
+import java.util.Properties;
+
+/**
+ * TinyLfuCollectionCacheTest - Test to check the 2nd level collection cache using the {@link TinyLfuRegionFactory}
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuCollectionCacheTest extends CollectionCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+}
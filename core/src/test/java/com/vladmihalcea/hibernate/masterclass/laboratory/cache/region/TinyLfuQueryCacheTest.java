@@ -0,0 +1,20 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.QueryCacheTest;
+
+import java.util.Properties;
+
+/**
+ * TinyLfuQueryCacheTest - Test to check the 2nd level query cache using the {@link TinyLfuRegionFactory}
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuQueryCacheTest extends QueryCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+}
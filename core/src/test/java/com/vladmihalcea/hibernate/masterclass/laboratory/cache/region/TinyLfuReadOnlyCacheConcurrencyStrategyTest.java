@@ -0,0 +1,20 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.ReadOnlyCacheConcurrencyStrategyTest;
+
+import java.util.Properties;
+
+/**
+ * TinyLfuReadOnlyCacheConcurrencyStrategyTest - Test to check CacheConcurrencyStrategy.READ_ONLY using the {@link TinyLfuRegionFactory}
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuReadOnlyCacheConcurrencyStrategyTest extends ReadOnlyCacheConcurrencyStrategyTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+}
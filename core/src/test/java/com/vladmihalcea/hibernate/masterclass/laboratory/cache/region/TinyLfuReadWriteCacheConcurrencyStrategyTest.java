@@ -0,0 +1,26 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.ReadWriteCacheConcurrencyStrategyTest;
+import org.hibernate.integrator.spi.Integrator;
+
+import java.util.Properties;
+
+/**
+ * TinyLfuReadWriteCacheConcurrencyStrategyTest - Test to check CacheConcurrencyStrategy.READ_WRITE using the {@link TinyLfuRegionFactory}
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuReadWriteCacheConcurrencyStrategyTest extends ReadWriteCacheConcurrencyStrategyTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+
+    @Override
+    protected Integrator integrator() {
+        return new SoftLockRollbackIntegrator();
+    }
+}
@@ -0,0 +1,301 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import com.codahale.metrics.MetricRegistry;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cfg.Settings;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>TinyLfuRegionFactory</code> - Second-level cache {@link RegionFactory} whose regions are bounded by
+ * the W-TinyLFU eviction policy of the {@link TinyLfuCacheStore}.
+ *
+ * Every region can be bounded either by size, by weight or by its estimated heap footprint,
+ * and it can expire its entries after write:
+ *
+ * <pre>
+ * hibernate.cache.tinylfu.maximum_size=10000
+ * hibernate.cache.tinylfu.lock_timeout=60000
+ * hibernate.cache.tinylfu.compact_query_results=true
+ * hibernate.cache.tinylfu.&lt;region&gt;.maximum_size=1000
+ * hibernate.cache.tinylfu.&lt;region&gt;.maximum_weight=100000
+ * hibernate.cache.tinylfu.&lt;region&gt;.maximum_bytes=16777216
+ * hibernate.cache.tinylfu.&lt;region&gt;.expire_after_write=30000
+ * </pre>
+ *
+ * The <code>maximum_size</code> of a region bounded by weight or by bytes is the number of entries it is expected
+ * to hold, which sizes the frequency sketch of its admission policy.
+ *
+ * Bounding the query results regions by bytes keeps the large cacheable result sets from taking over the heap,
+ * and the region footprint is reported through the second-level cache statistics <code>sizeInMemory</code>.
+ * The entity identifier results are stored as {@link CompactQueryResult} values, unless the query results
+ * compaction is disabled.
+ *
+ * The soft locks a rolled back transaction took on the <code>READ_WRITE</code> regions are only released
+ * right away if the {@link SoftLockRollbackIntegrator} is registered with the {@link org.hibernate.SessionFactory},
+ * which it isn't by default, since it adds a transaction completion process to every flushing session.
+ * Otherwise, the locked items stay uncacheable until the <code>lock_timeout</code> expires.
+ *
+ * The update timestamps region is never bounded, since evicting a timestamp would let the query cache
+ * return stale results.
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuRegionFactory implements RegionFactory {
+
+    public static final String PREFIX = "hibernate.cache.tinylfu.";
+
+    public static final String MAXIMUM_SIZE = "maximum_size";
+
+    public static final String MAXIMUM_WEIGHT = "maximum_weight";
+
+    public static final String MAXIMUM_BYTES = "maximum_bytes";
+
+    public static final String EXPIRE_AFTER_WRITE = "expire_after_write";
+
+    public static final String LOCK_TIMEOUT = PREFIX + "lock_timeout";
+
+    public static final String COMPACT_QUERY_RESULTS = PREFIX + "compact_query_results";
+
+    /**
+     * The {@link MetricRegistry} the regions publish their metrics to, instead of a registry of their own.
+     */
+    public static final String METRIC_REGISTRY = PREFIX + "metric_registry";
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    public static final long DEFAULT_LOCK_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * The timestamps have a 12 bits counter appended to the current time in millis,
+     * so there can be 4096 unique timestamps per millisecond.
+     */
+    private static final int BIN_DIGITS = 12;
+
+    public static final int ONE_MS = 1 << BIN_DIGITS;
+
+    /**
+     * The largest lock timeout which fits the <code>int</code> returned by {@link #getLockTimeout()}, about 524 seconds.
+     */
+    public static final long MAX_LOCK_TIMEOUT_MILLIS = Integer.MAX_VALUE / ONE_MS;
+
+    private final AtomicLong timestamp = new AtomicLong();
+
+    private Settings settings;
+
+    private Properties properties;
+
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final List<RegionLockListener> regionLockListeners = new CopyOnWriteArrayList<>();
+
+    public TinyLfuRegionFactory() {
+    }
+
+    public TinyLfuRegionFactory(Properties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void start(Settings settings, Properties properties) throws CacheException {
+        this.settings = settings;
+        this.properties = properties;
+        Object metricRegistry = properties.get(METRIC_REGISTRY);
+        if (metricRegistry instanceof MetricRegistry) {
+            this.metricRegistry = (MetricRegistry) metricRegistry;
+        }
+        //reject an invalid lock timeout right away, instead of when the first soft lock is taken
+        getLockTimeout();
+    }
+
+    @Override
+    public void stop() {
+        settings = null;
+        regionLockListeners.clear();
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return true;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.READ_WRITE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        while (true) {
+            long current = timestamp.get();
+            long next = System.currentTimeMillis() << BIN_DIGITS;
+            if (next <= current) {
+                next = current + 1;
+            }
+            if (timestamp.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @return the soft lock timeout, in timestamp units
+     */
+    public int getLockTimeout() {
+        long lockTimeoutMillis = getLong(LOCK_TIMEOUT, DEFAULT_LOCK_TIMEOUT_MILLIS);
+        if (lockTimeoutMillis < 0 || lockTimeoutMillis > MAX_LOCK_TIMEOUT_MILLIS) {
+            throw new IllegalArgumentException("Property " + LOCK_TIMEOUT + " must be between 0 and " +
+                MAX_LOCK_TIMEOUT_MILLIS + " ms: " + lockTimeoutMillis);
+        }
+        return (int) (lockTimeoutMillis * ONE_MS);
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Properties properties, CacheDataDescription metadata)
+            throws CacheException {
+        return new TransactionalRegion(this, regionName, newStore(regionName), settings, metadata);
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties, CacheDataDescription metadata)
+            throws CacheException {
+        return new TransactionalRegion(this, regionName, newStore(regionName), settings, metadata);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Properties properties,
+                                                  CacheDataDescription metadata) throws CacheException {
+        return new TransactionalRegion(this, regionName, newStore(regionName), settings, metadata);
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties)
+            throws CacheException {
+        CacheStore store = newStore(regionName);
+        return new GeneralRegion(this, regionName,
+            getBoolean(COMPACT_QUERY_RESULTS, true) ? new CompactingCacheStore(store) : store);
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties)
+            throws CacheException {
+        return new GeneralRegion(this, regionName, new ConcurrentMapCacheStore());
+    }
+
+    /**
+     * Create the store of a bounded region.
+     *
+     * @param regionName region name
+     * @return region store
+     */
+    protected CacheStore newStore(String regionName) {
+        long expireAfterWrite = getLong(PREFIX + regionName + "." + EXPIRE_AFTER_WRITE, 0);
+        long maximumSize = getLong(PREFIX + regionName + "." + MAXIMUM_SIZE,
+            getLong(PREFIX + MAXIMUM_SIZE, DEFAULT_MAXIMUM_SIZE));
+        long maximumBytes = getLong(PREFIX + regionName + "." + MAXIMUM_BYTES, 0);
+        if (maximumBytes > 0) {
+            return new TinyLfuCacheStore(maximumBytes, (key, value) -> (int) Math.min(Integer.MAX_VALUE,
+                CacheEntrySizeEstimator.sizeOf(key) + CacheEntrySizeEstimator.sizeOf(value)),
+                maximumSize, expireAfterWrite, TimeUnit.MILLISECONDS);
+        }
+        long maximumWeight = getLong(PREFIX + regionName + "." + MAXIMUM_WEIGHT, 0);
+        if (maximumWeight > 0) {
+            return new TinyLfuCacheStore(maximumWeight, newWeigher(regionName), maximumSize, expireAfterWrite,
+                TimeUnit.MILLISECONDS);
+        }
+        return new TinyLfuCacheStore(maximumSize, TinyLfuCacheStore.SINGLETON_WEIGHER, expireAfterWrite,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The default weigher approximates the entry footprint by the number of values it holds:
+     * the disassembled entity properties, the collection elements or the query result rows.
+     *
+     * @param regionName region name
+     * @return region weigher
+     */
+    protected TinyLfuCacheStore.Weigher newWeigher(String regionName) {
+        return (key, value) -> {
+            if (value instanceof ReadWriteAccessStrategy.Item) {
+                value = ((ReadWriteAccessStrategy.Item) value).getValue();
+            }
+            if (value instanceof CacheEntry) {
+                return ((CacheEntry) value).getDisassembledState().length + 1;
+            }
+            if (value instanceof CollectionCacheEntry) {
+                return ((CollectionCacheEntry) value).getState().length + 1;
+            }
+            if (value instanceof Object[]) {
+                return ((Object[]) value).length + 1;
+            }
+            if (value instanceof Collection) {
+                return ((Collection) value).size() + 1;
+            }
+            if (value instanceof CompactQueryResult) {
+                return ((CompactQueryResult) value).size() + 1;
+            }
+            return 1;
+        };
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    /**
+     * Register a listener to the bulk and native statements locking the regions of this factory.
+     *
+     * @param listener region lock listener
+     */
+    public void addRegionLockListener(RegionLockListener listener) {
+        regionLockListeners.add(listener);
+    }
+
+    void lockRegion(TransactionalRegion region) {
+        for (RegionLockListener listener : regionLockListeners) {
+            listener.onLockRegion(region);
+        }
+    }
+
+    void unlockRegion(TransactionalRegion region) {
+        for (RegionLockListener listener : regionLockListeners) {
+            listener.onUnlockRegion(region);
+        }
+    }
+
+    protected Settings getSettings() {
+        return settings;
+    }
+
+    protected boolean getBoolean(String propertyName, boolean defaultValue) {
+        String value = properties != null ? properties.getProperty(propertyName) : null;
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+
+    protected long getLong(String propertyName, long defaultValue) {
+        String value = properties != null ? properties.getProperty(propertyName) : null;
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Property " + propertyName + " is not a number: " + value, e);
+        }
+    }
+}
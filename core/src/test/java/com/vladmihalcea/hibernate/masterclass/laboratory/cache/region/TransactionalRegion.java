@@ -0,0 +1,65 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache.region;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cfg.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>TransactionalRegion</code> - The entity, collection and natural-id regions, which only differ by the
+ * access strategy interface Hibernate uses, so a single region type implements all three, its
+ * {@link BaseAccessStrategy} implementing all three access strategy interfaces too.
+ *
+ * @author Vlad Mihalcea
+ */
+public class TransactionalRegion extends BaseRegion implements EntityRegion, CollectionRegion, NaturalIdRegion {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalRegion.class);
+
+    private final Settings settings;
+
+    private final CacheDataDescription metadata;
+
+    public TransactionalRegion(TinyLfuRegionFactory regionFactory, String name, CacheStore store,
+                               Settings settings, CacheDataDescription metadata) {
+        super(regionFactory, name, store);
+        this.settings = settings;
+        this.metadata = metadata;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public boolean isTransactionAware() {
+        return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription() {
+        return metadata;
+    }
+
+    @Override
+    public BaseAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+        switch (accessType) {
+            case READ_ONLY:
+                if (metadata.isMutable()) {
+                    LOGGER.warn("Data in region {} is mutable, but the access strategy is read-only", getName());
+                }
+                return new ReadOnlyAccessStrategy(this);
+            case NONSTRICT_READ_WRITE:
+                return new NonStrictReadWriteAccessStrategy(this);
+            case READ_WRITE:
+                return new ReadWriteAccessStrategy(this);
+            default:
+                throw new IllegalArgumentException("Unsupported access type: " + accessType);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.concurrency;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LockModePessimisticForceIncrementExecutorStrategyTest - Test to check the LockMode.PESSIMISTIC_FORCE_INCREMENT
+ * scenarios when the concurrent transactions run on a fixed thread pool or on virtual threads
+ *
+ * @author Vlad Mihalcea
+ */
+@RunWith(Parameterized.class)
+public class LockModePessimisticForceIncrementExecutorStrategyTest extends LockModePessimisticForceIncrementTest {
+
+    private final ExecutorStrategy executorStrategy;
+
+    public LockModePessimisticForceIncrementExecutorStrategyTest(ExecutorStrategy executorStrategy) {
+        this.executorStrategy = executorStrategy;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<ExecutorStrategy[]> executorStrategies() {
+        List<ExecutorStrategy[]> executorStrategies = new ArrayList<>();
+        executorStrategies.add(new ExecutorStrategy[]{ExecutorStrategy.FIXED_POOL});
+        executorStrategies.add(new ExecutorStrategy[]{ExecutorStrategy.VIRTUAL_THREAD});
+        return executorStrategies;
+    }
+
+    @Override
+    protected ExecutorStrategy executorStrategy() {
+        return executorStrategy;
+    }
+
+    @Test
+    public void testExecutorStrategyThreads() throws InterruptedException, ExecutionException {
+        Callable<Thread> currentThread = Thread::currentThread;
+        Thread thread = getExecutorService().submit(currentThread).get();
+        LOGGER.info("The {} executor runs the transactions on {}", executorStrategy, thread);
+        if (executorStrategy == ExecutorStrategy.VIRTUAL_THREAD && isVirtual(thread)) {
+            return;
+        }
+        assertTrue(thread.getName().startsWith("Bob-"));
+    }
+
+    private boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
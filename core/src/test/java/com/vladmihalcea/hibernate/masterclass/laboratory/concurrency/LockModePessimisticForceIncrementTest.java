@@ -1,6 +1,7 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.concurrency;
 
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.LockWaitProfiler;
 import org.hibernate.LockMode;
 import org.hibernate.LockOptions;
 import org.hibernate.StaleObjectStateException;
@@ -13,6 +14,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 
@@ -34,6 +36,11 @@ public class LockModePessimisticForceIncrementTest extends AbstractTest {
         };
     }
 
+    @Override
+    protected boolean profileLockWaits() {
+        return true;
+    }
+
     @Before
     public void init() {
         super.init();
@@ -88,6 +95,10 @@ public class LockModePessimisticForceIncrementTest extends AbstractTest {
             }
         });
         endLatch.await();
+        getLockWaitProfiler().logReport();
+        assertEquals(2, getLockWaitProfiler().getTimer(
+            Repository.class, LockMode.PESSIMISTIC_FORCE_INCREMENT, LockOptions.WAIT_FOREVER, LockWaitProfiler.Outcome.ACQUIRED
+        ).getCount());
     }
 
     @Test
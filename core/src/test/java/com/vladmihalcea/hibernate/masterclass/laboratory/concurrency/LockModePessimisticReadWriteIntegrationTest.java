@@ -1,10 +1,15 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.concurrency;
 
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractPostgreSQLIntegrationTest;
+import com.codahale.metrics.Timer;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AsyncQueryLoggingListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.LockWaitProfiler;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
 import org.hibernate.LockMode;
 import org.hibernate.LockOptions;
 import org.hibernate.Session;
 import org.hibernate.StaleObjectStateException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -14,6 +19,10 @@ import javax.persistence.Table;
 import javax.persistence.Version;
 import java.math.BigDecimal;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -31,6 +40,23 @@ public class LockModePessimisticReadWriteIntegrationTest extends AbstractPostgre
 
     private final CountDownLatch endLatch = new CountDownLatch(1);
 
+    private final AsyncQueryLoggingListener queryLoggingListener = new AsyncQueryLoggingListener();
+
+    @Override
+    protected QueryExecutionListener queryLoggingListener() {
+        return queryLoggingListener;
+    }
+
+    @After
+    public void closeQueryLoggingListener() {
+        queryLoggingListener.close();
+    }
+
+    @Override
+    protected boolean profileLockWaits() {
+        return true;
+    }
+
     @Override
     protected Class<?>[] entities() {
         return new Class<?>[]{
@@ -70,6 +96,7 @@ public class LockModePessimisticReadWriteIntegrationTest extends AbstractPostgre
             }
         });
         awaitOnLatch(endLatch);
+        getLockWaitProfiler().logReport();
     }
 
     @Test
@@ -116,6 +143,9 @@ public class LockModePessimisticReadWriteIntegrationTest extends AbstractPostgre
                     LOGGER.info("PESSIMISTIC_WRITE acquired");
                 }
         );
+        assertEquals(1, getLockWaitProfiler().getTimer(
+            Product.class, LockMode.PESSIMISTIC_WRITE, LockOptions.NO_WAIT, LockWaitProfiler.Outcome.TIMEOUT
+        ).getCount());
     }
 
     @Test
@@ -146,6 +176,9 @@ public class LockModePessimisticReadWriteIntegrationTest extends AbstractPostgre
                     LOGGER.info("PESSIMISTIC_WRITE acquired");
                 }
         );
+        Timer lockWaitTimer = getLockWaitProfiler().getTimer(Product.class, LockMode.PESSIMISTIC_WRITE);
+        assertEquals(2, lockWaitTimer.getCount());
+        assertTrue(lockWaitTimer.getSnapshot().getMax() >= TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS / 2));
     }
 
     /**
@@ -1,6 +1,9 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.concurrency;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.RetryPolicy;
 import org.hibernate.StaleObjectStateException;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.OptimisticLockType;
@@ -13,6 +16,9 @@ import javax.persistence.Id;
 import javax.persistence.Table;
 import java.math.BigDecimal;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * OptimisticLockingOneRootDirtyVersioningTest - Test to check optimistic checking on a single entity being updated by many threads
@@ -117,6 +123,40 @@ public class OptimisticLockingOneRootDirtyVersioningTest extends AbstractTest {
         vlad.join();
     }
 
+    @Test
+    public void testOptimisticLockingWithRetry() {
+        doInTransaction(session -> {
+            Product product = new Product();
+            product.setId(1L);
+            product.setName("TV");
+            product.setDescription("Plasma TV");
+            product.setPrice(BigDecimal.valueOf(199.99));
+            product.setQuantity(7L);
+            session.persist(product);
+        });
+
+        AtomicInteger attempts = new AtomicInteger();
+        doInTransaction(RetryPolicy.exponential(3, 10, 100), session -> {
+            Product product = (Product) session.get(Product.class, 1L);
+            if (attempts.incrementAndGet() == 1) {
+                executeSync(() -> doInTransaction(_session -> {
+                    Product _product = (Product) _session.get(Product.class, 1L);
+                    _product.setQuantity(5L);
+                }));
+            }
+            product.setQuantity(product.getQuantity() + 1);
+        });
+
+        assertEquals(2, attempts.get());
+        Long quantity = doInTransaction(session -> {
+            return ((Product) session.get(Product.class, 1L)).getQuantity();
+        });
+        assertEquals(6L, (long) quantity);
+        Histogram attemptsHistogram = getMetricRegistry().histogram(MetricRegistry.name(RetryPolicy.class, "attempts"));
+        assertEquals(1, attemptsHistogram.getCount());
+        assertEquals(2, attemptsHistogram.getSnapshot().getMax());
+    }
+
     @Override
     protected Class<?>[] entities() {
         return new Class<?>[]{
@@ -133,7 +173,7 @@ public class OptimisticLockingOneRootDirtyVersioningTest extends AbstractTest {
     @Table(name = "product")
     @OptimisticLocking(type = OptimisticLockType.DIRTY)
     @DynamicUpdate
-    public static class Product {
+    public static class Product implements OptimisticLockingOneRootStressTest.StressedProduct {
 
         @Id
         private Long id;
@@ -1,8 +1,11 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.concurrency;
 
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AsyncQueryLoggingListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
 import org.hamcrest.core.IsInstanceOf;
 import org.hibernate.StaleObjectStateException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -27,6 +30,18 @@ public class OptimisticLockingOneRootEntityMultipleVersionsTest extends Abstract
     private ExecutorService executorService = Executors.newFixedThreadPool(10);
     private Product originalProduct;
 
+    private final AsyncQueryLoggingListener queryLoggingListener = new AsyncQueryLoggingListener();
+
+    @Override
+    protected QueryExecutionListener queryLoggingListener() {
+        return queryLoggingListener;
+    }
+
+    @After
+    public void closeQueryLoggingListener() {
+        queryLoggingListener.close();
+    }
+
     @Before
     public void addProduct() {
         originalProduct = doInTransaction(session -> {
@@ -274,7 +289,7 @@ public class OptimisticLockingOneRootEntityMultipleVersionsTest extends Abstract
      */
     @Entity(name = "Product")
     @Table(name = "product")
-    public static class Product {
+    public static class Product implements OptimisticLockingOneRootStressTest.StressedProduct {
 
         public static Product newInstance() {
             Product product = new Product();
@@ -124,7 +124,7 @@ public class OptimisticLockingOneRootOneVersionTest extends AbstractTest {
      */
     @Entity(name = "product")
     @Table(name = "product")
-    public static class Product {
+    public static class Product implements OptimisticLockingOneRootStressTest.StressedProduct {
 
         @Id
         private Long id;
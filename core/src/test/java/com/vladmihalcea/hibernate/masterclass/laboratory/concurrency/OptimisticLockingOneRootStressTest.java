@@ -0,0 +1,173 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.concurrency;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.OptimisticLockingStressEngine;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.RetryPolicy;
+import org.hibernate.Session;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * OptimisticLockingOneRootStressTest - Test to compare the retry and abort rates of the single root entity designs
+ * when three groups of threads update the likes, the description and the quantity of the same product.
+ *
+ * With one version, every update conflicts with all the other ones, while the dirty versioning
+ * and the multiple versions designs only detect the conflicts within the same group of threads.
+ *
+ * @author Vlad Mihalcea
+ */
+@RunWith(Parameterized.class)
+public class OptimisticLockingOneRootStressTest extends AbstractTest {
+
+    private static final int THREAD_COUNT = 6;
+
+    private static final int OPERATIONS_PER_THREAD = 20;
+
+    private static final long THINK_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OptimisticLockingOneRootStressTest.class);
+
+    private static final Map<Design, OptimisticLockingStressEngine.Report> REPORTS = new ConcurrentSkipListMap<>();
+
+    /**
+     * The operations of the product designs under test.
+     */
+    public interface StressedProduct {
+
+        void setId(Long id);
+
+        void setName(String name);
+
+        void setDescription(String description);
+
+        void setPrice(BigDecimal price);
+
+        void setQuantity(long quantity);
+
+        int incrementLikes();
+    }
+
+    public enum Design {
+        ONE_VERSION(
+            OptimisticLockingOneRootOneVersionTest.Product::new,
+            OptimisticLockingOneRootOneVersionTest.Product.class),
+        DIRTY_VERSIONING(
+            OptimisticLockingOneRootDirtyVersioningTest.Product::new,
+            OptimisticLockingOneRootDirtyVersioningTest.Product.class),
+        MULTIPLE_VERSIONS(
+            OptimisticLockingOneRootEntityMultipleVersionsTest.Product::newInstance,
+            OptimisticLockingOneRootEntityMultipleVersionsTest.Product.class,
+            OptimisticLockingOneRootEntityMultipleVersionsTest.ProductStock.class,
+            OptimisticLockingOneRootEntityMultipleVersionsTest.ProductLiking.class);
+
+        private final Supplier<StressedProduct> productFactory;
+
+        private final Class<?>[] entities;
+
+        Design(Supplier<StressedProduct> productFactory, Class<?>... entities) {
+            this.productFactory = productFactory;
+            this.entities = entities;
+        }
+
+        void persistProduct(Session session) {
+            StressedProduct product = productFactory.get();
+            product.setId(1L);
+            product.setName("TV");
+            product.setDescription("Plasma TV");
+            product.setPrice(BigDecimal.valueOf(199.99));
+            product.setQuantity(7L);
+            session.persist(product);
+        }
+
+        void updateProduct(Session session, int threadGroup, int operationIndex) {
+            StressedProduct product = (StressedProduct) session.get(entities[0], 1L);
+            think();
+            switch (threadGroup) {
+                case 0:
+                    product.incrementLikes();
+                    break;
+                case 1:
+                    product.setDescription("Plasma HDTV " + operationIndex);
+                    break;
+                default:
+                    product.setQuantity(operationIndex);
+            }
+        }
+
+        /**
+         * Keeps the loaded product for a while, so that the concurrent updates overlap.
+         */
+        private static void think() {
+            LockSupport.parkNanos(THINK_TIME_NANOS);
+        }
+    }
+
+    private final Design design;
+
+    public OptimisticLockingOneRootStressTest(Design design) {
+        this.design = design;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static java.util.Collection<Design[]> designs() {
+        List<Design[]> designs = new ArrayList<>();
+        for (Design design : Design.values()) {
+            designs.add(new Design[]{design});
+        }
+        return designs;
+    }
+
+    /**
+     * Logs the retry and abort rates of every design side by side. The rates depend on the thread scheduling,
+     * so they are only compared by reading the log, while the {@link OptimisticLockingOneRootOneVersionTest},
+     * the {@link OptimisticLockingOneRootDirtyVersioningTest} and the
+     * {@link OptimisticLockingOneRootEntityMultipleVersionsTest} check which updates conflict deterministically.
+     */
+    @AfterClass
+    public static void compareDesigns() {
+        StringBuilder comparison = new StringBuilder("Optimistic locking stress comparison:");
+        for (Map.Entry<Design, OptimisticLockingStressEngine.Report> entry : REPORTS.entrySet()) {
+            comparison.append(System.lineSeparator()).append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        LOGGER.info(comparison.toString());
+    }
+
+    @Override
+    protected Class<?>[] entities() {
+        return design.entities;
+    }
+
+    @Test
+    public void testOptimisticLockingStress() {
+        doInTransaction(session -> {
+            design.persistProduct(session);
+        });
+
+        OptimisticLockingStressEngine.Report report = new OptimisticLockingStressEngine()
+            .setThreadCount(THREAD_COUNT)
+            .setOperationsPerThread(OPERATIONS_PER_THREAD)
+            .setRetryPolicy(RetryPolicy.exponentialJitter(10, 1, 50))
+            .run((threadIndex, operationIndex) -> doInTransaction(session -> {
+                design.updateProduct(session, threadIndex % 3, operationIndex);
+            }));
+        assertTrue(report.getCommits() > 0);
+        assertEquals(THREAD_COUNT * OPERATIONS_PER_THREAD, report.getOperations());
+        REPORTS.put(design, report);
+    }
+}
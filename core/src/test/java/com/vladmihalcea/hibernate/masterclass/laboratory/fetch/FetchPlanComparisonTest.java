@@ -0,0 +1,379 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.fetch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.Company;
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.Image;
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.Importer;
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.Product;
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.Review;
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.SubVersion;
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.Version;
+import com.vladmihalcea.hibernate.masterclass.laboratory.fetch.HibernateApiMultiEagerCollectionFetchStrategyTest.WarehouseProductInfo;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetCountingDataSource;
+import org.hibernate.FetchMode;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.stat.Statistics;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.Subgraph;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FetchPlanComparisonTest - Test running the same Product graph load with every {@link FetchPlan},
+ * to compare the number of SQL queries, the number of rows transferred and the number of duplicate roots.
+ *
+ * A plan is flagged as a cartesian product when the root query returns the same Product more than once,
+ * since its row is then repeated for every combination of the join fetched collection elements. Comparing the rows
+ * to the number of loaded entities is not enough, since the entities may still outnumber the rows when two sibling
+ * collections (e.g. images and reviews) are join fetched at once, like when every product has a single review.
+ * The comparison of all plans is logged once all of them were run.
+ *
+ * @author Vlad Mihalcea
+ */
+@RunWith(Parameterized.class)
+public class FetchPlanComparisonTest extends AbstractTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FetchPlanComparisonTest.class);
+
+    private static final int PRODUCT_COUNT = 10;
+
+    private static final int IMAGE_COUNT = 3;
+
+    private static final int VERSION_COUNT = 2;
+
+    private static final int SUB_VERSION_COUNT = 2;
+
+    private static final int REVIEW_COUNT = 3;
+
+    private static final int BATCH_SIZE = 5;
+
+    /**
+     * The number of Version entities, and so of subVersions collections, which the SELECT plan loads one by one.
+     */
+    private static final int SECONDARY_SELECT_THRESHOLD = PRODUCT_COUNT * IMAGE_COUNT * VERSION_COUNT;
+
+    private static final Map<FetchPlan, Report> REPORTS = new ConcurrentSkipListMap<>();
+
+    public enum FetchPlan {
+        /**
+         * A single JPQL query join fetching all the associations.
+         */
+        JOIN,
+        /**
+         * A JPQL query for the products, every association being loaded by a secondary select.
+         */
+        SELECT,
+        /**
+         * A JPQL query for the products, every collection being loaded for all its owners with a subselect.
+         */
+        SUBSELECT,
+        /**
+         * A JPQL query for the products, the collections and the proxies being loaded in batches.
+         */
+        BATCH_SIZE,
+        /**
+         * A JPQL query for the products with a fetch graph hint covering all the associations.
+         */
+        ENTITY_GRAPH
+    }
+
+    public static class Report {
+        private final FetchPlan fetchPlan;
+        private final long queries;
+        private final long rows;
+        private final long entities;
+        private final int roots;
+        private final int duplicateRoots;
+
+        private Report(FetchPlan fetchPlan, long queries, long rows, long entities, int roots, int duplicateRoots) {
+            this.fetchPlan = fetchPlan;
+            this.queries = queries;
+            this.rows = rows;
+            this.entities = entities;
+            this.roots = roots;
+            this.duplicateRoots = duplicateRoots;
+        }
+
+        public long getQueries() {
+            return queries;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getEntities() {
+            return entities;
+        }
+
+        public int getDuplicateRoots() {
+            return duplicateRoots;
+        }
+
+        public boolean isCartesianProduct() {
+            return duplicateRoots > 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%-12s queries=%d, rows=%d, entities=%d, roots=%d, duplicateRoots=%d%s",
+                fetchPlan, queries, rows, entities, roots, duplicateRoots,
+                isCartesianProduct() ? " CARTESIAN PRODUCT" : ""
+            );
+        }
+    }
+
+    private final FetchPlan fetchPlan;
+
+    private ResultSetCountingDataSource countingDataSource;
+
+    public FetchPlanComparisonTest(FetchPlan fetchPlan) {
+        this.fetchPlan = fetchPlan;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static java.util.Collection<FetchPlan[]> fetchPlans() {
+        List<FetchPlan[]> fetchPlans = new ArrayList<>();
+        for (FetchPlan fetchPlan : FetchPlan.values()) {
+            fetchPlans.add(new FetchPlan[]{fetchPlan});
+        }
+        return fetchPlans;
+    }
+
+    @AfterClass
+    public static void logComparison() {
+        StringBuilder comparison = new StringBuilder("Fetch plan comparison:");
+        for (Report report : REPORTS.values()) {
+            comparison.append(System.lineSeparator()).append(report);
+        }
+        LOGGER.info(comparison.toString());
+    }
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            WarehouseProductInfo.class,
+            Importer.class,
+            Image.class,
+            Product.class,
+            Company.class,
+            SubVersion.class,
+            Version.class,
+            Review.class,
+        };
+    }
+
+    @Override
+    protected boolean nativeHibernateSessionFactoryBootstrap() {
+        return false;
+    }
+
+    @Override
+    protected DataSource newDataSource() {
+        countingDataSource = new ResultSetCountingDataSource(super.newDataSource());
+        return countingDataSource;
+    }
+
+    @Override
+    protected Integrator integrator() {
+        return new Integrator() {
+            @Override
+            public void integrate(Configuration configuration, SessionFactoryImplementor sessionFactory,
+                                  SessionFactoryServiceRegistry serviceRegistry) {
+                for (Iterator<Collection> iterator = configuration.getCollectionMappings(); iterator.hasNext(); ) {
+                    Collection collection = iterator.next();
+                    if (fetchPlan == FetchPlan.SUBSELECT) {
+                        collection.setFetchMode(FetchMode.SELECT);
+                        collection.setSubselectLoadable(true);
+                        collection.getOwner().setSubselectLoadableCollections(true);
+                    } else if (fetchPlan == FetchPlan.BATCH_SIZE) {
+                        collection.setBatchSize(BATCH_SIZE);
+                    }
+                }
+                if (fetchPlan == FetchPlan.BATCH_SIZE) {
+                    for (Iterator<PersistentClass> iterator = configuration.getClassMappings(); iterator.hasNext(); ) {
+                        iterator.next().setBatchSize(BATCH_SIZE);
+                    }
+                }
+            }
+
+            @Override
+            public void integrate(MetadataImplementor metadata, SessionFactoryImplementor sessionFactory,
+                                  SessionFactoryServiceRegistry serviceRegistry) {
+            }
+
+            @Override
+            public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                     SessionFactoryServiceRegistry serviceRegistry) {
+            }
+        };
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        doInJPA(entityManager -> {
+            int imageIndex = 0;
+            for (int i = 0; i < PRODUCT_COUNT; i++) {
+                Company company = new Company();
+                company.setName(String.format("Company %d", i));
+                entityManager.persist(company);
+
+                Importer importer = new Importer();
+                importer.setName(String.format("Importer %d", i));
+                entityManager.persist(importer);
+
+                Product product = new Product(String.format("code%d", i));
+                product.setName(String.format("Product %d", i));
+                product.setCompany(company);
+                product.setImporter(importer);
+
+                for (int j = 0; j < IMAGE_COUNT; j++) {
+                    Image image = new Image();
+                    image.setName(String.format("Image %d", j));
+                    image.setIndex(imageIndex++);
+                    for (int k = 0; k < VERSION_COUNT; k++) {
+                        Version version = new Version();
+                        version.setType(String.format("Version %d", k));
+                        for (int l = 0; l < SUB_VERSION_COUNT; l++) {
+                            SubVersion subVersion = new SubVersion();
+                            subVersion.setCode(String.format("Sub version %d", l));
+                            version.addSubVersion(subVersion);
+                        }
+                        image.addVersion(version);
+                    }
+                    product.addImage(image);
+                }
+
+                for (int j = 0; j < REVIEW_COUNT; j++) {
+                    Review review = new Review();
+                    review.setComment(String.format("Review %d", j));
+                    product.addReview(review);
+                }
+
+                WarehouseProductInfo warehouseProductInfo = new WarehouseProductInfo();
+                warehouseProductInfo.setQuantity(i);
+                product.addWarehouse(warehouseProductInfo);
+
+                entityManager.persist(product);
+            }
+        });
+    }
+
+    @Test
+    public void testFetchPlan() {
+        Statistics statistics = getSessionFactory().getStatistics();
+        Report report = doInJPA(entityManager -> {
+            statistics.clear();
+            countingDataSource.reset();
+
+            List<Product> products;
+            switch (fetchPlan) {
+                case JOIN:
+                    products = entityManager.createQuery(
+                        "select p " +
+                        "from Product p " +
+                        "left join fetch p.company " +
+                        "left join fetch p.importer " +
+                        "left join fetch p.reviews " +
+                        "left join fetch p.images i " +
+                        "left join fetch i.versions v " +
+                        "left join fetch v.subVersions " +
+                        "order by p.id", Product.class)
+                    .getResultList();
+                    break;
+                case ENTITY_GRAPH:
+                    EntityGraph<Product> entityGraph = entityManager.createEntityGraph(Product.class);
+                    entityGraph.addAttributeNodes("company", "importer", "reviews");
+                    Subgraph<Image> imageGraph = entityGraph.addSubgraph("images");
+                    Subgraph<Version> versionGraph = imageGraph.addSubgraph("versions");
+                    versionGraph.addAttributeNodes("subVersions");
+                    products = entityManager.createQuery(
+                        "select p from Product p order by p.id", Product.class)
+                    .setHint("javax.persistence.fetchgraph", entityGraph)
+                    .getResultList();
+                    break;
+                default:
+                    products = entityManager.createQuery(
+                        "select p from Product p order by p.id", Product.class)
+                    .getResultList();
+            }
+
+            Map<Product, Boolean> distinctProducts = new IdentityHashMap<>();
+            int subVersionCount = 0;
+            int reviewCount = 0;
+            for (Product product : products) {
+                if (distinctProducts.put(product, Boolean.TRUE) != null) {
+                    continue;
+                }
+                product.getCompany().getName();
+                product.getImporter().getName();
+                for (Review review : product.getReviews()) {
+                    review.getComment();
+                    reviewCount++;
+                }
+                for (Image image : product.getImages()) {
+                    for (Version version : image.getVersions()) {
+                        for (SubVersion subVersion : version.getSubVersions()) {
+                            subVersion.getCode();
+                            subVersionCount++;
+                        }
+                    }
+                }
+            }
+            assertEquals(PRODUCT_COUNT, distinctProducts.size());
+            assertEquals(PRODUCT_COUNT * REVIEW_COUNT, reviewCount);
+            assertEquals(PRODUCT_COUNT * IMAGE_COUNT * VERSION_COUNT * SUB_VERSION_COUNT, subVersionCount);
+
+            return new Report(
+                fetchPlan,
+                countingDataSource.getResultSetCount(),
+                countingDataSource.getRowCount(),
+                statistics.getEntityLoadCount(),
+                distinctProducts.size(),
+                products.size() - distinctProducts.size()
+            );
+        });
+        REPORTS.put(fetchPlan, report);
+        LOGGER.info("{}", report);
+
+        switch (fetchPlan) {
+            case JOIN:
+            case ENTITY_GRAPH:
+                assertTrue(report.isCartesianProduct());
+                break;
+            case SELECT:
+                assertFalse(report.isCartesianProduct());
+                assertTrue(report.getQueries() > SECONDARY_SELECT_THRESHOLD);
+                break;
+            case SUBSELECT:
+            case BATCH_SIZE:
+                assertFalse(report.isCartesianProduct());
+                assertTrue(report.getQueries() < SECONDARY_SELECT_THRESHOLD);
+                break;
+        }
+    }
+}
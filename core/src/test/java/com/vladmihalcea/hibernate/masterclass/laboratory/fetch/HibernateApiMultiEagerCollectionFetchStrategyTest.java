@@ -672,6 +672,10 @@ public class HibernateApiMultiEagerCollectionFetchStrategyTest extends AbstractT
             image.setProduct(null);
         }
 
+        public Set<Review> getReviews() {
+            return reviews;
+        }
+
         public void addReview(Review review) {
             reviews.add(review);
             review.setProduct(this);
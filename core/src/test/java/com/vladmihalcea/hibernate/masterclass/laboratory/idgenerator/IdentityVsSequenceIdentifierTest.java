@@ -10,7 +10,11 @@ import org.hibernate.annotations.GenericGenerator;
 
 import org.junit.Test;
 
+import com.codahale.metrics.Histogram;
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.StatementMetricsListener.StatementType;
+
+import static org.junit.Assert.assertEquals;
 
 public class IdentityVsSequenceIdentifierTest extends AbstractTest {
 
@@ -49,6 +53,7 @@ public class IdentityVsSequenceIdentifierTest extends AbstractTest {
     @Test
     public void testSequenceIdentifierGenerator() {
         LOGGER.debug("testSequenceIdentifierGenerator");
+        getStatementMetrics().reset();
         doInTransaction(session -> {
                 for (int i = 0; i < 5; i++) {
                     session.persist(new SequenceIdentifier());
@@ -57,6 +62,10 @@ public class IdentityVsSequenceIdentifierTest extends AbstractTest {
                 return null;
 
         });
+        Histogram insertBatches = getStatementMetrics().getBatchSizeHistogram(StatementType.INSERT);
+        assertEquals(3, insertBatches.getCount());
+        assertEquals(2, insertBatches.getSnapshot().getMax());
+        assertEquals(5, getStatementMetrics().getRowCounter(StatementType.INSERT).getCount());
     }
 
     @Test
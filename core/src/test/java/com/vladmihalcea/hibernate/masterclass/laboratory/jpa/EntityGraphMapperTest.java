@@ -1,6 +1,10 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.jpa;
 
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.DatasetSeeder;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.LongObjectMap;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper.ColumnType;
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider;
 import org.junit.Test;
 
@@ -9,12 +13,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
 
 import static com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider.*;
 
@@ -31,6 +35,12 @@ public class EntityGraphMapperTest extends AbstractTest {
 
     public static final String INSERT_POST_DETAILS= "insert into post_details (id, created_on, version) values (?, ?, ?)";
 
+    public static final String SELECT_POST_COMMENTS =
+        "SELECT p.id, p.title, p.version, pc.id, pc.review, pc.version " +
+        "FROM post AS p " +
+        "JOIN post_comment AS pc ON p.id = pc.post_id " +
+        "ORDER BY p.id, pc.id";
+
     private BlogEntityProvider entityProvider = new BlogEntityProvider();
 
     private int id = 1;
@@ -44,56 +54,42 @@ public class EntityGraphMapperTest extends AbstractTest {
     @Override
     public void init() {
         super.init();
-        doInJDBC(connection -> {
-            try (
-                    PreparedStatement postStatement = connection.prepareStatement(INSERT_POST);
-                    PreparedStatement postCommentStatement = connection.prepareStatement(INSERT_POST_COMMENT);
-                    PreparedStatement postDetailsStatement = connection.prepareStatement(INSERT_POST_DETAILS);
-            ) {
-
-                int postCount = getPostCount();
-                int postCommentCount = getPostCommentCount();
-
-                int index;
-
-                for (int i = 0; i < postCount; i++) {
-                    if (i > 0 && i % 100 == 0) {
-                        postStatement.executeBatch();
-                        postDetailsStatement.executeBatch();
-                    }
+        int postCount = getPostCount();
+        int postCommentCount = getPostCommentCount();
+
+        DatasetSeeder seeder = newDatasetSeeder();
+        seeder.table("post", INSERT_POST, postCount, (statement, i) -> {
+            int index = 0;
+            statement.setString(++index, String.format("Post no. %1$d", i));
+            statement.setInt(++index, (int) i);
+            statement.setLong(++index, i);
+        });
+        seeder.table("post_details", INSERT_POST_DETAILS, postCount, (statement, i) -> {
+            int index = 0;
+            statement.setLong(++index, i);
+            statement.setTimestamp(++index, new Timestamp(System.currentTimeMillis()));
+            statement.setInt(++index, (int) i);
+        }).dependsOn("post");
+        seeder.table("post_comment", INSERT_POST_COMMENT, (long) postCount * postCommentCount, (statement, i) -> {
+            long postId = i / postCommentCount;
+            int index = 0;
+            statement.setLong(++index, postId);
+            statement.setString(++index, String.format("Post comment %1$d", i % postCommentCount));
+            statement.setInt(++index, (int) postId);
+            statement.setLong(++index, i);
+        }).dependsOn("post");
+        seeder.setParallel(parallelSeeding()).seed();
+    }
 
-                    index = 0;
-                    postStatement.setString(++index, String.format("Post no. %1$d", i));
-                    postStatement.setInt(++index, i);
-                    postStatement.setLong(++index, i);
-                    postStatement.addBatch();
-
-                    index = 0;
-                    postDetailsStatement.setInt(++index, i);
-                    postDetailsStatement.setTimestamp(++index, new Timestamp(System.currentTimeMillis()));
-                    postDetailsStatement.setInt(++index, i);
-                    postDetailsStatement.addBatch();
-                }
-                postStatement.executeBatch();
-                postDetailsStatement.executeBatch();
-
-                for (int i = 0; i < postCount; i++) {
-                    for (int j = 0; j < postCommentCount; j++) {
-                        index = 0;
-                        postCommentStatement.setLong(++index, i);
-                        postCommentStatement.setString(++index, String.format("Post comment %1$d", j));
-                        postCommentStatement.setInt(++index, i);
-                        postCommentStatement.setLong(++index, (postCommentCount * i) + j);
-                        postCommentStatement.addBatch();
-                        if (j % 100 == 0) {
-                            postCommentStatement.executeBatch();
-                        }
-                    }
-                }
-                postCommentStatement.executeBatch();
-            } catch (SQLException e) {
-                fail(e.getMessage());
-            }
+    @Test
+    public void testSeededRowCounts() {
+        doInJPA(entityManager -> {
+            assertEquals((long) getPostCount(),
+                entityManager.createQuery("select count(p) from Post p").getSingleResult());
+            assertEquals((long) getPostCount(),
+                entityManager.createQuery("select count(pd) from PostDetails pd").getSingleResult());
+            assertEquals((long) getPostCount() * getPostCommentCount(),
+                entityManager.createQuery("select count(pc) from PostComment pc where pc.post.id = pc.version").getSingleResult());
         });
     }
 
@@ -119,10 +115,79 @@ public class EntityGraphMapperTest extends AbstractTest {
         });
     }
 
-    private List<Post> toPosts(ResultSet resultSet) throws SQLException {
-        Map<Long, Post> postMap = new LinkedHashMap<>();
+    @Test
+    public void testJdbcGraphMapper() {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            doInJDBC(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_POST_COMMENTS)) {
+                    List<Post> expectedPosts;
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        expectedPosts = toPosts(resultSet);
+                    }
+                    for (ExecutorService mapperExecutorService : Arrays.asList(null, executorService)) {
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            List<Post> posts = postGraphMapper()
+                                .setChunkSize(7)
+                                .setExpectedParentCount(getPostCount())
+                                .setExecutorService(mapperExecutorService)
+                                .setMaxPendingChunks(2)
+                                .map(resultSet);
+                            assertEquals(expectedPosts.size(), posts.size());
+                            for (int i = 0; i < posts.size(); i++) {
+                                Post expectedPost = expectedPosts.get(i);
+                                Post post = posts.get(i);
+                                assertEquals(expectedPost.getId(), post.getId());
+                                assertEquals(expectedPost.getTitle(), post.getTitle());
+                                assertEquals(expectedPost.getComments().size(), post.getComments().size());
+                                for (int j = 0; j < post.getComments().size(); j++) {
+                                    assertEquals(expectedPost.getComments().get(j).getId(), post.getComments().get(j).getId());
+                                }
+                            }
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new DataAccessException(e);
+                }
+            });
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Maps the {@link #SELECT_POST_COMMENTS} result set by column index.
+     */
+    public static ResultSetGraphMapper<Post, PostComment> postGraphMapper() {
+        ResultSetGraphMapper<Post, PostComment> mapper = new ResultSetGraphMapper<>();
+        int postId = mapper.column(1, ColumnType.LONG);
+        int postTitle = mapper.column(2, ColumnType.STRING);
+        int postVersion = mapper.column(3, ColumnType.INT);
+        int commentId = mapper.column(4, ColumnType.LONG);
+        int commentReview = mapper.column(5, ColumnType.STRING);
+        int commentVersion = mapper.column(6, ColumnType.INT);
+        return mapper
+            .setParentIdColumn(postId)
+            .setParentMapper((id, row) -> {
+                Post post = new Post(id);
+                post.setTitle(row.getString(postTitle));
+                post.setVersion(row.getInt(postVersion));
+                return post;
+            })
+            .setChildMapper(row -> {
+                PostComment comment = new PostComment();
+                comment.setId(row.getLong(commentId));
+                comment.setReview(row.getString(commentReview));
+                comment.setVersion(row.getInt(commentVersion));
+                return comment;
+            })
+            .setLinker(Post::addComment);
+    }
+
+    protected List<Post> toPosts(ResultSet resultSet) throws SQLException {
+        LongObjectMap<Post> postMap = new LongObjectMap<>();
         while (resultSet.next()) {
-            Long postId = resultSet.getLong(1);
+            long postId = resultSet.getLong(1);
             Post post = postMap.get(postId);
             if(post == null) {
                 post = new Post(postId);
@@ -163,6 +228,10 @@ public class EntityGraphMapperTest extends AbstractTest {
         return 10;
     }
 
+    protected boolean parallelSeeding() {
+        return false;
+    }
+
     @Override
     protected boolean nativeHibernateSessionFactoryBootstrap() {
         return false;
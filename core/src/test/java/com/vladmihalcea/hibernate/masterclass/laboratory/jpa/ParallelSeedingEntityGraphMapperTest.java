@@ -0,0 +1,19 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.jpa;
+
+/**
+ * ParallelSeedingEntityGraphMapperTest - Test mapping to entity, with the tables seeded in parallel
+ *
+ * @author Vlad Mihalcea
+ */
+public class ParallelSeedingEntityGraphMapperTest extends EntityGraphMapperTest {
+
+    @Override
+    protected int getPostCount() {
+        return 1000;
+    }
+
+    @Override
+    protected boolean parallelSeeding() {
+        return true;
+    }
+}
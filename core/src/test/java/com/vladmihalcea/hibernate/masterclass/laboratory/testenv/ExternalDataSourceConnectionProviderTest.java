@@ -1,5 +1,6 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.testenv;
 
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
 import net.ttddyy.dsproxy.listener.SLF4JQueryLoggingListener;
 import net.ttddyy.dsproxy.support.ProxyDataSource;
 import org.hibernate.SessionFactory;
@@ -37,7 +38,7 @@ public class ExternalDataSourceConnectionProviderTest extends AbstractConnection
 
     protected ProxyDataSource newDataSource() {
         JDBCDataSource actualDataSource = new JDBCDataSource();
-        actualDataSource.setUrl("jdbc:hsqldb:mem:test");
+        actualDataSource.setUrl(AbstractTest.HsqldbDataSourceProvider.url());
         actualDataSource.setUser("sa");
         actualDataSource.setPassword("");
         ProxyDataSource proxyDataSource = new ProxyDataSource();
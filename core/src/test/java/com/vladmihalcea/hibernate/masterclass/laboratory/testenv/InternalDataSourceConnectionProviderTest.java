@@ -1,5 +1,6 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.testenv;
 
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
@@ -16,7 +17,7 @@ public class InternalDataSourceConnectionProviderTest extends AbstractConnection
         properties.put("hibernate.show_sql", "true");
         //driver settings
         properties.put("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
-        properties.put("hibernate.connection.url", "jdbc:hsqldb:mem:test");
+        properties.put("hibernate.connection.url", AbstractTest.HsqldbDataSourceProvider.url());
         properties.put("hibernate.connection.username", "sa");
         properties.put("hibernate.connection.password", "");
         //c3p0 settings
@@ -1,5 +1,6 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.testenv;
 
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
 import net.ttddyy.dsproxy.listener.SLF4JQueryLoggingListener;
 import net.ttddyy.dsproxy.support.ProxyDataSource;
 import org.hibernate.Session;
@@ -41,7 +42,7 @@ public class TransactionIsolationExternalDataSourceExternalconfgiurationConnecti
 
     protected ProxyDataSource newDataSource() {
         JDBCDataSource actualDataSource = new JDBCDataSource();
-        actualDataSource.setUrl("jdbc:hsqldb:mem:test");
+        actualDataSource.setUrl(AbstractTest.HsqldbDataSourceProvider.url());
         actualDataSource.setUser("sa");
         actualDataSource.setPassword("");
         Properties properties = new Properties();
@@ -57,7 +57,7 @@ public abstract class AbstractJPATest {
 
     private ProxyDataSource newDataSource() {
         JDBCDataSource actualDataSource = new JDBCDataSource();
-        actualDataSource.setUrl("jdbc:hsqldb:mem:test");
+        actualDataSource.setUrl(AbstractTest.HsqldbDataSourceProvider.url());
         actualDataSource.setUser("sa");
         actualDataSource.setPassword("");
         ProxyDataSource proxyDataSource = new ProxyDataSource();
@@ -15,11 +15,14 @@ import java.util.Properties;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -33,11 +36,17 @@ import javax.sql.DataSource;
 import org.hibernate.Interceptor;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
 import org.hibernate.stat.SecondLevelCacheStatistics;
 
 import org.junit.After;
@@ -46,6 +55,7 @@ import org.junit.Before;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
 import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
 import net.sourceforge.jtds.jdbcx.JtdsDataSource;
@@ -53,6 +63,7 @@ import net.ttddyy.dsproxy.ExecutionInfo;
 import net.ttddyy.dsproxy.QueryInfo;
 import net.ttddyy.dsproxy.listener.ChainListener;
 import net.ttddyy.dsproxy.listener.DefaultQueryLogEntryCreator;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
 import net.ttddyy.dsproxy.listener.SLF4JQueryLoggingListener;
 import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
 import oracle.jdbc.pool.OracleDataSource;
@@ -120,8 +131,30 @@ public abstract class AbstractTest {
         MVCC
     }
 
+    protected enum ExecutorStrategy {
+        /**
+         * A single background thread, named Bob.
+         */
+        SINGLE_THREAD,
+        /**
+         * A fixed pool of {@link #executorPoolSize()} threads.
+         */
+        FIXED_POOL,
+        /**
+         * A new virtual thread for every task, falling back to {@link #FIXED_POOL} prior to Java 21.
+         */
+        VIRTUAL_THREAD
+    }
+
     public static class HsqldbDataSourceProvider implements DataSourceProvider {
 
+        /**
+         * Every fork of the parallel profile is a separate JVM, so it gets its own in-memory database.
+         */
+        public static String url() {
+            return "jdbc:hsqldb:mem:test";
+        }
+
         @Override
         public String hibernateDialect() {
             return "org.hibernate.dialect.HSQLDialect";
@@ -130,7 +163,7 @@ public abstract class AbstractTest {
         @Override
         public DataSource dataSource() {
             JDBCDataSource dataSource = new JDBCDataSource();
-            dataSource.setUrl("jdbc:hsqldb:mem:test");
+            dataSource.setUrl(url());
             dataSource.setUser("sa");
             dataSource.setPassword("");
             return dataSource;
@@ -144,7 +177,7 @@ public abstract class AbstractTest {
         @Override
         public Properties dataSourceProperties() {
             Properties properties = new Properties();
-            properties.setProperty("url", "jdbc:hsqldb:mem:test");
+            properties.setProperty("url", url());
             properties.setProperty("user", "sa");
             properties.setProperty("password", "");
             return properties;
@@ -409,11 +442,7 @@ public abstract class AbstractTest {
         }
     }
 
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor(r -> {
-        Thread bob = new Thread(r);
-        bob.setName("Bob");
-        return bob;
-    });
+    private ExecutorService executorService;
 
     protected final Logger LOGGER = LoggerFactory.getLogger(getClass());
 
@@ -450,6 +479,14 @@ public abstract class AbstractTest {
         }
     }
 
+    @FunctionalInterface
+    protected interface HibernateStatelessTransactionFunction<T> extends Function<StatelessSession, T> {
+    }
+
+    @FunctionalInterface
+    protected interface HibernateStatelessTransactionConsumer extends Consumer<StatelessSession> {
+    }
+
     @FunctionalInterface
     protected interface JPATransactionFunction<T> extends Function<EntityManager, T> {
         default void beforeTransactionCompletion() {
@@ -485,19 +522,48 @@ public abstract class AbstractTest {
     private EntityManagerFactory emf;
     private SessionFactory sf;
 
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final StatementMetricsListener statementMetricsListener = new StatementMetricsListener(metricRegistry);
+
+    private QueryExecutionListener queryExecutionListener;
+
+    private SessionFactoryCache.ForwardingQueryExecutionListener forwardingQueryExecutionListener;
+
+    private LockWaitProfiler lockWaitProfiler;
+
+    private CacheStatisticsSampler cacheStatisticsSampler;
+
     @Before
     public void init() {
         if( nativeHibernateSessionFactoryBootstrap()) {
-            sf = newSessionFactory();
+            sf = reuseSessionFactory() ? getCachedSessionFactory() : newSessionFactory();
         } else {
             emf = newEntityManagerFactory();
         }
+        if (profileLockWaits()) {
+            getLockWaitProfiler().register(getSessionFactory());
+        }
+        if (sampleCacheStatistics()) {
+            cacheStatisticsSampler = new CacheStatisticsSampler(metricRegistry, getSessionFactory());
+            cacheStatisticsSampler.start(CacheStatisticsSampler.DEFAULT_SAMPLE_INTERVAL_MILLIS);
+        }
     }
 
     @After
     public void destroy() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+        if (cacheStatisticsSampler != null) {
+            cacheStatisticsSampler.stop();
+            LOGGER.info(cacheStatisticsSampler.getSummary());
+            cacheStatisticsSampler = null;
+        }
         if( nativeHibernateSessionFactoryBootstrap()) {
-            sf.close();
+            if (!reuseSessionFactory()) {
+                sf.close();
+            }
         } else {
             emf.close();
         }
@@ -514,6 +580,22 @@ public abstract class AbstractTest {
         return true;
     }
 
+    /**
+     * @return the data source the {@link SessionFactory} gets its connections from
+     */
+    protected DataSource getDataSource() {
+        return ((SessionFactoryImplementor) getSessionFactory()).getServiceRegistry()
+            .getService(ConnectionProvider.class)
+            .unwrap(DataSource.class);
+    }
+
+    /**
+     * @return a {@link DatasetSeeder} inserting rows through the {@link SessionFactory} data source
+     */
+    protected DatasetSeeder newDatasetSeeder() {
+        return new DatasetSeeder(getDataSource());
+    }
+
     protected abstract Class<?>[] entities();
 
     protected List<String> entityClassNames() {
@@ -528,8 +610,64 @@ public abstract class AbstractTest {
         return null;
     }
 
+    /**
+     * An {@link Integrator} registered with both the native and the JPA bootstrap, which can also adjust
+     * the mappings of the {@link Configuration} before the entity persisters are built.
+     *
+     * @return the integrator, or null if none
+     */
+    protected Integrator integrator() {
+        return null;
+    }
+
+    /**
+     * Share the {@link SessionFactory} with all the other tests using the same entities and settings,
+     * instead of building a new one for every test method. Enabled with -DreuseSessionFactory=true
+     * for all tests which don't use an {@link Interceptor}, since interceptors usually hold test state,
+     * or an {@link Integrator}, since it may change the mappings.
+     *
+     * @return whether the {@link SessionFactory} is taken from the {@link SessionFactoryCache}
+     */
+    protected boolean reuseSessionFactory() {
+        return Boolean.getBoolean("reuseSessionFactory") && interceptor() == null && integrator() == null;
+    }
+
+    protected SessionFactoryCache.DataResetMode dataResetMode() {
+        return SessionFactoryCache.DataResetMode.SCHEMA_EXPORT;
+    }
+
+    private SessionFactory getCachedSessionFactory() {
+        Properties keyProperties = buildProperties(true);
+        DataSourceProvider dataSourceProvider = getDataSourceProvider();
+        SessionFactoryCache.Key key = new SessionFactoryCache.Key(
+            entityClassNames(),
+            packages(),
+            interceptor(),
+            dataSourceProvider.getClass().getName() + dataSourceProvider.dataSourceProperties() +
+                ", multiRowInsertSize=" + multiRowInsertSize(),
+            keyProperties
+        );
+        return SessionFactoryCache.get(key, k -> {
+                Properties properties = buildProperties(false);
+                Configuration configuration = newConfiguration(properties);
+                return new SessionFactoryCache.Entry(
+                    buildSessionFactory(configuration, properties),
+                    configuration,
+                    forwardingQueryExecutionListener
+                );
+            },
+            getQueryExecutionListener(),
+            dataResetMode(),
+            dataSourceProvider.database() == DataSourceProvider.Database.HSQLDB
+        );
+    }
+
     private SessionFactory newSessionFactory() {
-        Properties properties = getProperties();
+        Properties properties = buildProperties(false);
+        return buildSessionFactory(newConfiguration(properties), properties);
+    }
+
+    private Configuration newConfiguration(Properties properties) {
         Configuration configuration = new Configuration().addProperties(properties);
         for(Class<?> entityClass : entities()) {
             configuration.addAnnotatedClass(entityClass);
@@ -544,8 +682,17 @@ public abstract class AbstractTest {
         if(interceptor != null) {
             configuration.setInterceptor(interceptor);
         }
+        return configuration;
+    }
+
+    private SessionFactory buildSessionFactory(Configuration configuration, Properties properties) {
+        BootstrapServiceRegistryBuilder bootstrapServiceRegistryBuilder = new BootstrapServiceRegistryBuilder();
+        Integrator integrator = integrator();
+        if(integrator != null) {
+            bootstrapServiceRegistryBuilder.with(integrator);
+        }
         return configuration.buildSessionFactory(
-                new StandardServiceRegistryBuilder()
+                new StandardServiceRegistryBuilder(bootstrapServiceRegistryBuilder.build())
                         .applySettings(properties)
                         .build()
         );
@@ -553,11 +700,16 @@ public abstract class AbstractTest {
 
     protected EntityManagerFactory newEntityManagerFactory() {
         PersistenceUnitInfo persistenceUnitInfo = new PersistenceUnitInfoImpl(
-            getClass().getSimpleName(), entityClassNames(), getProperties()
+            getClass().getSimpleName(), entityClassNames(), buildProperties(false)
         );
 
         Map<String, Object> configuration = new HashMap<>();
         configuration.put(org.hibernate.jpa.AvailableSettings.INTERCEPTOR, interceptor());
+        Integrator integrator = integrator();
+        if(integrator != null) {
+            configuration.put(org.hibernate.jpa.AvailableSettings.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(integrator));
+        }
         EntityManagerFactoryBuilderImpl entityManagerFactoryBuilder = new EntityManagerFactoryBuilderImpl(
             new PersistenceUnitInfoDescriptor(persistenceUnitInfo), configuration
         );
@@ -573,32 +725,130 @@ public abstract class AbstractTest {
         //properties.put("hibernate.format_sql", Boolean.TRUE.toString());
         //properties.put("hibernate.use_sql_coments", Boolean.FALSE.toString());
         properties.put("hibernate.generate_statistics", Boolean.TRUE.toString());
-        
+        return properties;
+    }
+
+    /**
+     * Build the {@link #getProperties()} settings along with the data source, unless they already declare one.
+     *
+     * @param placeholderDataSource whether the data source is replaced by the {@link SessionFactoryCache.Key#DATA_SOURCE}
+     *                              placeholder, so that computing a {@link SessionFactoryCache.Key} doesn't build
+     *                              a {@link DataSource} which would be discarded on a cache hit
+     * @return the {@link SessionFactory} properties
+     */
+    private Properties buildProperties(boolean placeholderDataSource) {
+        Properties properties = getProperties();
         //data source settings
-        properties.put("hibernate.connection.datasource", newDataSource());
+        properties.putIfAbsent("hibernate.connection.datasource",
+            placeholderDataSource ? SessionFactoryCache.Key.DATA_SOURCE : newDataSource());
         return properties;
     }
 
     protected DataSource newDataSource() {
+        DataSource dataSource;
         if (proxyDataSource()) {
-            ChainListener listener = new ChainListener();
-            SLF4JQueryLoggingListener loggingListener = new SLF4JQueryLoggingListener();
-            loggingListener.setQueryLogEntryCreator(new AbstractTest.InlineQueryLogEntryCreator());
-            listener.addListener(loggingListener);
-            return ProxyDataSourceBuilder
+            QueryExecutionListener listener = getQueryExecutionListener();
+            if (reuseSessionFactory()) {
+                forwardingQueryExecutionListener = new SessionFactoryCache.ForwardingQueryExecutionListener(listener);
+                listener = forwardingQueryExecutionListener;
+            }
+            dataSource = ProxyDataSourceBuilder
                     .create(getDataSourceProvider().dataSource())
                     .name(getClass().getName())
                     .listener(listener)
                     .build();
         } else {
-            return getDataSourceProvider().dataSource();
+            dataSource = getDataSourceProvider().dataSource();
         }
+        int multiRowInsertSize = multiRowInsertSize();
+        if (multiRowInsertSize > 1) {
+            dataSource = new MultiRowInsertDataSource(dataSource, multiRowInsertSize);
+        }
+        return dataSource;
     }
 
     protected boolean proxyDataSource() {
         return true;
     }
 
+    /**
+     * The maximum number of rows of the multi-row INSERT statements the JDBC batches are rewritten to,
+     * the rewriting being disabled for values lower than 2.
+     *
+     * @return the maximum number of rows of a rewritten INSERT statement
+     */
+    protected int multiRowInsertSize() {
+        return 0;
+    }
+
+    /**
+     * The statement logging listener, which can be replaced by a {@link SampledQueryLoggingListener}
+     * so that logging does not skew the performance measurements.
+     *
+     * @return statement logging listener
+     */
+    protected QueryExecutionListener queryLoggingListener() {
+        SLF4JQueryLoggingListener loggingListener = new SLF4JQueryLoggingListener();
+        loggingListener.setQueryLogEntryCreator(new AbstractTest.InlineQueryLogEntryCreator());
+        return loggingListener;
+    }
+
+    /**
+     * Record the explicit lock wait times and the flush-time statement times under lock
+     * with the {@link #getLockWaitProfiler()}.
+     *
+     * @return whether the lock acquisitions are profiled
+     */
+    protected boolean profileLockWaits() {
+        return false;
+    }
+
+    protected LockWaitProfiler getLockWaitProfiler() {
+        if (lockWaitProfiler == null) {
+            lockWaitProfiler = new LockWaitProfiler(metricRegistry);
+        }
+        return lockWaitProfiler;
+    }
+
+    /**
+     * Sample the second-level cache regions with the {@link #getCacheStatisticsSampler()} while the test runs,
+     * and log their summary afterwards.
+     *
+     * @return whether the second-level cache regions are sampled
+     */
+    protected boolean sampleCacheStatistics() {
+        return false;
+    }
+
+    protected CacheStatisticsSampler getCacheStatisticsSampler() {
+        if (cacheStatisticsSampler == null) {
+            throw new IllegalStateException("The second-level cache regions are only sampled if " +
+                "sampleCacheStatistics() is enabled!");
+        }
+        return cacheStatisticsSampler;
+    }
+
+    private QueryExecutionListener getQueryExecutionListener() {
+        if (queryExecutionListener == null) {
+            ChainListener listener = new ChainListener();
+            listener.addListener(queryLoggingListener());
+            listener.addListener(statementMetricsListener);
+            if (profileLockWaits()) {
+                listener.addListener(getLockWaitProfiler());
+            }
+            queryExecutionListener = listener;
+        }
+        return queryExecutionListener;
+    }
+
+    protected MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    protected StatementMetricsListener getStatementMetrics() {
+        return statementMetricsListener;
+    }
+
     protected DataSourceProvider getDataSourceProvider() {
         return new HsqldbDataSourceProvider();
     }
@@ -647,6 +897,70 @@ public abstract class AbstractTest {
         }
     }
 
+    protected <T> T doInStatelessTransaction(HibernateStatelessTransactionFunction<T> callable) {
+        T result = null;
+        StatelessSession session = null;
+        Transaction txn = null;
+        try {
+            session = getSessionFactory().openStatelessSession();
+            txn = session.beginTransaction();
+
+            result = callable.apply(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+        return result;
+    }
+
+    protected void doInStatelessTransaction(HibernateStatelessTransactionConsumer callable) {
+        doInStatelessTransaction((HibernateStatelessTransactionFunction<Void>) session -> {
+            callable.accept(session);
+            return null;
+        });
+    }
+
+    /**
+     * Run the unit of work in a new Session and transaction until it commits or the {@link RetryPolicy}
+     * gives up. The number of attempts per successful execution and the time lost on the failed attempts
+     * are recorded in the {@link #getMetricRegistry()}.
+     */
+    protected <T> T doInTransaction(RetryPolicy retryPolicy, HibernateTransactionFunction<T> callable) {
+        long startNanos = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            long attemptStartNanos = System.nanoTime();
+            try {
+                T result = doInTransaction(callable);
+                metricRegistry.histogram(MetricRegistry.name(RetryPolicy.class, "attempts")).update(attempt);
+                metricRegistry.timer(MetricRegistry.name(RetryPolicy.class, "lostTime"))
+                    .update(attemptStartNanos - startNanos, TimeUnit.NANOSECONDS);
+                return result;
+            } catch (RuntimeException e) {
+                if (!retryPolicy.isRetryable(e) || attempt >= retryPolicy.getMaxAttempts()) {
+                    metricRegistry.counter(MetricRegistry.name(RetryPolicy.class, "failures")).inc();
+                    throw e;
+                }
+                long delayMillis = retryPolicy.delayMillis(attempt);
+                LOGGER.info("Attempt {} failed, retrying in {} ms", attempt, delayMillis, e);
+                if (delayMillis > 0) {
+                    sleep((int) delayMillis);
+                }
+            }
+        }
+    }
+
+    protected void doInTransaction(RetryPolicy retryPolicy, HibernateTransactionConsumer callable) {
+        doInTransaction(retryPolicy, (HibernateTransactionFunction<Void>) session -> {
+            callable.accept(session);
+            return null;
+        });
+    }
+
     protected <T> T doInJPA(JPATransactionFunction<T> function) {
         T result = null;
         EntityManager entityManager = null;
@@ -731,13 +1045,55 @@ public abstract class AbstractTest {
         }
     }
 
+    protected ExecutorStrategy executorStrategy() {
+        return ExecutorStrategy.SINGLE_THREAD;
+    }
+
+    protected int executorPoolSize() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    protected synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = newExecutorService(executorStrategy());
+        }
+        return executorService;
+    }
+
+    private ExecutorService newExecutorService(ExecutorStrategy executorStrategy) {
+        switch (executorStrategy) {
+            case SINGLE_THREAD:
+                return Executors.newSingleThreadExecutor(r -> {
+                    Thread bob = new Thread(r);
+                    bob.setName("Bob");
+                    return bob;
+                });
+            case FIXED_POOL:
+                AtomicInteger threadCount = new AtomicInteger();
+                return Executors.newFixedThreadPool(executorPoolSize(), r -> {
+                    Thread bob = new Thread(r);
+                    bob.setName("Bob-" + threadCount.incrementAndGet());
+                    return bob;
+                });
+            case VIRTUAL_THREAD:
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    LOGGER.warn("Virtual threads are not supported by this JVM, using a fixed thread pool instead");
+                    return newExecutorService(ExecutorStrategy.FIXED_POOL);
+                }
+            default:
+                throw new UnsupportedOperationException("Unsupported executor strategy: " + executorStrategy);
+        }
+    }
+
     protected void executeSync(VoidCallable callable) {
         executeSync(Collections.singleton(callable));
     }
 
     protected void executeSync(Collection<VoidCallable> callables) {
         try {
-            List<Future<Void>> futures = executorService.invokeAll(callables);
+            List<Future<Void>> futures = getExecutorService().invokeAll(callables);
             for (Future<Void> future : futures) {
                 future.get();
             }
@@ -746,26 +1102,18 @@ public abstract class AbstractTest {
         }
     }
 
-    protected <T> void executeAsync(Runnable callable, final Runnable completionCallback) {
-        final Future future = executorService.submit(callable);
-        new Thread(() -> {
-            while (!future.isDone()) {
-                try {
-                    Thread.sleep(100);
-                } catch (Exception e) {
-                    throw new IllegalStateException(e);
+    protected CompletableFuture<Void> executeAsync(Runnable callable, final Runnable completionCallback) {
+        return CompletableFuture.runAsync(callable, getExecutorService())
+            .whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    LOGGER.error("Asynchronous task failure", throwable);
                 }
-            }
-            try {
                 completionCallback.run();
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
-            }
-        }).start();
+            });
     }
 
     protected Future<?> executeAsync(Runnable callable) {
-        return executorService.submit(callable);
+        return getExecutorService().submit(callable);
     }
 
     protected  void transact(Consumer<Connection> callback) {
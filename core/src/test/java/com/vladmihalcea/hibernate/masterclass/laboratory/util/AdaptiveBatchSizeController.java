@@ -0,0 +1,182 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * <code>AdaptiveBatchSizeController</code> - Chooses the flush/clear interval of a long insert or update run
+ * by hill climbing on the measured time per row, every step being decided on a window of batches.
+ * The step factor starts at 2, it is square rooted whenever the direction is reversed, and the batch size
+ * is considered converged once the factor drops below 1.1. A batch growing the heap by more than
+ * <code>maxHeapGrowthBytes</code> halves the batch size right away.
+ *
+ * Hibernate 4 reads <code>hibernate.jdbc.batch_size</code> only once, when the SessionFactory is built, so it
+ * must be set to at least <code>maxBatchSize</code>, the flush executing the JDBC batch with all the statements
+ * of the current interval.
+ *
+ * @author Vlad Mihalcea
+ */
+public class AdaptiveBatchSizeController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveBatchSizeController.class);
+
+    private static final double CONVERGED_FACTOR = 1.1;
+
+    private final String name;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private int batchSize;
+
+    private int windowSize = 3;
+
+    private long maxHeapGrowthBytes = Long.MAX_VALUE;
+
+    private double factor = 2;
+
+    private int direction = 1;
+
+    private double previousNanosPerRow = Double.MAX_VALUE;
+
+    private int windowBatches;
+
+    private long windowRows;
+
+    private long windowNanos;
+
+    private boolean converged;
+
+    private final List<Integer> batchSizeHistory = new ArrayList<>();
+
+    /**
+     * @param name         the table or workload name, used for logging the chosen sizes
+     * @param minBatchSize smallest batch size, also the initial one
+     * @param maxBatchSize largest batch size
+     */
+    public AdaptiveBatchSizeController(String name, int minBatchSize, int maxBatchSize) {
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("Invalid batch size range: [" + minBatchSize + ", " + maxBatchSize + "]");
+        }
+        this.name = name;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = minBatchSize;
+        this.batchSizeHistory.add(minBatchSize);
+    }
+
+    /**
+     * @param windowSize the number of batches measured before deciding on the next batch size
+     * @return this controller
+     */
+    public AdaptiveBatchSizeController setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public AdaptiveBatchSizeController setMaxHeapGrowthBytes(long maxHeapGrowthBytes) {
+        this.maxHeapGrowthBytes = maxHeapGrowthBytes;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * @return the initial batch size, followed by every batch size the controller changed to
+     */
+    public List<Integer> getBatchSizeHistory() {
+        return Collections.unmodifiableList(batchSizeHistory);
+    }
+
+    /**
+     * Record a batch execution and adjust the batch size once the current window is complete.
+     *
+     * @param rows            the number of rows of the batch
+     * @param elapsedNanos    the time it took to process and flush the batch
+     * @param heapGrowthBytes how much the used heap grew during the batch
+     */
+    public void onBatch(int rows, long elapsedNanos, long heapGrowthBytes) {
+        if (heapGrowthBytes > maxHeapGrowthBytes && batchSize > minBatchSize) {
+            int previousBatchSize = batchSize;
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+            batchSizeHistory.add(batchSize);
+            direction = -1;
+            resetWindow();
+            LOGGER.info("{}: batch size changed from {} to {}, the heap grew by {} KB",
+                name, previousBatchSize, batchSize, heapGrowthBytes / 1024);
+            return;
+        }
+        windowBatches++;
+        windowRows += rows;
+        windowNanos += elapsedNanos;
+        if (converged || windowBatches < windowSize || windowRows == 0) {
+            return;
+        }
+        double nanosPerRow = (double) windowNanos / windowRows;
+        resetWindow();
+        if (nanosPerRow > previousNanosPerRow) {
+            direction = -direction;
+            factor = Math.sqrt(factor);
+        }
+        previousNanosPerRow = nanosPerRow;
+        int previousBatchSize = batchSize;
+        if (factor < CONVERGED_FACTOR) {
+            converged = true;
+            LOGGER.info("{}: batch size converged to {}, {} ns/row", name, batchSize, (long) nanosPerRow);
+            return;
+        }
+        batchSize = (int) Math.round(direction > 0 ? batchSize * factor : batchSize / factor);
+        batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+        if (batchSize != previousBatchSize) {
+            batchSizeHistory.add(batchSize);
+            LOGGER.info("{}: batch size changed from {} to {}, {} ns/row",
+                name, previousBatchSize, batchSize, (long) nanosPerRow);
+        }
+    }
+
+    /**
+     * Apply the action to every item, flushing and clearing the Session every {@link #getBatchSize()} items.
+     *
+     * @param session the current Session
+     * @param items   the items to process
+     * @param action  persists or updates an item
+     * @param <T>     item type
+     */
+    public <T> void execute(Session session, Iterator<T> items, BiConsumer<Session, T> action) {
+        Runtime runtime = Runtime.getRuntime();
+        while (items.hasNext()) {
+            int currentBatchSize = batchSize;
+            long usedHeapBytes = runtime.totalMemory() - runtime.freeMemory();
+            long startNanos = System.nanoTime();
+            int rows = 0;
+            while (rows < currentBatchSize && items.hasNext()) {
+                action.accept(session, items.next());
+                rows++;
+            }
+            session.flush();
+            session.clear();
+            long heapGrowthBytes = runtime.totalMemory() - runtime.freeMemory() - usedHeapBytes;
+            onBatch(rows, System.nanoTime() - startNanos, Math.max(0, heapGrowthBytes));
+        }
+    }
+
+    private void resetWindow() {
+        windowBatches = 0;
+        windowRows = 0;
+        windowNanos = 0;
+    }
+}
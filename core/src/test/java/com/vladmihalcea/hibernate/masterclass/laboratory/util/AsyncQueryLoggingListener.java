@@ -0,0 +1,248 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>AsyncQueryLoggingListener</code> - Hands the executed statements to a bounded lock-free ring buffer
+ * which is drained to SLF4J by a background thread, so the JDBC threads don't pay for the logger I/O.
+ *
+ * @author Vlad Mihalcea
+ */
+public class AsyncQueryLoggingListener implements QueryExecutionListener, AutoCloseable {
+
+    public enum OverflowPolicy {
+        /**
+         * Discard the log entry when the ring buffer is full.
+         */
+        DROP,
+        /**
+         * Wait for the background thread to make room for the log entry.
+         */
+        BLOCK,
+        /**
+         * Discard the log entry and log the number of discarded entries on the next drain.
+         */
+        COUNT
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncQueryLoggingListener.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static class LogEntry {
+        private final ExecutionInfo execInfo;
+        private final String[] queries;
+        private final List<Map<String, Object>> params;
+
+        private LogEntry(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            this.execInfo = execInfo;
+            this.queries = new String[queryInfoList.size()];
+            this.params = new ArrayList<>();
+            for (int i = 0; i < queries.length; i++) {
+                QueryInfo queryInfo = queryInfoList.get(i);
+                queries[i] = queryInfo.getQuery();
+                for (Map<String, Object> paramMap : queryInfo.getQueryArgsList()) {
+                    params.add(new LinkedHashMap<>(paramMap));
+                }
+            }
+        }
+    }
+
+    private final AtomicReferenceArray<LogEntry> ringBuffer;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Thread drainer;
+
+    private volatile boolean closed;
+
+    public AsyncQueryLoggingListener() {
+        this(1024, OverflowPolicy.COUNT);
+    }
+
+    public AsyncQueryLoggingListener(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two!");
+        }
+        this.ringBuffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.drainer = new Thread(this::drain, "QueryLogger");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (!isLoggable()) {
+            return;
+        }
+        LogEntry logEntry = new LogEntry(execInfo, queryInfoList);
+        if (closed) {
+            logClosed(logEntry);
+            return;
+        }
+        while (!offer(logEntry)) {
+            if (overflowPolicy == OverflowPolicy.BLOCK && !closed) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else {
+                droppedCount.incrementAndGet();
+                return;
+            }
+        }
+        if (closed) {
+            awaitDrainer();
+            drainClosed();
+        }
+    }
+
+    private boolean offer(LogEntry logEntry) {
+        long currentTail;
+        do {
+            currentTail = tail.get();
+            if (currentTail - head.get() >= ringBuffer.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(currentTail, currentTail + 1));
+        ringBuffer.lazySet((int) currentTail & mask, logEntry);
+        return true;
+    }
+
+    private void drain() {
+        StringBuilder sb = new StringBuilder(1024);
+        long reportedDroppedCount = 0;
+        while (!closed || head.get() != tail.get()) {
+            long currentHead = head.get();
+            int index = (int) currentHead & mask;
+            LogEntry logEntry = ringBuffer.get(index);
+            if (logEntry == null) {
+                if (overflowPolicy == OverflowPolicy.COUNT) {
+                    long currentDroppedCount = droppedCount.get();
+                    if (currentDroppedCount != reportedDroppedCount) {
+                        LOGGER.warn("{} log entries were dropped", currentDroppedCount - reportedDroppedCount);
+                        reportedDroppedCount = currentDroppedCount;
+                    }
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            ringBuffer.lazySet(index, null);
+            head.lazySet(currentHead + 1);
+            write(logEntry, sb);
+        }
+    }
+
+    private void write(LogEntry logEntry, StringBuilder sb) {
+        sb.setLength(0);
+        ExecutionInfo execInfo = logEntry.execInfo;
+        sb.append("Name:").append(execInfo.getDataSourceName())
+          .append(", Time:").append(execInfo.getElapsedTime())
+          .append(", Num:").append(logEntry.queries.length)
+          .append(", Query:[");
+        for (int i = 0; i < logEntry.queries.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(logEntry.queries[i]);
+        }
+        sb.append("], Params:[");
+        for (int i = 0; i < logEntry.params.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("(");
+            SampledQueryLoggingListener.writeParams(sb, logEntry.params.get(i));
+            sb.append(")");
+        }
+        sb.append("]");
+        log(sb.toString());
+    }
+
+    protected boolean isLoggable() {
+        return LOGGER.isDebugEnabled();
+    }
+
+    protected void log(String entry) {
+        LOGGER.debug(entry);
+    }
+
+    /**
+     * Drains the pending log entries and stops the background thread.
+     * Statements executed afterwards are logged synchronously.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        awaitDrainer();
+        drainClosed();
+    }
+
+    private void awaitDrainer() {
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a log entry once the listener is closed, after the ones still pending in the ring buffer.
+     */
+    private void logClosed(LogEntry logEntry) {
+        awaitDrainer();
+        synchronized (this) {
+            drainClosed();
+            write(logEntry, new StringBuilder());
+        }
+    }
+
+    /**
+     * Writes the entries left between <code>head</code> and <code>tail</code> once the background thread is stopped.
+     * A producer may have claimed a slot before the close, and publish its entry only afterwards, so the slot is
+     * awaited instead of skipped. The producers which claim a slot after the close call this method too,
+     * so every entry is written, in the order its slot was claimed.
+     */
+    private synchronized void drainClosed() {
+        StringBuilder sb = new StringBuilder();
+        for (long currentHead = head.get(); currentHead != tail.get(); currentHead++) {
+            int index = (int) currentHead & mask;
+            LogEntry logEntry;
+            while ((logEntry = ringBuffer.get(index)) == null) {
+                Thread.yield();
+            }
+            ringBuffer.set(index, null);
+            head.set(currentHead + 1);
+            write(logEntry, sb);
+        }
+    }
+}
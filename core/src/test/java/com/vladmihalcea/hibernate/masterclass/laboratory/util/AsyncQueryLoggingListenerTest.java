@@ -0,0 +1,239 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AsyncQueryLoggingListener.OverflowPolicy;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * AsyncQueryLoggingListenerTest - Test to check the {@link AsyncQueryLoggingListener} overflow policies,
+ * that the entries are logged in the order they were executed, and that none is lost on close
+ *
+ * @author Vlad Mihalcea
+ */
+public class AsyncQueryLoggingListenerTest extends AbstractTest {
+
+    private static final Pattern VALUE_PATTERN = Pattern.compile("VALUES \\((\\d+)\\)");
+
+    private static final int CAPACITY = 4;
+
+    private final List<Integer> values = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch drainerBlocked = new CountDownLatch(1);
+
+    private final CountDownLatch drainerReleased = new CountDownLatch(1);
+
+    private final SessionFactoryCache.ForwardingQueryExecutionListener forwardingListener =
+        new SessionFactoryCache.ForwardingQueryExecutionListener(new QueryExecutionListener() {
+            @Override
+            public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            }
+
+            @Override
+            public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            }
+        });
+
+    private AsyncQueryLoggingListener listener;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Event.class
+        };
+    }
+
+    @Override
+    protected QueryExecutionListener queryLoggingListener() {
+        return forwardingListener;
+    }
+
+    @After
+    public void closeListener() {
+        drainerReleased.countDown();
+        if (listener != null) {
+            listener.close();
+        }
+    }
+
+    private AsyncQueryLoggingListener newListener(int capacity, OverflowPolicy overflowPolicy, boolean blockDrainer) {
+        listener = new AsyncQueryLoggingListener(capacity, overflowPolicy) {
+            @Override
+            protected boolean isLoggable() {
+                return true;
+            }
+
+            @Override
+            protected void log(String entry) {
+                Matcher matcher = VALUE_PATTERN.matcher(entry);
+                if (!matcher.find()) {
+                    return;
+                }
+                if (blockDrainer && Thread.currentThread().getName().equals("QueryLogger")) {
+                    drainerBlocked.countDown();
+                    awaitDrainerRelease();
+                }
+                values.add(Integer.valueOf(matcher.group(1)));
+            }
+        };
+        forwardingListener.setDelegate(listener);
+        return listener;
+    }
+
+    private void awaitDrainerRelease() {
+        try {
+            drainerReleased.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Executes the first statement, waits for the background thread to block on it,
+     * and then fills the ring buffer.
+     */
+    private void fillRingBuffer() throws InterruptedException {
+        executeQueries(0, 1);
+        assertTrue(drainerBlocked.await(10, TimeUnit.SECONDS));
+        executeQueries(1, 1 + CAPACITY);
+    }
+
+    @Test
+    public void testDropPolicy() throws InterruptedException {
+        AsyncQueryLoggingListener listener = newListener(CAPACITY, OverflowPolicy.DROP, true);
+        fillRingBuffer();
+        executeQueries(1 + CAPACITY, 3 + CAPACITY);
+        assertEquals(2, listener.getDroppedCount());
+
+        drainerReleased.countDown();
+        listener.close();
+        assertEquals(range(0, 1 + CAPACITY), values);
+    }
+
+    @Test
+    public void testCountPolicy() throws InterruptedException {
+        AsyncQueryLoggingListener listener = newListener(CAPACITY, OverflowPolicy.COUNT, true);
+        fillRingBuffer();
+        executeQueries(1 + CAPACITY, 2 + CAPACITY);
+        assertEquals(1, listener.getDroppedCount());
+
+        drainerReleased.countDown();
+        listener.close();
+        assertEquals(range(0, 1 + CAPACITY), values);
+    }
+
+    @Test
+    public void testBlockPolicy() throws Exception {
+        AsyncQueryLoggingListener listener = newListener(CAPACITY, OverflowPolicy.BLOCK, true);
+        fillRingBuffer();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> blockedStatement = executorService.submit(() -> executeQueries(1 + CAPACITY, 2 + CAPACITY));
+            try {
+                blockedStatement.get(100, TimeUnit.MILLISECONDS);
+                fail("The statement should wait for the ring buffer to have room");
+            } catch (TimeoutException expected) {
+            }
+            drainerReleased.countDown();
+            blockedStatement.get(10, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+        listener.close();
+        assertEquals(0, listener.getDroppedCount());
+        assertEquals(range(0, 2 + CAPACITY), values);
+    }
+
+    @Test
+    public void testEntriesAreNotLostOnClose() throws Exception {
+        int threadCount = 4;
+        int statementCount = 500;
+        AsyncQueryLoggingListener listener = newListener(CAPACITY, OverflowPolicy.BLOCK, false);
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(threadCount);
+        List<Future<?>> producers = new ArrayList<>();
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                int offset = i * statementCount;
+                producers.add(executorService.submit(() -> {
+                    startLatch.countDown();
+                    executeQueries(offset, offset + statementCount);
+                }));
+            }
+            startLatch.await();
+            executeQueries(threadCount * statementCount, threadCount * statementCount + CAPACITY);
+            listener.close();
+            for (Future<?> producer : producers) {
+                producer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(threadCount * statementCount + CAPACITY, values.size() + listener.getDroppedCount());
+        List<Integer> lastValues = new ArrayList<>();
+        for (int i = 0; i <= threadCount; i++) {
+            lastValues.add(-1);
+        }
+        for (Integer value : values) {
+            int producer = value / statementCount;
+            assertTrue("Out of order entry " + value, value > lastValues.get(producer));
+            lastValues.set(producer, value);
+        }
+    }
+
+    @Test
+    public void testStatementsAreLoggedSynchronouslyAfterClose() {
+        AsyncQueryLoggingListener listener = newListener(CAPACITY, OverflowPolicy.DROP, false);
+        listener.close();
+        executeQueries(0, 3 * CAPACITY);
+        assertEquals(range(0, 3 * CAPACITY), values);
+        assertEquals(0, listener.getDroppedCount());
+    }
+
+    private void executeQueries(int from, int to) {
+        doInJDBC(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (int i = from; i < to; i++) {
+                    statement.executeQuery("VALUES (" + i + ")").close();
+                }
+            }
+        });
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> range = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            range.add(i);
+        }
+        return range;
+    }
+
+    @Entity(name = "Event")
+    public static class Event {
+
+        @Id
+        private Long id;
+    }
+}
@@ -0,0 +1,293 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.region.BaseRegion;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.ehcache.internal.regions.EhcacheDataRegion;
+import org.hibernate.cache.spi.Region;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>CacheStatisticsSampler</code> - Samples the {@link SecondLevelCacheStatistics} of every second-level cache
+ * region on an interval, and exports them to a {@link MetricRegistry}.
+ *
+ * For every region, the hits, misses and puts are {@link com.codahale.metrics.Meter}s, so their rates are available,
+ * while the hit ratio, the element count, the heap size and the eviction count are {@link Gauge}s.
+ * The counters are relative to the first sample, so the summary only covers what happened since {@link #start(long)},
+ * even when the {@link SessionFactory} is shared by several tests.
+ *
+ * The eviction count is read from the region store, since the Hibernate statistics don't track it,
+ * so it is only available for the {@link BaseRegion} and the Ehcache regions.
+ *
+ * @author Vlad Mihalcea
+ */
+public class CacheStatisticsSampler {
+
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 100;
+
+    public static class RegionSample {
+        private final String region;
+        private final long hitCount;
+        private final long missCount;
+        private final long putCount;
+        private final long elementCount;
+        private final long sizeInBytes;
+        private final long evictionCount;
+
+        private RegionSample(String region, long hitCount, long missCount, long putCount,
+                             long elementCount, long sizeInBytes, long evictionCount) {
+            this.region = region;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.putCount = putCount;
+            this.elementCount = elementCount;
+            this.sizeInBytes = sizeInBytes;
+            this.evictionCount = evictionCount;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getPutCount() {
+            return putCount;
+        }
+
+        public long getElementCount() {
+            return elementCount;
+        }
+
+        /**
+         * @return the heap size of the region, or -1 if the region doesn't account for it
+         */
+        public long getSizeInBytes() {
+            return sizeInBytes;
+        }
+
+        /**
+         * @return the number of evicted entries, or -1 if the region doesn't track them
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return the ratio of lookups which found the entry in the cache, or 0 if there was no lookup
+         */
+        public double getHitRatio() {
+            long lookups = hitCount + missCount;
+            return lookups == 0 ? 0 : (double) hitCount / lookups;
+        }
+
+        private boolean isIdle() {
+            return hitCount == 0 && missCount == 0 && putCount == 0 && evictionCount <= 0;
+        }
+
+        private RegionSample since(RegionSample baseline) {
+            return new RegionSample(
+                region,
+                hitCount - baseline.hitCount,
+                missCount - baseline.missCount,
+                putCount - baseline.putCount,
+                elementCount,
+                sizeInBytes,
+                evictionCount < 0 ? evictionCount : evictionCount - baseline.evictionCount
+            );
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%s hitRatio=%.2f, hits=%d, misses=%d, puts=%d, elements=%d, sizeInBytes=%d, evictions=%d",
+                region, getHitRatio(), hitCount, missCount, putCount, elementCount, sizeInBytes, evictionCount
+            );
+        }
+    }
+
+    private final MetricRegistry metricRegistry;
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    private final Map<String, RegionSample> baselines = new TreeMap<>();
+
+    private final Map<String, RegionSample> lastSamples = new TreeMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public CacheStatisticsSampler(MetricRegistry metricRegistry, SessionFactory sessionFactory) {
+        this.metricRegistry = metricRegistry;
+        this.sessionFactory = (SessionFactoryImplementor) sessionFactory;
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    /**
+     * Take the baseline sample, and then sample all regions every <code>intervalMillis</code>.
+     *
+     * @param intervalMillis sample interval
+     */
+    public synchronized void start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("The sample interval must be positive!");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("The sampler is already started!");
+        }
+        sample();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread sampler = new Thread(r, "CacheStatisticsSampler");
+            sampler.setDaemon(true);
+            return sampler;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.scheduleWithFixedDelay(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        scheduler = executor;
+    }
+
+    /**
+     * Stop the periodic sampling and take the last sample, so the summary covers the whole test.
+     */
+    public void stop() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = this.scheduler;
+            this.scheduler = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sample();
+    }
+
+    /**
+     * Sample all regions and update their metrics.
+     */
+    public synchronized void sample() {
+        for (String region : sessionFactory.getStatistics().getSecondLevelCacheRegionNames()) {
+            sample(region);
+        }
+    }
+
+    /**
+     * Sample the region right away.
+     *
+     * @param region region name
+     * @return the region statistics since the sampler was started
+     */
+    public synchronized RegionSample getRegionSample(String region) {
+        RegionSample sample = sample(region);
+        if (sample == null) {
+            throw new IllegalArgumentException("No such cache region: " + region);
+        }
+        return sample;
+    }
+
+    /**
+     * @return the last sample of every region used since the sampler was started
+     */
+    public synchronized List<RegionSample> getRegionSamples() {
+        List<RegionSample> samples = new ArrayList<>();
+        for (RegionSample sample : lastSamples.values()) {
+            if (!sample.isIdle()) {
+                samples.add(sample);
+            }
+        }
+        return samples;
+    }
+
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("Second-level cache summary:");
+        List<RegionSample> samples = getRegionSamples();
+        if (samples.isEmpty()) {
+            summary.append(" no region was used");
+        }
+        for (RegionSample sample : samples) {
+            summary.append(System.lineSeparator()).append('\t').append(sample);
+        }
+        return summary.toString();
+    }
+
+    private RegionSample sample(String region) {
+        SecondLevelCacheStatistics statistics = sessionFactory.getStatistics().getSecondLevelCacheStatistics(region);
+        if (statistics == null) {
+            return null;
+        }
+        RegionSample current = new RegionSample(
+            region,
+            statistics.getHitCount(),
+            statistics.getMissCount(),
+            statistics.getPutCount(),
+            statistics.getElementCountInMemory() + statistics.getElementCountOnDisk(),
+            statistics.getSizeInMemory(),
+            getEvictionCount(region)
+        );
+        RegionSample baseline = baselines.get(region);
+        if (baseline == null) {
+            baselines.put(region, current);
+            baseline = current;
+            registerGauges(region);
+        }
+        RegionSample sample = current.since(baseline);
+        RegionSample previous = lastSamples.put(region, sample);
+        if (previous != null) {
+            metricRegistry.meter(MetricRegistry.name(getClass(), region, "hits"))
+                .mark(sample.hitCount - previous.hitCount);
+            metricRegistry.meter(MetricRegistry.name(getClass(), region, "misses"))
+                .mark(sample.missCount - previous.missCount);
+            metricRegistry.meter(MetricRegistry.name(getClass(), region, "puts"))
+                .mark(sample.putCount - previous.putCount);
+        }
+        return sample;
+    }
+
+    private void registerGauges(String region) {
+        metricRegistry.register(MetricRegistry.name(getClass(), region, "hitRatio"),
+            (Gauge<Double>) () -> lastSample(region).getHitRatio());
+        metricRegistry.register(MetricRegistry.name(getClass(), region, "elementCount"),
+            (Gauge<Long>) () -> lastSample(region).getElementCount());
+        metricRegistry.register(MetricRegistry.name(getClass(), region, "sizeInBytes"),
+            (Gauge<Long>) () -> lastSample(region).getSizeInBytes());
+        metricRegistry.register(MetricRegistry.name(getClass(), region, "evictions"),
+            (Gauge<Long>) () -> lastSample(region).getEvictionCount());
+    }
+
+    private synchronized RegionSample lastSample(String region) {
+        return lastSamples.get(region);
+    }
+
+    private long getEvictionCount(String regionName) {
+        Region region = sessionFactory.getSecondLevelCacheRegion(regionName);
+        if (region instanceof BaseRegion) {
+            return ((BaseRegion) region).getStore().getEvictionCount();
+        }
+        if (region instanceof EhcacheDataRegion) {
+            return ((EhcacheDataRegion) region).getEhcache().getStatistics().getEvictionCount();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,222 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>DatasetSeeder</code> - Inserts generated rows with JDBC batching, every table being described by its
+ * INSERT statement, its base row count and a {@link RowBinder} setting the parameters of a given row.
+ * The base row counts are multiplied by the scale factor, so the same dataset description can seed
+ * either a few rows for a test or millions of rows for a benchmark.
+ *
+ * Every table is inserted in a single transaction, with a batch being executed every <code>batchSize</code> rows.
+ * When parallel seeding is enabled, every table is inserted by its own thread and connection,
+ * as soon as the tables it depends on are seeded, so the foreign keys are always satisfied.
+ *
+ * @author Vlad Mihalcea
+ */
+public class DatasetSeeder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetSeeder.class);
+
+    @FunctionalInterface
+    public interface RowBinder {
+        /**
+         * @param statement the INSERT statement whose parameters are to be set
+         * @param row       the row index, starting from 0
+         */
+        void bind(PreparedStatement statement, long row) throws SQLException;
+    }
+
+    public class Table {
+        private final String name;
+        private final String insertSql;
+        private final long baseRowCount;
+        private final RowBinder rowBinder;
+        private final List<String> dependencies = new ArrayList<>();
+
+        private Table(String name, String insertSql, long baseRowCount, RowBinder rowBinder) {
+            this.name = name;
+            this.insertSql = insertSql;
+            this.baseRowCount = baseRowCount;
+            this.rowBinder = rowBinder;
+        }
+
+        /**
+         * @param tableNames the tables which must be seeded before this one
+         * @return this table
+         */
+        public Table dependsOn(String... tableNames) {
+            for (String tableName : tableNames) {
+                if (!tables.containsKey(tableName)) {
+                    throw new IllegalArgumentException("Table " + tableName + " must be added before " + name + "!");
+                }
+                dependencies.add(tableName);
+            }
+            return this;
+        }
+
+        public long getRowCount() {
+            return baseRowCount * scaleFactor;
+        }
+    }
+
+    private final DataSource dataSource;
+
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+
+    private int scaleFactor = 1;
+
+    private int batchSize = 100;
+
+    private boolean parallel;
+
+    public DatasetSeeder(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public DatasetSeeder setScaleFactor(int scaleFactor) {
+        if (scaleFactor < 1) {
+            throw new IllegalArgumentException("The scale factor must be at least 1!");
+        }
+        this.scaleFactor = scaleFactor;
+        return this;
+    }
+
+    public DatasetSeeder setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1!");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param parallel seed the independent tables concurrently, each one using its own connection
+     * @return this seeder
+     */
+    public DatasetSeeder setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    public int getScaleFactor() {
+        return scaleFactor;
+    }
+
+    /**
+     * Add a table, which is seeded after the previously added ones, unless the seeding is parallel.
+     *
+     * @param name         table name
+     * @param insertSql    the INSERT statement
+     * @param baseRowCount the number of rows for a scale factor of 1
+     * @param rowBinder    sets the INSERT parameters of every row
+     * @return the table, so that its dependencies can be declared
+     */
+    public Table table(String name, String insertSql, long baseRowCount, RowBinder rowBinder) {
+        Table table = new Table(name, insertSql, baseRowCount, rowBinder);
+        if (tables.putIfAbsent(name, table) != null) {
+            throw new IllegalArgumentException("Table " + name + " was already added!");
+        }
+        return table;
+    }
+
+    /**
+     * @param name table name
+     * @return the number of rows the table is seeded with, for the current scale factor
+     */
+    public long getRowCount(String name) {
+        Table table = tables.get(name);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown table: " + name);
+        }
+        return table.getRowCount();
+    }
+
+    /**
+     * @return the number of inserted rows of every table, in the order the tables were added
+     */
+    public Map<String, Long> seed() {
+        Map<String, Long> rowCounts = new LinkedHashMap<>();
+        long startNanos = System.nanoTime();
+        if (parallel) {
+            seedInParallel(rowCounts);
+        } else {
+            for (Table table : tables.values()) {
+                rowCounts.put(table.name, seed(table));
+            }
+        }
+        LOGGER.info("Seeded {} with scale factor {} in {} ms", rowCounts, scaleFactor,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return rowCounts;
+    }
+
+    private void seedInParallel(Map<String, Long> rowCounts) {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(tables.size(), 1));
+        try {
+            Map<String, CompletableFuture<Long>> futures = new LinkedHashMap<>();
+            for (Table table : tables.values()) {
+                CompletableFuture<?>[] dependencies = new CompletableFuture<?>[table.dependencies.size()];
+                for (int i = 0; i < dependencies.length; i++) {
+                    dependencies[i] = futures.get(table.dependencies.get(i));
+                }
+                futures.put(table.name, CompletableFuture.allOf(dependencies)
+                    .thenApplyAsync(ignore -> seed(table), executorService));
+            }
+            for (Map.Entry<String, CompletableFuture<Long>> futureEntry : futures.entrySet()) {
+                rowCounts.put(futureEntry.getKey(), futureEntry.getValue().join());
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private long seed(Table table) {
+        long rowCount = table.getRowCount();
+        long startNanos = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(table.insertSql)) {
+                for (long row = 0; row < rowCount; row++) {
+                    table.rowBinder.bind(statement, row);
+                    statement.addBatch();
+                    if ((row + 1) % batchSize == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                if (rowCount % batchSize != 0) {
+                    statement.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Seeding table " + table.name + " failed!", e);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        LOGGER.debug("Seeded {} rows into {} in {} ms", rowCount, table.name, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        return rowCount;
+    }
+}
@@ -0,0 +1,285 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.hibernate.Hibernate;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
+import org.hibernate.PessimisticLockException;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.dialect.lock.OptimisticEntityLockException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.internal.DefaultLockEventListener;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.LockEvent;
+import org.hibernate.event.spi.LockEventListener;
+import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.exception.LockTimeoutException;
+import org.hibernate.internal.util.StringHelper;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <code>LockWaitProfiler</code> - Measures how long the lock acquisitions actually waited.
+ *
+ * The explicit locks (e.g. <code>session.buildLockRequest(lockOptions).lock(entity)</code>) are timed by replacing
+ * the {@link LockEventListener}, and every acquisition updates a {@link Timer} per entity and lock mode,
+ * and another one per entity, lock mode, lock timeout and {@link Outcome}.
+ *
+ * The implicit row locks taken by the flush-time UPDATE and DELETE statements can't be told apart from the
+ * statement execution, so the whole statement is timed from the data source proxy, and recorded by separate
+ * statement time under lock timers, per entity, and per entity and {@link Outcome}.
+ *
+ * @author Vlad Mihalcea
+ */
+public class LockWaitProfiler implements LockEventListener, QueryExecutionListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LockWaitProfiler.class);
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+        "^\\s*(?:update|delete\\s+from)\\s+([\\w.$\"]+)", Pattern.CASE_INSENSITIVE
+    );
+
+    private static final String STATEMENT_TIME_UNDER_LOCK = "statementTimeUnderLock";
+
+    public enum Outcome {
+        ACQUIRED,
+        /**
+         * The lock could not be acquired within the lock timeout, or right away for NO_WAIT.
+         */
+        TIMEOUT,
+        DEADLOCK,
+        /**
+         * The lock was acquired, but the entity version had changed in the meanwhile.
+         */
+        STALE,
+        FAILED;
+
+        public static Outcome of(Throwable failure) {
+            for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+                if (cause instanceof PessimisticLockException ||
+                    cause instanceof LockTimeoutException ||
+                    cause instanceof javax.persistence.PessimisticLockException ||
+                    cause instanceof javax.persistence.LockTimeoutException) {
+                    return TIMEOUT;
+                }
+                if (cause instanceof LockAcquisitionException) {
+                    return DEADLOCK;
+                }
+                if (cause instanceof StaleStateException ||
+                    cause instanceof OptimisticEntityLockException ||
+                    cause instanceof javax.persistence.OptimisticLockException) {
+                    return STALE;
+                }
+            }
+            return FAILED;
+        }
+    }
+
+    private final MetricRegistry metricRegistry;
+
+    private final LockEventListener delegate = new DefaultLockEventListener();
+
+    private final ThreadLocal<Boolean> explicitLock = new ThreadLocal<>();
+
+    private final ThreadLocal<Long> statementStartNanos = new ThreadLocal<>();
+
+    private volatile Map<String, String> tableEntityNames = Collections.emptyMap();
+
+    public LockWaitProfiler() {
+        this(new MetricRegistry());
+    }
+
+    public LockWaitProfiler(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    /**
+     * Replace the {@link SessionFactory} lock event listeners and resolve the entity names of the mapped tables.
+     * The profiler must also be added to the data source proxy listeners to record the implicit locks.
+     *
+     * @param sessionFactory session factory
+     */
+    public void register(SessionFactory sessionFactory) {
+        ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+            .getService(EventListenerRegistry.class)
+            .setListeners(EventType.LOCK, this);
+
+        Map<String, String> entityNames = new HashMap<>();
+        for (Map.Entry<String, ClassMetadata> classMetadata : sessionFactory.getAllClassMetadata().entrySet()) {
+            if (classMetadata.getValue() instanceof AbstractEntityPersister) {
+                AbstractEntityPersister entityPersister = (AbstractEntityPersister) classMetadata.getValue();
+                entityNames.put(tableName(entityPersister.getTableName()), StringHelper.unqualify(classMetadata.getKey()));
+            }
+        }
+        tableEntityNames = entityNames;
+    }
+
+    @Override
+    public void onLock(LockEvent event) {
+        String entityName = StringHelper.unqualify(event.getEntityName() != null ?
+            event.getEntityName() : Hibernate.getClass(event.getObject()).getName());
+        Outcome outcome = Outcome.FAILED;
+        long startNanos = System.nanoTime();
+        explicitLock.set(Boolean.TRUE);
+        try {
+            delegate.onLock(event);
+            outcome = Outcome.ACQUIRED;
+        } catch (RuntimeException e) {
+            outcome = Outcome.of(e);
+            throw e;
+        } finally {
+            explicitLock.remove();
+            record(entityName, event.getLockMode(), timeout(event.getLockTimeout()), outcome,
+                System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        statementStartNanos.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long startNanos = statementStartNanos.get();
+        statementStartNanos.remove();
+        if (explicitLock.get() != null || startNanos == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        Matcher matcher = TABLE_PATTERN.matcher(queryInfoList.get(0).getQuery());
+        if (!matcher.find()) {
+            return;
+        }
+        String tableName = tableName(matcher.group(1));
+        String entityName = tableEntityNames.getOrDefault(tableName, tableName);
+        Throwable failure = execInfo.getThrowable();
+        Outcome outcome = failure == null ? Outcome.ACQUIRED : Outcome.of(failure);
+        metricRegistry.timer(statementName(entityName)).update(durationNanos, TimeUnit.NANOSECONDS);
+        metricRegistry.timer(statementName(entityName, outcome)).update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void record(String entityName, LockMode lockMode, String timeout, Outcome outcome,
+                        long duration, TimeUnit timeUnit) {
+        metricRegistry.timer(name(entityName, lockMode)).update(duration, timeUnit);
+        metricRegistry.timer(name(entityName, lockMode, timeout, outcome)).update(duration, timeUnit);
+    }
+
+    /**
+     * Lock wait timer for all the acquisitions of a given entity and lock mode
+     *
+     * @param entityClass entity class
+     * @param lockMode    lock mode
+     * @return lock wait timer
+     */
+    public Timer getTimer(Class<?> entityClass, LockMode lockMode) {
+        return metricRegistry.timer(name(StringHelper.unqualify(entityClass.getName()), lockMode));
+    }
+
+    /**
+     * Lock wait timer for the acquisitions of a given entity, lock mode and lock timeout which ended with
+     * the given outcome
+     *
+     * @param entityClass entity class
+     * @param lockMode    lock mode
+     * @param lockTimeout lock timeout, as in {@link LockOptions#getTimeOut()}
+     * @param outcome     lock acquisition outcome
+     * @return lock wait timer
+     */
+    public Timer getTimer(Class<?> entityClass, LockMode lockMode, int lockTimeout, Outcome outcome) {
+        return metricRegistry.timer(name(StringHelper.unqualify(entityClass.getName()), lockMode, timeout(lockTimeout), outcome));
+    }
+
+    /**
+     * Execution timer for all the flush-time UPDATE and DELETE statements of a given entity, which include
+     * the time they waited for the implicit row locks
+     *
+     * @param entityClass entity class
+     * @return statement time under lock timer
+     */
+    public Timer getStatementTimer(Class<?> entityClass) {
+        return metricRegistry.timer(statementName(StringHelper.unqualify(entityClass.getName())));
+    }
+
+    /**
+     * Execution timer for the flush-time UPDATE and DELETE statements of a given entity which ended with
+     * the given outcome
+     *
+     * @param entityClass entity class
+     * @param outcome     statement outcome
+     * @return statement time under lock timer
+     */
+    public Timer getStatementTimer(Class<?> entityClass, Outcome outcome) {
+        return metricRegistry.timer(statementName(StringHelper.unqualify(entityClass.getName()), outcome));
+    }
+
+    /**
+     * Log the per entity and lock mode lock wait times and statement times under lock,
+     * from the slowest to the fastest.
+     */
+    public void logReport() {
+        String prefix = LockWaitProfiler.class.getName() + ".";
+        SortedMap<String, Timer> timers = metricRegistry.getTimers((name, metric) -> name.startsWith(prefix));
+        List<Map.Entry<String, Timer>> entries = new ArrayList<>(timers.entrySet());
+        entries.sort((e1, e2) -> Long.compare(e2.getValue().getSnapshot().getMax(), e1.getValue().getSnapshot().getMax()));
+        for (Map.Entry<String, Timer> entry : entries) {
+            Snapshot snapshot = entry.getValue().getSnapshot();
+            LOGGER.info("{}: count={}, median={} ms, p99={} ms, max={} ms",
+                entry.getKey().substring(prefix.length()),
+                entry.getValue().getCount(),
+                TimeUnit.NANOSECONDS.toMillis((long) snapshot.getMedian()),
+                TimeUnit.NANOSECONDS.toMillis((long) snapshot.get99thPercentile()),
+                TimeUnit.NANOSECONDS.toMillis(snapshot.getMax())
+            );
+        }
+    }
+
+    private static String name(String entityName, LockMode lockMode) {
+        return MetricRegistry.name(LockWaitProfiler.class, entityName, lockMode.name());
+    }
+
+    private static String name(String entityName, LockMode lockMode, String timeout, Outcome outcome) {
+        return MetricRegistry.name(LockWaitProfiler.class, entityName, lockMode.name(), timeout, outcome.name());
+    }
+
+    private static String statementName(String entityName) {
+        return MetricRegistry.name(LockWaitProfiler.class, STATEMENT_TIME_UNDER_LOCK, entityName);
+    }
+
+    private static String statementName(String entityName, Outcome outcome) {
+        return MetricRegistry.name(LockWaitProfiler.class, STATEMENT_TIME_UNDER_LOCK, entityName, outcome.name());
+    }
+
+    private static String timeout(int lockTimeout) {
+        switch (lockTimeout) {
+            case LockOptions.NO_WAIT:
+                return "NO_WAIT";
+            case LockOptions.WAIT_FOREVER:
+                return "WAIT_FOREVER";
+            default:
+                return lockTimeout + "ms";
+        }
+    }
+
+    private static String tableName(String tableName) {
+        return StringHelper.unqualify(tableName.replace("\"", "")).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,172 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <code>LongObjectMap</code> - Open addressing map with primitive <code>long</code> keys, used as the identity map
+ * when folding JDBC result sets into entity graphs, so that looking up the parent entity of every row
+ * doesn't box the identifier.
+ *
+ * The keys and values are stored in parallel arrays, whose capacity is a power of two, and the collisions
+ * are resolved by linear probing. The arrays are doubled once the map becomes half full. A null value marks
+ * an empty slot, so null values are not allowed. The entries can't be removed, so the values are also kept
+ * in insertion order, like a {@link java.util.LinkedHashMap} would.
+ *
+ * @author Vlad Mihalcea
+ */
+public class LongObjectMap<V> {
+
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int[] positions;
+
+    private int mask;
+
+    private int shift;
+
+    private int resizeThreshold;
+
+    private final List<V> insertionOrder;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of entries the map can hold without being resized
+     */
+    public LongObjectMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("The expected size must not be negative!");
+        }
+        allocate(tableSize(expectedSize));
+        insertionOrder = new ArrayList<>(expectedSize);
+    }
+
+    public int size() {
+        return insertionOrder.size();
+    }
+
+    public boolean isEmpty() {
+        return insertionOrder.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            Object value = values[slot];
+            if (value == null || keys[slot] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value associated with the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported!");
+        }
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                insertionOrder.set(positions[slot], value);
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        positions[slot] = insertionOrder.size();
+        insertionOrder.add(value);
+        if (insertionOrder.size() > resizeThreshold) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * @return the value already associated with the key, or null if the given value was added
+     */
+    public V putIfAbsent(long key, V value) {
+        V current = get(key);
+        if (current != null) {
+            return current;
+        }
+        put(key, value);
+        return null;
+    }
+
+    /**
+     * @return the values, in the order their keys were first added
+     */
+    public List<V> values() {
+        return Collections.unmodifiableList(insertionOrder);
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        insertionOrder.clear();
+    }
+
+    private int slot(long key) {
+        return (int) ((key * PHI) >>> shift);
+    }
+
+    private void resize() {
+        if (keys.length == MAX_TABLE_SIZE) {
+            throw new IllegalStateException("The map can't hold more than " + resizeThreshold + " entries!");
+        }
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldPositions = positions;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        keys = new long[tableSize];
+        values = new Object[tableSize];
+        positions = new int[tableSize];
+        mask = tableSize - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+        resizeThreshold = tableSize >>> 1;
+    }
+
+    private static int tableSize(int expectedSize) {
+        int tableSize = 16;
+        while (tableSize >>> 1 < expectedSize) {
+            if (tableSize == MAX_TABLE_SIZE) {
+                throw new IllegalArgumentException("The expected size is too large: " + expectedSize);
+            }
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+}
@@ -0,0 +1,138 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LongObjectMapTest - Test to check the {@link LongObjectMap} lookups, replacements, resizing and insertion order,
+ * including the negative keys and the keys that hash to the same slot
+ *
+ * @author Vlad Mihalcea
+ */
+public class LongObjectMapTest {
+
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    @Test
+    public void testPutAndGet() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertTrue(map.isEmpty());
+        long[] keys = {0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long key : keys) {
+            assertNull(map.put(key, "v" + key));
+        }
+        assertEquals(keys.length, map.size());
+        for (long key : keys) {
+            assertEquals("v" + key, map.get(key));
+            assertTrue(map.containsKey(key));
+        }
+        assertNull(map.get(2L));
+        assertFalse(map.containsKey(-2L));
+    }
+
+    @Test
+    public void testPutReplacesTheValueAndKeepsTheInsertionPosition() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(1L, "a");
+        map.put(2L, "b");
+        map.put(3L, "c");
+
+        assertEquals("b", map.put(2L, "B"));
+        assertEquals("B", map.get(2L));
+        assertEquals(3, map.size());
+        assertEquals(Arrays.asList("a", "B", "c"), map.values());
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.putIfAbsent(-7L, "a"));
+        assertEquals("a", map.putIfAbsent(-7L, "b"));
+        assertEquals("a", map.get(-7L));
+        assertEquals(1, map.size());
+        assertEquals(Arrays.asList("a"), map.values());
+    }
+
+    @Test
+    public void testResize() {
+        int count = 10000;
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        List<Long> expectedValues = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            long key = (i % 2 == 0) ? i : -i;
+            map.put(key, key);
+            expectedValues.add(key);
+        }
+        assertEquals(count, map.size());
+        for (Long key : expectedValues) {
+            assertEquals(key, map.get(key));
+        }
+        assertEquals(expectedValues, map.values());
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        List<Long> collidingKeys = new ArrayList<>();
+        long absentCollidingKey = 0;
+        for (long key = -1000; collidingKeys.size() < 5 || absentCollidingKey == 0; key++) {
+            if (slot(key) == 3) {
+                if (collidingKeys.size() < 5) {
+                    collidingKeys.add(key);
+                } else {
+                    absentCollidingKey = key;
+                }
+            }
+        }
+        LongObjectMap<Long> map = new LongObjectMap<>(8);
+        for (Long key : collidingKeys) {
+            map.put(key, key);
+        }
+        for (Long key : collidingKeys) {
+            assertEquals(key, map.get(key));
+        }
+        assertNull(map.get(absentCollidingKey));
+        assertEquals(collidingKeys, map.values());
+    }
+
+    @Test
+    public void testClear() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (long i = 0; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertTrue(map.values().isEmpty());
+        assertNull(map.get(1L));
+
+        map.put(1L, "a");
+        map.put(-1L, "b");
+        assertEquals(2, map.size());
+        assertEquals(Arrays.asList("a", "b"), map.values());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullValuesAreNotAllowed() {
+        new LongObjectMap<String>().put(1L, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpectedSizeMustNotBeNegative() {
+        new LongObjectMap<String>(-1);
+    }
+
+    /**
+     * The slot of the key in a table of 16 entries, which a map with an expected size of 8 uses.
+     */
+    private static int slot(long key) {
+        return (int) ((key * PHI) >>> 60);
+    }
+}
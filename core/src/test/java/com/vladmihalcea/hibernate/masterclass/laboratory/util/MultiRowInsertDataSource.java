@@ -0,0 +1,245 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <code>MultiRowInsertDataSource</code> - Rewrites the batched single-row INSERT statements into multi-row
+ * <code>INSERT INTO table (columns) VALUES (...), (...)</code> statements of at most <code>maxRows</code> rows,
+ * like the MySQL <code>rewriteBatchedStatements</code> driver property does, for the databases supporting the
+ * multi-row VALUES syntax (e.g. HSQLDB and PostgreSQL).
+ *
+ * Only the statements prepared with <code>prepareStatement(String)</code> are rewritten, since the rows of
+ * a multi-row INSERT don't have individual update counts or generated keys. Every batch entry is reported as
+ * one updated row, or as {@link Statement#SUCCESS_NO_INFO} if the update count of the multi-row statement
+ * doesn't match the number of rows.
+ *
+ * It must wrap the proxy data source, so that the listeners see the rewritten statements.
+ *
+ * @author Vlad Mihalcea
+ */
+public class MultiRowInsertDataSource implements DataSource {
+
+    private static final Pattern INSERT_PATTERN = Pattern.compile(
+        "^\\s*(insert\\s+into\\s+\\S+\\s*\\([^)]*\\)\\s*values)\\s*(\\([^()'\"]*\\))\\s*$",
+        Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+    );
+
+    private final DataSource dataSource;
+
+    private final int maxRows;
+
+    public MultiRowInsertDataSource(DataSource dataSource, int maxRows) {
+        if (maxRows < 2) {
+            throw new IllegalArgumentException("A multi-row INSERT must have at least two rows!");
+        }
+        this.dataSource = dataSource;
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(dataSource.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(dataSource.getConnection(username, password));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+
+    private Connection connection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                if ("prepareStatement".equals(method.getName()) && args.length == 1) {
+                    Matcher matcher = INSERT_PATTERN.matcher((String) args[0]);
+                    if (matcher.matches()) {
+                        PreparedStatement statement = connection.prepareStatement((String) args[0]);
+                        return Proxy.newProxyInstance(
+                            getClass().getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class},
+                            new MultiRowInsertHandler(connection, statement, matcher.group(1), matcher.group(2))
+                        );
+                    }
+                }
+                return invoke(connection, method, args);
+            }
+        );
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class ParameterSetter {
+        private final Method method;
+        private final Object[] args;
+
+        private ParameterSetter(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+
+        private void apply(PreparedStatement statement, int parameterOffset) throws Throwable {
+            Object[] shiftedArgs = Arrays.copyOf(args, args.length);
+            shiftedArgs[0] = (Integer) args[0] + parameterOffset;
+            invoke(statement, method, shiftedArgs);
+        }
+    }
+
+    private class MultiRowInsertHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private final PreparedStatement statement;
+
+        private final String insertInto;
+
+        private final String valuesTuple;
+
+        private final int parameterCount;
+
+        private Map<Integer, ParameterSetter> parameters = new LinkedHashMap<>();
+
+        private final List<Map<Integer, ParameterSetter>> rows = new ArrayList<>();
+
+        private MultiRowInsertHandler(Connection connection, PreparedStatement statement,
+                                      String insertInto, String valuesTuple) {
+            this.connection = connection;
+            this.statement = statement;
+            this.insertInto = insertInto;
+            this.valuesTuple = valuesTuple;
+            int parameterCount = 0;
+            for (int i = 0; i < valuesTuple.length(); i++) {
+                if (valuesTuple.charAt(i) == '?') {
+                    parameterCount++;
+                }
+            }
+            this.parameterCount = parameterCount;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (methodName.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], new ParameterSetter(method, args));
+            } else if ("clearParameters".equals(methodName)) {
+                parameters.clear();
+            } else if ("addBatch".equals(methodName) && args == null) {
+                rows.add(parameters);
+                parameters = new LinkedHashMap<>(parameters);
+                return null;
+            } else if ("clearBatch".equals(methodName)) {
+                rows.clear();
+                return null;
+            } else if ("executeBatch".equals(methodName)) {
+                return executeBatch();
+            } else if ("close".equals(methodName)) {
+                rows.clear();
+            }
+            return MultiRowInsertDataSource.invoke(statement, method, args);
+        }
+
+        private int[] executeBatch() throws Throwable {
+            int[] updateCounts = new int[rows.size()];
+            try {
+                for (int from = 0; from < rows.size(); from += maxRows) {
+                    int rowCount = Math.min(maxRows, rows.size() - from);
+                    int updateCount;
+                    if (rowCount == 1) {
+                        applyRow(statement, rows.get(from), 0);
+                        updateCount = statement.executeUpdate();
+                    } else {
+                        try (PreparedStatement multiRowStatement = connection.prepareStatement(multiRowSql(rowCount))) {
+                            for (int i = 0; i < rowCount; i++) {
+                                applyRow(multiRowStatement, rows.get(from + i), i * parameterCount);
+                            }
+                            updateCount = multiRowStatement.executeUpdate();
+                        }
+                    }
+                    Arrays.fill(updateCounts, from, from + rowCount,
+                        updateCount == rowCount ? 1 : Statement.SUCCESS_NO_INFO);
+                }
+            } finally {
+                rows.clear();
+            }
+            return updateCounts;
+        }
+
+        private void applyRow(PreparedStatement target, Map<Integer, ParameterSetter> row, int parameterOffset)
+                throws Throwable {
+            for (ParameterSetter parameterSetter : row.values()) {
+                parameterSetter.apply(target, parameterOffset);
+            }
+        }
+
+        private String multiRowSql(int rowCount) {
+            StringBuilder sql = new StringBuilder(insertInto.length() + (valuesTuple.length() + 2) * rowCount);
+            sql.append(insertInto).append(' ');
+            for (int i = 0; i < rowCount; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(valuesTuple);
+            }
+            return sql.toString();
+        }
+    }
+}
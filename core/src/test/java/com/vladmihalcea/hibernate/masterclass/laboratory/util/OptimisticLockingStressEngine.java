@@ -0,0 +1,205 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>OptimisticLockingStressEngine</code> - Runs the same units of work from many threads, either for a given
+ * number of operations per thread or for a fixed duration, retrying the optimistic locking failures according to
+ * a {@link RetryPolicy} and reporting the commit, retry and abort rates.
+ *
+ * @author Vlad Mihalcea
+ */
+public class OptimisticLockingStressEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OptimisticLockingStressEngine.class);
+
+    @FunctionalInterface
+    public interface UnitOfWork {
+        /**
+         * Run one transaction, which is expected to throw on optimistic locking failures.
+         *
+         * @param threadIndex the worker thread index
+         * @param operationIndex the operation index within the worker thread
+         */
+        void execute(int threadIndex, int operationIndex);
+    }
+
+    public static class Report {
+        private final long commits;
+        private final long retries;
+        private final long aborts;
+        private final long elapsedNanos;
+
+        private Report(long commits, long retries, long aborts, long elapsedNanos) {
+            this.commits = commits;
+            this.retries = retries;
+            this.aborts = aborts;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getCommits() {
+            return commits;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public long getAborts() {
+            return aborts;
+        }
+
+        public long getOperations() {
+            return commits + aborts;
+        }
+
+        public double getCommitsPerSecond() {
+            return commits * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * @return retries per operation
+         */
+        public double getRetryRate() {
+            return getOperations() == 0 ? 0 : (double) retries / getOperations();
+        }
+
+        /**
+         * @return the fraction of operations which gave up after exhausting all attempts
+         */
+        public double getAbortRate() {
+            return getOperations() == 0 ? 0 : (double) aborts / getOperations();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "Report{commits=%d, retries=%d, aborts=%d, elapsed=%d ms, commits/sec=%.2f, retryRate=%.4f, abortRate=%.4f}",
+                commits, retries, aborts, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                getCommitsPerSecond(), getRetryRate(), getAbortRate()
+            );
+        }
+    }
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private int operationsPerThread;
+
+    private long durationMillis;
+
+    private RetryPolicy retryPolicy = RetryPolicy.none();
+
+    public OptimisticLockingStressEngine setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    /**
+     * @param operationsPerThread the number of operations each thread runs, zero meaning no limit
+     * @return this engine
+     */
+    public OptimisticLockingStressEngine setOperationsPerThread(int operationsPerThread) {
+        this.operationsPerThread = operationsPerThread;
+        return this;
+    }
+
+    /**
+     * @param durationMillis for how long the threads keep on running operations, zero meaning no limit
+     * @return this engine
+     */
+    public OptimisticLockingStressEngine setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+        return this;
+    }
+
+    public OptimisticLockingStressEngine setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public Report run(UnitOfWork unitOfWork) {
+        if (operationsPerThread <= 0 && durationMillis <= 0) {
+            throw new IllegalStateException("Either the operations per thread or the duration must be set!");
+        }
+        LongAdder commits = new LongAdder();
+        LongAdder retries = new LongAdder();
+        LongAdder aborts = new LongAdder();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final int threadIndex = i;
+            futures.add(executorService.submit(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                long deadline = durationMillis > 0 ?
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis) : Long.MAX_VALUE;
+                for (int operationIndex = 0;
+                     (operationsPerThread <= 0 || operationIndex < operationsPerThread) &&
+                        System.nanoTime() < deadline && failure.get() == null;
+                     operationIndex++) {
+                    for (int attempt = 1; ; attempt++) {
+                        try {
+                            unitOfWork.execute(threadIndex, operationIndex);
+                            commits.increment();
+                            break;
+                        } catch (RuntimeException e) {
+                            if (!retryPolicy.isRetryable(e)) {
+                                failure.compareAndSet(null, e);
+                                return;
+                            }
+                            if (attempt >= retryPolicy.getMaxAttempts()) {
+                                aborts.increment();
+                                break;
+                            }
+                            retries.increment();
+                            backoff(retryPolicy.delayMillis(attempt));
+                        }
+                    }
+                }
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        startLatch.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executorService.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        Report report = new Report(commits.sum(), retries.sum(), aborts.sum(), elapsedNanos);
+        LOGGER.info("{} threads, {}: {}", threadCount, retryPolicy, report);
+        return report;
+    }
+
+    private void backoff(long delayMillis) {
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * <code>ParallelBatchInserter</code> - Producer/consumer ingest engine. The calling thread builds the entity graphs
+ * and groups them in batches, which are handed round-robin to the worker threads through bounded queues, so the
+ * producer blocks whenever the workers fall behind. Every worker owns its Session, and so its connection, and
+ * persists, flushes and commits one batch per transaction.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ParallelBatchInserter<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelBatchInserter.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    public static class Report {
+        private final int workerCount;
+        private final long rows;
+        private final long[] workerRows;
+        private final long producerBlockedNanos;
+        private final long elapsedNanos;
+
+        private Report(int workerCount, long[] workerRows, long producerBlockedNanos, long elapsedNanos) {
+            this.workerCount = workerCount;
+            this.workerRows = workerRows;
+            long rows = 0;
+            for (long workerRowCount : workerRows) {
+                rows += workerRowCount;
+            }
+            this.rows = rows;
+            this.producerBlockedNanos = producerBlockedNanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getWorkerCount() {
+            return workerCount;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @param workerIndex worker index
+         * @return the number of rows inserted by the given worker
+         */
+        public long getWorkerRows(int workerIndex) {
+            return workerRows[workerIndex];
+        }
+
+        /**
+         * @return for how long the producer waited for room in the worker queues
+         */
+        public long getProducerBlockedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(producerBlockedNanos);
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        public double getRowsPerSecond() {
+            return rows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "Report{workers=%d, rows=%d, elapsed=%d ms, rows/sec=%.2f, producerBlocked=%d ms}",
+                workerCount, rows, getElapsedMillis(), getRowsPerSecond(), getProducerBlockedMillis()
+            );
+        }
+    }
+
+    private final SessionFactory sessionFactory;
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+
+    private int batchSize = 50;
+
+    private int queueCapacity = 4;
+
+    private BiConsumer<Session, T> persister = Session::persist;
+
+    private ToIntFunction<T> rowCounter = entity -> 1;
+
+    public ParallelBatchInserter(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public ParallelBatchInserter<T> setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+        return this;
+    }
+
+    /**
+     * @param batchSize the number of entity graphs persisted and flushed in a single transaction,
+     *                  which should match the <code>hibernate.jdbc.batch_size</code>
+     * @return this inserter
+     */
+    public ParallelBatchInserter<T> setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param queueCapacity the number of batches a worker queue can hold before the producer blocks
+     * @return this inserter
+     */
+    public ParallelBatchInserter<T> setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public ParallelBatchInserter<T> setPersister(BiConsumer<Session, T> persister) {
+        this.persister = persister;
+        return this;
+    }
+
+    /**
+     * @param rowCounter the number of table rows of an entity graph, used for the rows/sec report
+     * @return this inserter
+     */
+    public ParallelBatchInserter<T> setRowCounter(ToIntFunction<T> rowCounter) {
+        this.rowCounter = rowCounter;
+        return this;
+    }
+
+    public Report insert(Iterator<T> entities) {
+        List<BlockingQueue<List<T>>> queues = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        long[] workerRows = new long[workerCount];
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        LongAdder producerBlockedNanos = new LongAdder();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(workerCount);
+        long startNanos = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            final int workerIndex = i;
+            futures.add(executorService.submit(() -> {
+                try {
+                    workerRows[workerIndex] = consume(queues.get(workerIndex), failure);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        try {
+            try {
+                produce(entities, queues, failure, producerBlockedNanos);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executorService.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        Report report = new Report(workerCount, workerRows, producerBlockedNanos.sum(), elapsedNanos);
+        LOGGER.info("{}", report);
+        return report;
+    }
+
+    private void produce(Iterator<T> entities, List<BlockingQueue<List<T>>> queues,
+                         AtomicReference<RuntimeException> failure, LongAdder producerBlockedNanos)
+            throws InterruptedException {
+        int queueIndex = 0;
+        List<T> batch = new ArrayList<>(batchSize);
+        while (entities.hasNext() && failure.get() == null) {
+            batch.add(entities.next());
+            if (batch.size() == batchSize || !entities.hasNext()) {
+                BlockingQueue<List<T>> queue = queues.get(queueIndex++ % queues.size());
+                if (!queue.offer(batch)) {
+                    long blockedStartNanos = System.nanoTime();
+                    boolean offered = offer(queue, batch, failure);
+                    producerBlockedNanos.add(System.nanoTime() - blockedStartNanos);
+                    if (!offered) {
+                        return;
+                    }
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        for (BlockingQueue<List<T>> queue : queues) {
+            if (!offer(queue, Collections.emptyList(), failure)) {
+                return;
+            }
+        }
+    }
+
+    private boolean offer(BlockingQueue<List<T>> queue, List<T> batch, AtomicReference<RuntimeException> failure)
+            throws InterruptedException {
+        while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long consume(BlockingQueue<List<T>> queue, AtomicReference<RuntimeException> failure) {
+        long rows = 0;
+        Session session = sessionFactory.openSession();
+        try {
+            while (failure.get() == null) {
+                List<T> batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    continue;
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                Transaction txn = session.beginTransaction();
+                try {
+                    for (T entity : batch) {
+                        persister.accept(session, entity);
+                        rows += rowCounter.applyAsInt(entity);
+                    }
+                    session.flush();
+                    txn.commit();
+                } catch (RuntimeException e) {
+                    if (txn.isActive()) txn.rollback();
+                    throw e;
+                } finally {
+                    session.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            session.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,155 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * <code>ResultSetCountingDataSource</code> - Counts the result sets opened through the wrapped data source
+ * and the rows read from them, which is the data actually transferred from the database,
+ * as opposed to the number of entities the rows were mapped to.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ResultSetCountingDataSource implements DataSource {
+
+    private final DataSource dataSource;
+
+    private final AtomicLong resultSetCount = new AtomicLong();
+
+    private final AtomicLong rowCount = new AtomicLong();
+
+    public ResultSetCountingDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @return the number of result sets opened since the last reset
+     */
+    public long getResultSetCount() {
+        return resultSetCount.get();
+    }
+
+    /**
+     * @return the number of rows read since the last reset
+     */
+    public long getRowCount() {
+        return rowCount.get();
+    }
+
+    public void reset() {
+        resultSetCount.set(0);
+        rowCount.set(0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(dataSource.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(dataSource.getConnection(username, password));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+
+    private Connection connection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (result instanceof CallableStatement) {
+                    return statement((Statement) result, CallableStatement.class);
+                } else if (result instanceof PreparedStatement) {
+                    return statement((Statement) result, PreparedStatement.class);
+                } else if (result instanceof Statement) {
+                    return statement((Statement) result, Statement.class);
+                }
+                return result;
+            }
+        );
+    }
+
+    private Object statement(Statement statement, Class<? extends Statement> statementInterface) {
+        return Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[]{statementInterface},
+            (proxy, method, args) -> {
+                Object result = invoke(statement, method, args);
+                if (result instanceof ResultSet) {
+                    resultSetCount.incrementAndGet();
+                    return resultSet((ResultSet) result);
+                }
+                return result;
+            }
+        );
+    }
+
+    private ResultSet resultSet(ResultSet resultSet) {
+        return (ResultSet) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[]{ResultSet.class},
+            (proxy, method, args) -> {
+                Object result = invoke(resultSet, method, args);
+                if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                    rowCount.incrementAndGet();
+                }
+                return result;
+            }
+        );
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * <code>ResultSetGraphMapper</code> - Folds a parent/child join result set into a list of parent entities,
+ * in the order the parents are first found in the result set.
+ *
+ * The columns are declared once, either by index or by label, the labels being resolved to indexes once per
+ * result set, and they are read with the primitive {@link ResultSet} getters into column arrays of <code>chunkSize</code>
+ * rows. When an {@link ExecutorService} is set, the JDBC thread only fills the column arrays while the entities
+ * of every chunk are built by the executor threads, and the chunks are then merged in order, so the parent and
+ * child ordering is the same as for the sequential mapping. The decoded chunks are merged as soon as all the
+ * previous ones are, and at most <code>maxPendingChunks</code> chunks are in flight, the merged chunks being
+ * reused for the next rows, so the mapper only buffers a bounded number of rows besides the mapped entities.
+ *
+ * The parent identifier is compared with the one of the previous row, so the parent map is only accessed once
+ * for every run of rows sharing the same parent, and the parent map is a {@link LongObjectMap},
+ * so the identifiers are never boxed.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ResultSetGraphMapper<P, C> {
+
+    public enum ColumnType {
+        LONG,
+        INT,
+        STRING,
+        TIMESTAMP,
+        OBJECT
+    }
+
+    /**
+     * Reads the current row column values by the position the columns were declared at.
+     * The primitive getters return 0 for SQL NULL values.
+     */
+    public interface Row {
+        long getLong(int column);
+
+        int getInt(int column);
+
+        String getString(int column);
+
+        Timestamp getTimestamp(int column);
+
+        Object getObject(int column);
+    }
+
+    @FunctionalInterface
+    public interface ParentMapper<P> {
+        P map(long id, Row row);
+    }
+
+    @FunctionalInterface
+    public interface ChildMapper<C> {
+        C map(Row row);
+    }
+
+    private static class Column {
+        private final String label;
+        private final int index;
+        private final ColumnType type;
+
+        private Column(String label, int index, ColumnType type) {
+            this.label = label;
+            this.index = index;
+            this.type = type;
+        }
+    }
+
+    private static class Chunk implements Row {
+        private final long[][] longs;
+        private final int[][] ints;
+        private final Object[][] objects;
+        private int size;
+        private int row;
+
+        private Chunk(List<Column> columns, int capacity) {
+            int columnCount = columns.size();
+            longs = new long[columnCount][];
+            ints = new int[columnCount][];
+            objects = new Object[columnCount][];
+            for (int i = 0; i < columnCount; i++) {
+                switch (columns.get(i).type) {
+                    case LONG:
+                        longs[i] = new long[capacity];
+                        break;
+                    case INT:
+                        ints[i] = new int[capacity];
+                        break;
+                    default:
+                        objects[i] = new Object[capacity];
+                }
+            }
+        }
+
+        @Override
+        public long getLong(int column) {
+            return longs[column][row];
+        }
+
+        @Override
+        public int getInt(int column) {
+            return ints[column][row];
+        }
+
+        @Override
+        public String getString(int column) {
+            return (String) objects[column][row];
+        }
+
+        @Override
+        public Timestamp getTimestamp(int column) {
+            return (Timestamp) objects[column][row];
+        }
+
+        @Override
+        public Object getObject(int column) {
+            return objects[column][row];
+        }
+    }
+
+    private class DecodedChunk {
+        private final Chunk chunk;
+        private final long[] parentIds;
+        private final Object[] parents;
+        private final Object[] children;
+        private final int size;
+
+        private DecodedChunk(Chunk chunk) {
+            this.chunk = chunk;
+            this.size = chunk.size;
+            this.parentIds = chunk.longs[parentIdColumn];
+            this.parents = new Object[size];
+            this.children = new Object[size];
+            for (int i = 0; i < size; i++) {
+                chunk.row = i;
+                long parentId = parentIds[i];
+                if (i == 0 || parentId != parentIds[i - 1]) {
+                    parents[i] = parentMapper.map(parentId, chunk);
+                }
+                children[i] = childMapper.map(chunk);
+            }
+        }
+    }
+
+    private final List<Column> columns = new ArrayList<>();
+
+    private int parentIdColumn = -1;
+
+    private ParentMapper<P> parentMapper;
+
+    private ChildMapper<C> childMapper;
+
+    private BiConsumer<P, C> linker;
+
+    private int chunkSize;
+
+    private int expectedParentCount;
+
+    private ExecutorService executorService;
+
+    private int maxPendingChunks;
+
+    /**
+     * Declare a column by its 1-based result set index.
+     *
+     * @return the column position, to be used with the {@link Row} getters
+     */
+    public int column(int index, ColumnType type) {
+        columns.add(new Column(null, index, type));
+        return columns.size() - 1;
+    }
+
+    /**
+     * Declare a column by its label, resolved to an index before the first row is read.
+     *
+     * @return the column position, to be used with the {@link Row} getters
+     */
+    public int column(String label, ColumnType type) {
+        columns.add(new Column(label, 0, type));
+        return columns.size() - 1;
+    }
+
+    /**
+     * @param parentIdColumn the position of the parent identifier column, which must be a {@link ColumnType#LONG}
+     * @return this mapper
+     */
+    public ResultSetGraphMapper<P, C> setParentIdColumn(int parentIdColumn) {
+        if (columns.get(parentIdColumn).type != ColumnType.LONG) {
+            throw new IllegalArgumentException("The parent identifier must be a LONG column!");
+        }
+        this.parentIdColumn = parentIdColumn;
+        return this;
+    }
+
+    public ResultSetGraphMapper<P, C> setParentMapper(ParentMapper<P> parentMapper) {
+        this.parentMapper = parentMapper;
+        return this;
+    }
+
+    public ResultSetGraphMapper<P, C> setChildMapper(ChildMapper<C> childMapper) {
+        this.childMapper = childMapper;
+        return this;
+    }
+
+    /**
+     * @param linker adds the child to its parent, being always called from the mapping thread, in result set order
+     * @return this mapper
+     */
+    public ResultSetGraphMapper<P, C> setLinker(BiConsumer<P, C> linker) {
+        this.linker = linker;
+        return this;
+    }
+
+    /**
+     * @param chunkSize the number of rows decoded at once, the result set fetch size being used if not set
+     * @return this mapper
+     */
+    public ResultSetGraphMapper<P, C> setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * @param expectedParentCount the number of parents the result set is expected to contain, used to size the
+     *                            parent map, the result set fetch size being used if not set
+     * @return this mapper
+     */
+    public ResultSetGraphMapper<P, C> setExpectedParentCount(int expectedParentCount) {
+        this.expectedParentCount = expectedParentCount;
+        return this;
+    }
+
+    /**
+     * @param executorService decodes the chunks in parallel, or null for decoding them in the mapping thread
+     * @return this mapper
+     */
+    public ResultSetGraphMapper<P, C> setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    /**
+     * @param maxPendingChunks the number of chunks which can be read ahead of the merged ones, twice the number
+     *                         of processors if not set
+     * @return this mapper
+     */
+    public ResultSetGraphMapper<P, C> setMaxPendingChunks(int maxPendingChunks) {
+        this.maxPendingChunks = maxPendingChunks;
+        return this;
+    }
+
+    public List<P> map(ResultSet resultSet) throws SQLException {
+        if (parentIdColumn < 0 || parentMapper == null || childMapper == null || linker == null) {
+            throw new IllegalStateException("The parent identifier column, the mappers and the linker must be set!");
+        }
+        int[] indexes = resolveIndexes(resultSet);
+        int fetchSize = resultSet.getFetchSize();
+        int capacity = chunkSize > 0 ? chunkSize : Math.max(fetchSize, 1000);
+        int maxPending = maxPendingChunks > 0 ? maxPendingChunks : 2 * Runtime.getRuntime().availableProcessors();
+        LongObjectMap<P> parentMap = new LongObjectMap<>(
+            expectedParentCount > 0 ? expectedParentCount : Math.max(fetchSize, 16));
+        Deque<Future<DecodedChunk>> pendingChunks = new ArrayDeque<>();
+        Deque<Chunk> freeChunks = new ArrayDeque<>();
+        Chunk chunk = new Chunk(columns, capacity);
+        while (resultSet.next()) {
+            read(resultSet, indexes, chunk);
+            if (chunk.size == capacity) {
+                decode(chunk, pendingChunks, parentMap);
+                if (executorService != null) {
+                    mergeDone(pendingChunks, maxPending - 1, freeChunks, parentMap);
+                    chunk = freeChunks.isEmpty() ? new Chunk(columns, capacity) : freeChunks.poll();
+                }
+                chunk.size = 0;
+            }
+        }
+        if (chunk.size > 0) {
+            decode(chunk, pendingChunks, parentMap);
+        }
+        mergeDone(pendingChunks, 0, freeChunks, parentMap);
+        return new ArrayList<>(parentMap.values());
+    }
+
+    private int[] resolveIndexes(ResultSet resultSet) throws SQLException {
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            Column column = columns.get(i);
+            indexes[i] = column.label != null ? resultSet.findColumn(column.label) : column.index;
+        }
+        return indexes;
+    }
+
+    private void read(ResultSet resultSet, int[] indexes, Chunk chunk) throws SQLException {
+        int row = chunk.size++;
+        for (int i = 0; i < indexes.length; i++) {
+            switch (columns.get(i).type) {
+                case LONG:
+                    chunk.longs[i][row] = resultSet.getLong(indexes[i]);
+                    break;
+                case INT:
+                    chunk.ints[i][row] = resultSet.getInt(indexes[i]);
+                    break;
+                case STRING:
+                    chunk.objects[i][row] = resultSet.getString(indexes[i]);
+                    break;
+                case TIMESTAMP:
+                    chunk.objects[i][row] = resultSet.getTimestamp(indexes[i]);
+                    break;
+                default:
+                    chunk.objects[i][row] = resultSet.getObject(indexes[i]);
+            }
+        }
+    }
+
+    private void decode(Chunk chunk, Deque<Future<DecodedChunk>> pendingChunks, LongObjectMap<P> parentMap) {
+        if (executorService == null) {
+            merge(new DecodedChunk(chunk), parentMap);
+        } else {
+            pendingChunks.add(CompletableFuture.supplyAsync(() -> new DecodedChunk(chunk), executorService));
+        }
+    }
+
+    /**
+     * Merge the decoded chunks at the head of the queue, and wait for the head chunk while more than
+     * <code>maxPending</code> chunks are pending.
+     */
+    private void mergeDone(Deque<Future<DecodedChunk>> pendingChunks, int maxPending, Deque<Chunk> freeChunks,
+                           LongObjectMap<P> parentMap) {
+        while (!pendingChunks.isEmpty() && (pendingChunks.size() > maxPending || pendingChunks.peek().isDone())) {
+            try {
+                DecodedChunk decodedChunk = pendingChunks.poll().get();
+                merge(decodedChunk, parentMap);
+                freeChunks.add(decodedChunk.chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void merge(DecodedChunk decodedChunk, LongObjectMap<P> parentMap) {
+        P parent = null;
+        for (int i = 0; i < decodedChunk.size; i++) {
+            P chunkParent = (P) decodedChunk.parents[i];
+            if (chunkParent != null) {
+                long parentId = decodedChunk.parentIds[i];
+                parent = parentMap.get(parentId);
+                if (parent == null) {
+                    parent = chunkParent;
+                    parentMap.put(parentId, parent);
+                }
+            }
+            linker.accept(parent, (C) decodedChunk.children[i]);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.StaleStateException;
+import org.hibernate.dialect.lock.OptimisticEntityLockException;
+
+import javax.persistence.OptimisticLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <code>RetryPolicy</code> - Decides which failures are retried, how many times and how long to wait in between.
+ * By default, only the optimistic locking failures are retried.
+ *
+ * @author Vlad Mihalcea
+ */
+public class RetryPolicy {
+
+    public enum Backoff {
+        IMMEDIATE,
+        EXPONENTIAL,
+        EXPONENTIAL_JITTER
+    }
+
+    private final int maxAttempts;
+
+    private final Backoff backoff;
+
+    private final long initialDelayMillis;
+
+    private final long maxDelayMillis;
+
+    private final List<Class<? extends Throwable>> retryOn = new ArrayList<>(
+        Arrays.asList(StaleStateException.class, OptimisticEntityLockException.class, OptimisticLockException.class)
+    );
+
+    private RetryPolicy(int maxAttempts, Backoff backoff, long initialDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("There must be at least one attempt!");
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public static RetryPolicy none() {
+        return new RetryPolicy(1, Backoff.IMMEDIATE, 0, 0);
+    }
+
+    public static RetryPolicy immediate(int maxAttempts) {
+        return new RetryPolicy(maxAttempts, Backoff.IMMEDIATE, 0, 0);
+    }
+
+    public static RetryPolicy exponential(int maxAttempts, long initialDelayMillis, long maxDelayMillis) {
+        return new RetryPolicy(maxAttempts, Backoff.EXPONENTIAL, initialDelayMillis, maxDelayMillis);
+    }
+
+    /**
+     * Exponential backoff with full jitter, each delay being randomly chosen between zero and the exponential delay,
+     * so that the conflicting transactions don't retry in lockstep.
+     */
+    public static RetryPolicy exponentialJitter(int maxAttempts, long initialDelayMillis, long maxDelayMillis) {
+        return new RetryPolicy(maxAttempts, Backoff.EXPONENTIAL_JITTER, initialDelayMillis, maxDelayMillis);
+    }
+
+    /**
+     * Replace the retried exception types. A failure is retried if any exception in its cause chain
+     * is an instance of one of these types.
+     *
+     * @param exceptionTypes retried exception types
+     * @return this policy
+     */
+    @SafeVarargs
+    public final RetryPolicy retryOn(Class<? extends Throwable>... exceptionTypes) {
+        retryOn.clear();
+        retryOn.addAll(Arrays.asList(exceptionTypes));
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Backoff getBackoff() {
+        return backoff;
+    }
+
+    public boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            for (Class<? extends Throwable> exceptionType : retryOn) {
+                if (exceptionType.isInstance(cause)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param attempt the number of the attempt that just failed, starting from 1
+     * @return the delay before the next attempt
+     */
+    public long delayMillis(int attempt) {
+        switch (backoff) {
+            case IMMEDIATE:
+                return 0;
+            case EXPONENTIAL:
+                return exponentialDelayMillis(attempt);
+            case EXPONENTIAL_JITTER:
+                return ThreadLocalRandom.current().nextLong(exponentialDelayMillis(attempt) + 1);
+            default:
+                throw new UnsupportedOperationException("Unsupported backoff: " + backoff);
+        }
+    }
+
+    private long exponentialDelayMillis(int attempt) {
+        long delay = initialDelayMillis << Math.min(attempt - 1, 30);
+        return delay < 0 ? maxDelayMillis : Math.min(delay, maxDelayMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxAttempts=" + maxAttempts +
+                ", backoff=" + backoff +
+                ", initialDelayMillis=" + initialDelayMillis +
+                ", maxDelayMillis=" + maxDelayMillis +
+                '}';
+    }
+}
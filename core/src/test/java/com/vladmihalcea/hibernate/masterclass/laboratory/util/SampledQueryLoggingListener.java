@@ -0,0 +1,228 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>SampledQueryLoggingListener</code> - Low overhead alternative to the
+ * {@link AbstractTest.InlineQueryLogEntryCreator} based logging.
+ *
+ * Log entries are written into a thread-local buffer, parameters are appended using
+ * the primitive {@link StringBuilder} methods and only one in every <code>sampleRate</code>
+ * statements (optionally only the ones slower than <code>slowQueryThresholdMillis</code>) is logged.
+ *
+ * @author Vlad Mihalcea
+ */
+public class SampledQueryLoggingListener implements QueryExecutionListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SampledQueryLoggingListener.class);
+
+    private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+
+    private static final String[] PARAMETER_KEYS = new String[256];
+
+    static {
+        for (int i = 0; i < PARAMETER_KEYS.length; i++) {
+            PARAMETER_KEYS[i] = String.valueOf(i);
+        }
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    private final AtomicLong statementCount = new AtomicLong();
+
+    private int sampleRate = 1;
+
+    private long slowQueryThresholdMillis;
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public SampledQueryLoggingListener setSampleRate(int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("The sample rate must be greater than 0!");
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    public SampledQueryLoggingListener setSlowQueryThresholdMillis(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+        return this;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (!isLoggable() || !isSampled(execInfo)) {
+            return;
+        }
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        try {
+            writeEntry(sb, execInfo, queryInfoList);
+            log(sb.toString());
+        } finally {
+            if (sb.capacity() > MAX_BUFFER_CAPACITY) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    protected boolean isLoggable() {
+        return LOGGER.isDebugEnabled();
+    }
+
+    protected void log(String entry) {
+        LOGGER.debug(entry);
+    }
+
+    protected boolean isSampled(ExecutionInfo execInfo) {
+        if (execInfo.getElapsedTime() < slowQueryThresholdMillis) {
+            return false;
+        }
+        return sampleRate == 1 || statementCount.getAndIncrement() % sampleRate == 0;
+    }
+
+    protected void writeEntry(StringBuilder sb, ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        sb.append("Name:").append(execInfo.getDataSourceName())
+          .append(", Time:").append(execInfo.getElapsedTime())
+          .append(", Num:").append(queryInfoList.size())
+          .append(", Query:[");
+        boolean firstQuery = true;
+        for (QueryInfo queryInfo : queryInfoList) {
+            if (!firstQuery) {
+                sb.append(", ");
+            } else {
+                firstQuery = false;
+            }
+            sb.append(queryInfo.getQuery());
+        }
+        sb.append("], Params:[");
+        boolean firstArg = true;
+        for (QueryInfo queryInfo : queryInfoList) {
+            for (Map<String, Object> paramMap : queryInfo.getQueryArgsList()) {
+                if (!firstArg) {
+                    sb.append(", ");
+                } else {
+                    firstArg = false;
+                }
+                sb.append("(");
+                writeParams(sb, paramMap);
+                sb.append(")");
+            }
+        }
+        sb.append("]");
+    }
+
+    static void writeParams(StringBuilder sb, Map<String, Object> paramMap) {
+        int paramCount = paramMap.size();
+        if (paramCount < PARAMETER_KEYS.length) {
+            boolean indexed = true;
+            for (int i = 1; i <= paramCount && indexed; i++) {
+                indexed = paramMap.containsKey(PARAMETER_KEYS[i]);
+            }
+            if (indexed) {
+                for (int i = 1; i <= paramCount; i++) {
+                    if (i > 1) {
+                        sb.append(", ");
+                    }
+                    writeParam(sb, paramMap.get(PARAMETER_KEYS[i]));
+                }
+                return;
+            }
+        }
+        boolean firstParam = true;
+        for (Map.Entry<String, Object> paramEntry : paramMap.entrySet()) {
+            if (!firstParam) {
+                sb.append(", ");
+            } else {
+                firstParam = false;
+            }
+            writeParam(sb, paramEntry.getValue());
+        }
+    }
+
+    static void writeParam(StringBuilder sb, Object parameter) {
+        if (parameter == null) {
+            sb.append("null");
+        } else if (parameter instanceof String) {
+            sb.append((String) parameter);
+        } else if (parameter instanceof Long) {
+            sb.append(((Long) parameter).longValue());
+        } else if (parameter instanceof Integer) {
+            sb.append(((Integer) parameter).intValue());
+        } else if (parameter instanceof Short) {
+            sb.append(((Short) parameter).shortValue());
+        } else if (parameter instanceof Byte) {
+            sb.append(((Byte) parameter).byteValue());
+        } else if (parameter instanceof Boolean) {
+            sb.append(((Boolean) parameter).booleanValue());
+        } else if (parameter instanceof Double) {
+            sb.append(((Double) parameter).doubleValue());
+        } else if (parameter instanceof Float) {
+            sb.append(((Float) parameter).floatValue());
+        } else if (parameter instanceof Character) {
+            sb.append(((Character) parameter).charValue());
+        } else if (parameter instanceof byte[]) {
+            byte[] array = (byte[]) parameter;
+            sb.append("[");
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(array[i]);
+            }
+            sb.append("]");
+        } else if (parameter instanceof int[]) {
+            int[] array = (int[]) parameter;
+            sb.append("[");
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(array[i]);
+            }
+            sb.append("]");
+        } else if (parameter instanceof long[]) {
+            long[] array = (long[]) parameter;
+            sb.append("[");
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(array[i]);
+            }
+            sb.append("]");
+        } else if (parameter instanceof char[]) {
+            sb.append("[").append((char[]) parameter).append("]");
+        } else if (parameter instanceof Object[]) {
+            Object[] array = (Object[]) parameter;
+            sb.append("[");
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                writeParam(sb, array[i]);
+            }
+            sb.append("]");
+        } else {
+            sb.append(parameter);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SampledQueryLoggingListenerTest - Test to check that the <code>sampleRate</code> and
+ * <code>slowQueryThresholdMillis</code> settings decide which statements get logged
+ *
+ * @author Vlad Mihalcea
+ */
+public class SampledQueryLoggingListenerTest extends AbstractTest {
+
+    private static final long SLOW_QUERY_MILLIS = 100;
+
+    private final List<String> entries = new CopyOnWriteArrayList<>();
+
+    private final SampledQueryLoggingListener listener = new SampledQueryLoggingListener() {
+        @Override
+        protected boolean isLoggable() {
+            return true;
+        }
+
+        @Override
+        protected void log(String entry) {
+            entries.add(entry);
+        }
+    };
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Event.class
+        };
+    }
+
+    @Override
+    protected QueryExecutionListener queryLoggingListener() {
+        return listener;
+    }
+
+    @Before
+    public void init() {
+        super.init();
+        doInJDBC(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP FUNCTION sleep_millis IF EXISTS");
+                statement.execute(
+                    "CREATE FUNCTION sleep_millis(millis INT) RETURNS INT " +
+                    "LANGUAGE JAVA NOT DETERMINISTIC NO SQL " +
+                    "EXTERNAL NAME 'CLASSPATH:" + SampledQueryLoggingListenerTest.class.getName() + ".sleepMillis'");
+            }
+        });
+        entries.clear();
+    }
+
+    /**
+     * Called by the <code>sleep_millis</code> HSQLDB function to make a statement slow.
+     */
+    public static int sleepMillis(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return millis;
+    }
+
+    @Test
+    public void testEveryStatementIsLoggedByDefault() {
+        executeQueries(10, "VALUES (1)");
+        assertEquals(10, entries.size());
+    }
+
+    @Test
+    public void testOneInEverySampleRateStatementsIsLogged() {
+        listener.setSampleRate(5);
+        executeQueries(20, "VALUES (1)");
+        assertEquals(4, entries.size());
+    }
+
+    @Test
+    public void testOnlySlowStatementsAreLogged() {
+        listener.setSlowQueryThresholdMillis(SLOW_QUERY_MILLIS);
+        executeQueries(5, "VALUES (1)");
+        executeQueries(2, "VALUES (sleep_millis(" + 2 * SLOW_QUERY_MILLIS + "))");
+        executeQueries(5, "VALUES (2)");
+        assertEquals(2, entries.size());
+        for (String entry : entries) {
+            assertTrue(entry, entry.contains("sleep_millis"));
+        }
+    }
+
+    @Test
+    public void testSlowStatementsAreSampled() {
+        listener.setSlowQueryThresholdMillis(SLOW_QUERY_MILLIS).setSampleRate(2);
+        executeQueries(4, "VALUES (sleep_millis(" + 2 * SLOW_QUERY_MILLIS + "))");
+        executeQueries(10, "VALUES (1)");
+        assertEquals(2, entries.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSampleRateMustBePositive() {
+        listener.setSampleRate(0);
+    }
+
+    private void executeQueries(int count, String sql) {
+        doInJDBC(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (int i = 0; i < count; i++) {
+                    statement.executeQuery(sql).close();
+                }
+            }
+        });
+    }
+
+    @Entity(name = "Event")
+    public static class Event {
+
+        @Id
+        private Long id;
+    }
+}
@@ -0,0 +1,206 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.hibernate.Interceptor;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * <code>SessionFactoryCache</code> - Shares the same {@link SessionFactory} among all tests using
+ * the same entities, packages, interceptor type, data source provider and Hibernate properties,
+ * so that the metamodel is built only once per JVM.
+ *
+ * @author Vlad Mihalcea
+ */
+public final class SessionFactoryCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionFactoryCache.class);
+
+    /**
+     * How the database is cleaned up when a cached {@link SessionFactory} is reused.
+     */
+    public enum DataResetMode {
+        /**
+         * Drop and recreate the schema, which also resets the sequences and the identity columns.
+         */
+        SCHEMA_EXPORT,
+        /**
+         * Truncate all tables and restart all sequences (HSQLDB only, otherwise {@link #SCHEMA_EXPORT} is used).
+         * The database must not be shared with tests that drop the schema of the cached factory.
+         */
+        TRUNCATE
+    }
+
+    /**
+     * Routes the statements of the cached {@link SessionFactory} data source to the listeners
+     * of the test which currently uses it.
+     */
+    public static class ForwardingQueryExecutionListener implements QueryExecutionListener {
+
+        private volatile QueryExecutionListener delegate;
+
+        public ForwardingQueryExecutionListener(QueryExecutionListener delegate) {
+            this.delegate = delegate;
+        }
+
+        public void setDelegate(QueryExecutionListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            delegate.beforeQuery(execInfo, queryInfoList);
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            delegate.afterQuery(execInfo, queryInfoList);
+        }
+    }
+
+    public static class Key {
+
+        /**
+         * Stands for the data source in the properties of a key, since the data source instances
+         * are never equal.
+         */
+        public static final String DATA_SOURCE = DataSource.class.getName();
+
+        private final List<Object> parts;
+
+        public Key(List<String> entityClassNames, String[] packages, Interceptor interceptor,
+                   String dataSourceProvider, Properties properties) {
+            SortedMap<String, String> settings = new TreeMap<>();
+            for (Map.Entry<Object, Object> property : properties.entrySet()) {
+                Object value = property.getValue();
+                settings.put(String.valueOf(property.getKey()),
+                    value instanceof DataSource ? DATA_SOURCE : String.valueOf(value));
+            }
+            this.parts = Arrays.asList(
+                entityClassNames,
+                packages != null ? Arrays.asList(packages) : Collections.emptyList(),
+                interceptor != null ? interceptor.getClass().getName() : "",
+                dataSourceProvider,
+                settings
+            );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return parts.equals(((Key) o).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return parts.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return parts.toString();
+        }
+    }
+
+    public static class Entry {
+
+        private final SessionFactory sessionFactory;
+
+        private final Configuration configuration;
+
+        private final ForwardingQueryExecutionListener queryExecutionListener;
+
+        public Entry(SessionFactory sessionFactory, Configuration configuration,
+                     ForwardingQueryExecutionListener queryExecutionListener) {
+            this.sessionFactory = sessionFactory;
+            this.configuration = configuration;
+            this.queryExecutionListener = queryExecutionListener;
+        }
+
+        public SessionFactory getSessionFactory() {
+            return sessionFactory;
+        }
+    }
+
+    private static final ConcurrentMap<Key, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SessionFactoryCache::closeAll));
+    }
+
+    private SessionFactoryCache() {
+    }
+
+    /**
+     * Get the cached {@link SessionFactory} or build a new one. A reused {@link SessionFactory} has all its
+     * data removed, its second-level cache regions evicted and its statistics cleared.
+     *
+     * @param key                    cache key
+     * @param entryBuilder           builds the entry on a cache miss
+     * @param queryExecutionListener the listeners of the current test
+     * @param dataResetMode          data reset mode
+     * @param hsqldb                 whether the underlying database is HSQLDB
+     * @return session factory
+     */
+    public static SessionFactory get(Key key, Function<Key, Entry> entryBuilder,
+                                     QueryExecutionListener queryExecutionListener,
+                                     DataResetMode dataResetMode, boolean hsqldb) {
+        boolean[] built = new boolean[1];
+        Entry entry = ENTRIES.computeIfAbsent(key, k -> {
+            built[0] = true;
+            return entryBuilder.apply(k);
+        });
+        if (entry.queryExecutionListener != null) {
+            entry.queryExecutionListener.setDelegate(queryExecutionListener);
+        }
+        if (!built[0]) {
+            reset(entry, dataResetMode, hsqldb);
+        }
+        return entry.getSessionFactory();
+    }
+
+    private static void reset(Entry entry, DataResetMode dataResetMode, boolean hsqldb) {
+        SessionFactory sessionFactory = entry.getSessionFactory();
+        sessionFactory.getCache().evictAllRegions();
+        if (dataResetMode == DataResetMode.TRUNCATE && hsqldb) {
+            Session session = sessionFactory.openSession();
+            try {
+                session.doWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("TRUNCATE SCHEMA PUBLIC RESTART IDENTITY AND COMMIT NO CHECK");
+                    }
+                });
+            } finally {
+                session.close();
+            }
+        } else {
+            new SchemaExport(entry.configuration).create(false, true);
+        }
+        sessionFactory.getStatistics().clear();
+    }
+
+    private static void closeAll() {
+        for (Entry entry : ENTRIES.values()) {
+            try {
+                entry.getSessionFactory().close();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not close the cached SessionFactory", e);
+            }
+        }
+        ENTRIES.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * SessionFactoryCacheTest - Test to check that the {@link SessionFactoryCache} shares a {@link SessionFactory}
+ * only among equal configurations, and that a reused {@link SessionFactory} starts without the previous test data
+ *
+ * @author Vlad Mihalcea
+ */
+public class SessionFactoryCacheTest extends AbstractTest {
+
+    private final AtomicInteger dataSourceCount = new AtomicInteger();
+
+    private SessionFactoryCache.DataResetMode dataResetMode = SessionFactoryCache.DataResetMode.SCHEMA_EXPORT;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Event.class
+        };
+    }
+
+    @Override
+    protected boolean reuseSessionFactory() {
+        return true;
+    }
+
+    @Override
+    protected SessionFactoryCache.DataResetMode dataResetMode() {
+        return dataResetMode;
+    }
+
+    @Override
+    protected DataSource newDataSource() {
+        dataSourceCount.incrementAndGet();
+        return super.newDataSource();
+    }
+
+    @Test
+    public void testEqualKeys() {
+        assertEquals(newKey(Event.class.getName(), "true", "jdbc:hsqldb:mem:test"),
+            newKey(Event.class.getName(), "true", "jdbc:hsqldb:mem:test"));
+    }
+
+    @Test
+    public void testDifferentEntitiesOrProperties() {
+        SessionFactoryCache.Key key = newKey(Event.class.getName(), "true", "jdbc:hsqldb:mem:test");
+        assertNotEquals(key, newKey(Event.class.getName() + "Detail", "true", "jdbc:hsqldb:mem:test"));
+        assertNotEquals(key, newKey(Event.class.getName(), "false", "jdbc:hsqldb:mem:test"));
+        assertNotEquals(key, newKey(Event.class.getName(), "true", "jdbc:hsqldb:mem:other"));
+    }
+
+    @Test
+    public void testReusedSessionFactoryWithSchemaExport() {
+        assertDataIsResetOnReuse();
+    }
+
+    @Test
+    public void testReusedSessionFactoryWithTruncate() {
+        dataResetMode = SessionFactoryCache.DataResetMode.TRUNCATE;
+        assertDataIsResetOnReuse();
+    }
+
+    private void assertDataIsResetOnReuse() {
+        doInTransaction(session -> {
+            session.persist(new Event());
+            session.persist(new Event());
+        });
+        getSessionFactory().getStatistics().clear();
+        doInTransaction(session -> {
+            assertEquals(2L, session.createQuery("select count(e) from Event e").uniqueResult());
+        });
+        SessionFactory sessionFactory = getSessionFactory();
+        int dataSources = dataSourceCount.get();
+
+        destroy();
+        init();
+
+        assertSame(sessionFactory, getSessionFactory());
+        assertEquals("No DataSource is built for a reused SessionFactory", dataSources, dataSourceCount.get());
+        assertEquals(0, getSessionFactory().getStatistics().getQueryExecutionCount());
+        doInTransaction(session -> {
+            assertEquals(0L, session.createQuery("select count(e) from Event e").uniqueResult());
+        });
+    }
+
+    private SessionFactoryCache.Key newKey(String entityClassName, String generateStatistics, String url) {
+        Properties properties = new Properties();
+        properties.put("hibernate.generate_statistics", generateStatistics);
+        properties.put("hibernate.connection.datasource", newDataSource());
+        return new SessionFactoryCache.Key(
+            Collections.singletonList(entityClassName),
+            null,
+            null,
+            url,
+            properties
+        );
+    }
+
+    @Entity(name = "Event")
+    public static class Event {
+
+        @Id
+        @GeneratedValue
+        private Long id;
+    }
+}
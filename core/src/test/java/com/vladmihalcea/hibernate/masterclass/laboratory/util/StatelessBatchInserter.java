@@ -0,0 +1,94 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.StatelessSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <code>StatelessBatchInserter</code> - Inserts entity graphs through a {@link StatelessSession}, without any
+ * Persistence Context bookkeeping. Since the JDBC batch is executed whenever the inserted entity type changes,
+ * the roots are inserted in chunks of <code>batchSize</code> entities, followed by all their children, one
+ * association at a time, so that every JDBC batch is full.
+ *
+ * The identifiers are assigned by the entity identifier generators, so a pooled or pooled-lo optimizer
+ * saves a sequence call for every <code>increment_size</code> rows.
+ *
+ * @author Vlad Mihalcea
+ */
+public class StatelessBatchInserter<T> {
+
+    private final int batchSize;
+
+    private final List<Function<T, Collection<?>>> associations = new ArrayList<>();
+
+    public StatelessBatchInserter(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be greater than 0!");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Add an association to be inserted after its parent chunk. The associations are inserted in the order
+     * they are added, so the children must come after the entities they reference.
+     *
+     * @param association extracts the children of a root entity, which can be empty or contain null elements
+     * @return this inserter
+     */
+    public StatelessBatchInserter<T> children(Function<T, Collection<?>> association) {
+        associations.add(association);
+        return this;
+    }
+
+    /**
+     * Add a to-one association to be inserted after its parent chunk.
+     *
+     * @param association extracts the child of a root entity, which can be null
+     * @return this inserter
+     */
+    public StatelessBatchInserter<T> child(Function<T, ?> association) {
+        return children(root -> Collections.singletonList(association.apply(root)));
+    }
+
+    /**
+     * @param session stateless session
+     * @param roots   root entities
+     * @return the number of inserted rows
+     */
+    public long insert(StatelessSession session, Iterator<T> roots) {
+        List<T> chunk = new ArrayList<>(batchSize);
+        long rowCount = 0;
+        while (roots.hasNext()) {
+            chunk.add(roots.next());
+            if (chunk.size() == batchSize || !roots.hasNext()) {
+                rowCount += insertChunk(session, chunk);
+                chunk.clear();
+            }
+        }
+        return rowCount;
+    }
+
+    private long insertChunk(StatelessSession session, List<T> chunk) {
+        long rowCount = 0;
+        for (T root : chunk) {
+            session.insert(root);
+            rowCount++;
+        }
+        for (Function<T, Collection<?>> association : associations) {
+            for (T root : chunk) {
+                for (Object child : association.apply(root)) {
+                    if (child != null) {
+                        session.insert(child);
+                        rowCount++;
+                    }
+                }
+            }
+        }
+        return rowCount;
+    }
+}
@@ -0,0 +1,163 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>StatementMetricsListener</code> - Records per statement type timers and histograms
+ * so that tests can assert on the executed statements without parsing the log output.
+ *
+ * @author Vlad Mihalcea
+ */
+public class StatementMetricsListener implements QueryExecutionListener {
+
+    public enum StatementType {
+        SELECT,
+        INSERT,
+        UPDATE,
+        DELETE,
+        OTHER;
+
+        public static StatementType of(String query) {
+            String trimmedQuery = query.trim();
+            int end = 0;
+            while (end < trimmedQuery.length() && Character.isLetter(trimmedQuery.charAt(end))) {
+                end++;
+            }
+            String keyword = trimmedQuery.substring(0, end).toUpperCase(Locale.ROOT);
+            for (StatementType statementType : values()) {
+                if (statementType.name().equals(keyword)) {
+                    return statementType;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    private final MetricRegistry metricRegistry;
+
+    private final ThreadLocal<Long> startNanos = new ThreadLocal<>();
+
+    public StatementMetricsListener() {
+        this(new MetricRegistry());
+    }
+
+    public StatementMetricsListener(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        startNanos.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        //the datasource-proxy elapsed time is in millis, so the sub-millisecond statements would take no time
+        Long start = startNanos.get();
+        startNanos.remove();
+        if (queryInfoList.isEmpty()) {
+            return;
+        }
+        long elapsedNanos = start != null ?
+            System.nanoTime() - start :
+            TimeUnit.MILLISECONDS.toNanos(execInfo.getElapsedTime());
+        StatementType statementType = StatementType.of(queryInfoList.get(0).getQuery());
+        getTimer(statementType).update(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        int rows = 0;
+        for (QueryInfo queryInfo : queryInfoList) {
+            rows += Math.max(1, queryInfo.getQueryArgsList().size());
+        }
+        getRowCounter(statementType).inc(rows);
+        if ("executeBatch".equals(execInfo.getMethod().getName())) {
+            getBatchSizeHistogram(statementType).update(rows);
+        }
+
+        Object result = execInfo.getResult();
+        if (result instanceof ResultSet) {
+            try {
+                getFetchSizeHintHistogram().update(((ResultSet) result).getFetchSize());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Statement execution timer, one update per JDBC round trip
+     *
+     * @param statementType statement type
+     * @return statement execution timer
+     */
+    public Timer getTimer(StatementType statementType) {
+        return metricRegistry.timer(name(statementType, "timer"));
+    }
+
+    /**
+     * Number of statements executed, a whole batch counting as a single one
+     *
+     * @param statementType statement type
+     * @return statement count
+     */
+    public long getCount(StatementType statementType) {
+        return getTimer(statementType).getCount();
+    }
+
+    /**
+     * Number of rows sent to the database, every batch entry counting as a single one
+     *
+     * @param statementType statement type
+     * @return row counter
+     */
+    public Counter getRowCounter(StatementType statementType) {
+        return metricRegistry.counter(name(statementType, "rows"));
+    }
+
+    /**
+     * Number of rows sent by every <code>executeBatch</code> call
+     *
+     * @param statementType statement type
+     * @return batch size histogram
+     */
+    public Histogram getBatchSizeHistogram(StatementType statementType) {
+        return metricRegistry.histogram(name(statementType, "batchSize"));
+    }
+
+    /**
+     * The fetch size hint of every result set, as reported by the JDBC driver, which is neither the number of rows
+     * fetched per round trip nor the number of rows read, since the listener never sees the rows being read,
+     * and which is usually 0 unless <code>hibernate.jdbc.fetch_size</code> is set.
+     *
+     * @return fetch size hint histogram
+     */
+    public Histogram getFetchSizeHintHistogram() {
+        return metricRegistry.histogram(MetricRegistry.name(StatementMetricsListener.class, "fetchSizeHint"));
+    }
+
+    /**
+     * Removes all recorded metrics, so that only the statements executed from now on are taken into account
+     */
+    public void reset() {
+        metricRegistry.removeMatching((name, metric) -> name.startsWith(StatementMetricsListener.class.getName()));
+    }
+
+    private String name(StatementType statementType, String metric) {
+        return MetricRegistry.name(StatementMetricsListener.class, statementType.name().toLowerCase(Locale.ROOT), metric);
+    }
+}
@@ -0,0 +1,100 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+
+import java.util.function.Consumer;
+
+/**
+ * <code>StreamingReader</code> - Reads a query result set through a forward-only cursor, so that only
+ * <code>fetchSize</code> rows are held by the JDBC driver and, for a stateful {@link Session}, at most
+ * <code>clearInterval</code> rows worth of entities are kept in the Persistence Context.
+ *
+ * Collection fetches need a scrollable cursor to assemble the parent entities, so the large result sets should
+ * be read from the child side (e.g. <code>select c from Comment c join fetch c.post order by c.id</code>).
+ *
+ * @author Vlad Mihalcea
+ */
+public class StreamingReader {
+
+    private int fetchSize = 100;
+
+    private int clearInterval = 1000;
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public StreamingReader setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("The fetch size must be greater than 0!");
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public int getClearInterval() {
+        return clearInterval;
+    }
+
+    /**
+     * @param clearInterval the number of rows after which the Persistence Context is cleared
+     * @return this reader
+     */
+    public StreamingReader setClearInterval(int clearInterval) {
+        if (clearInterval < 1) {
+            throw new IllegalArgumentException("The clear interval must be greater than 0!");
+        }
+        this.clearInterval = clearInterval;
+        return this;
+    }
+
+    /**
+     * Read the entities as read-only, detaching them every <code>clearInterval</code> rows.
+     *
+     * @param session     stateful session
+     * @param hql         HQL query
+     * @param rowConsumer receives the entity, or the <code>Object[]</code> row for multi-column projections
+     * @return the number of rows read
+     */
+    public long read(Session session, String hql, Consumer<Object> rowConsumer) {
+        Query query = session.createQuery(hql)
+            .setFetchSize(fetchSize)
+            .setReadOnly(true);
+        return read(query, rowConsumer, session::clear);
+    }
+
+    /**
+     * Read the entities without any Persistence Context, each row yielding new entity instances.
+     *
+     * @param session     stateless session
+     * @param hql         HQL query
+     * @param rowConsumer receives the entity, or the <code>Object[]</code> row for multi-column projections
+     * @return the number of rows read
+     */
+    public long read(StatelessSession session, String hql, Consumer<Object> rowConsumer) {
+        Query query = session.createQuery(hql)
+            .setFetchSize(fetchSize);
+        return read(query, rowConsumer, null);
+    }
+
+    private long read(Query query, Consumer<Object> rowConsumer, Runnable clearCallback) {
+        ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+        long rowCount = 0;
+        try {
+            while (results.next()) {
+                Object[] row = results.get();
+                rowConsumer.accept(row.length == 1 ? row[0] : row);
+                if (++rowCount % clearInterval == 0 && clearCallback != null) {
+                    clearCallback.run();
+                }
+            }
+        } finally {
+            results.close();
+        }
+        return rowCount;
+    }
+}